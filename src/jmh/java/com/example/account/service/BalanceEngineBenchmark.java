@@ -0,0 +1,105 @@
+package com.example.account.service;
+
+import com.example.account.AccountApplication;
+import com.example.account.dto.TransactionDto;
+import com.example.account.repository.AccountRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ./gradlew jmh -Pjmh.includes=BalanceEngineBenchmark
+ * journal 엔진 차감과 기존 useBalance(JPA) 경로의 차감 비용 비교 (스레드 4개).
+ * fsync=false 는 OS 에 맡기는 경우, fsync=true 는 group fsync 를 기다리는 경우.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BalanceEngineBenchmark {
+    private static final String ACCOUNT_NUMBER = "1000000000";
+
+    @State(Scope.Benchmark)
+    public static class EngineState {
+        @Param({"false", "true"})
+        boolean fsync;
+
+        Path directory;
+        JournaledBalanceEngine engine;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("journal");
+            // 복구 단계에서 DB 에 올릴 계좌가 없다고 응답하는 repository
+            AccountRepository accountRepository = (AccountRepository) Proxy.newProxyInstance(
+                    AccountRepository.class.getClassLoader(),
+                    new Class<?>[]{AccountRepository.class},
+                    (proxy, method, args) -> List.of());
+            engine = new JournaledBalanceEngine(null, accountRepository, null, null,
+                    new TimeOrderedTransactionIdGenerator(1), new SimpleMeterRegistry(),
+                    true, Set.of(), directory.toString(), 256, fsync, 200, 16, 500);
+            engine.open();
+            engine.recover();
+            engine.putIfAbsent(ACCOUNT_NUMBER, 1L, Long.MAX_VALUE / 2);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            // DB 가 없으므로 close(반영 + 스냅샷) 없이 파일만 지운다
+            try (var files = Files.walk(directory)) {
+                files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ServiceState {
+        ConfigurableApplicationContext context;
+        TransactionService transactionService;
+        String accountNumber;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            context = new SpringApplicationBuilder(AccountApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .properties("account.balance-engine.enabled=false",
+                            "logging.level.root=WARN")
+                    .run();
+            transactionService = context.getBean(TransactionService.class);
+            accountNumber = context.getBean(AccountService.class)
+                    .createAccount(1L, Long.MAX_VALUE / 2).getAccountNumber();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    @Benchmark
+    public TransactionDto engineUse(EngineState state) {
+        return state.engine.use(1L, ACCOUNT_NUMBER, 1L);
+    }
+
+    @Benchmark
+    public TransactionDto transactionServiceUse(ServiceState state) {
+        return state.transactionService.useBalance(1L, state.accountNumber, 1L);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.account.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ./gradlew jmh
+ * 기존 random UUID 와 시간순 id 생성 비용 비교 (스레드 4개).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TransactionIdGeneratorBenchmark {
+    private final TransactionIdGenerator random = new RandomTransactionIdGenerator();
+    private final TransactionIdGenerator timeOrdered = new TimeOrderedTransactionIdGenerator(1);
+
+    @Benchmark
+    public String randomUuid() {
+        return random.generate();
+    }
+
+    @Benchmark
+    public String timeOrdered() {
+        return timeOrdered.generate();
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.account.aop;
 
+import com.example.account.type.LockMode;
+
 import java.lang.annotation.*;
 
 @Target(ElementType.METHOD)
@@ -8,4 +10,13 @@ import java.lang.annotation.*;
 @Inherited
 public @interface AccountLock {
     long tryLockTime() default 5000L;
+
+    // OPTIMISTIC 이면 redis lock 없이 Account 의 version 으로 충돌을 감지하고 재시도
+    LockMode mode() default LockMode.REDIS;
+
+    // true 이면 잔액을 slot 으로 나눈 계좌(ShardedBalanceService)는 계좌 lock 없이 slot 단위로 처리
+    boolean shardedBalance() default false;
+
+    // true 이면 같은 계좌의 대기 요청을 모아서 lock 한 번, DB 트랜잭션 하나로 처리 (LockCombiner)
+    boolean combining() default false;
 }
@@ -0,0 +1,14 @@
+package com.example.account.aop;
+
+import java.lang.annotation.*;
+
+/**
+ * Idempotency-Key 헤더가 있으면 같은 키의 재요청에 처음 결과를 그대로 돌려준다.
+ * 계좌 lock 보다 먼저 확인하므로 재요청은 lock 을 다시 잡지 않는다.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Inherited
+public @interface Idempotent {
+}
@@ -1,6 +1,7 @@
 package com.example.account.config;
 
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import redis.embedded.RedisServer;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,6 +10,8 @@ import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 
 @Configuration
+// 로컬에서 여러 노드를 띄울 때는 첫 노드만 redis 를 띄우고 나머지는 false 로 붙는다
+@ConditionalOnProperty(name = "account.redis.embedded", havingValue = "true", matchIfMissing = true)
 public class LocalRedisConfig {
 
     @Value("${spring.redis.port}")
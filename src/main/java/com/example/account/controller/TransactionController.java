@@ -1,21 +1,37 @@
 package com.example.account.controller;
 
 import com.example.account.aop.AccountLock;
+import com.example.account.aop.Idempotent;
 import com.example.account.dto.CancelBalance;
 import com.example.account.dto.QueryTransactionResponse;
+import com.example.account.dto.TransactionDto;
+import com.example.account.dto.TransactionHistory;
+import com.example.account.dto.Transfer;
 import com.example.account.dto.UseBalance;
+import com.example.account.dto.UseBalanceBatch;
 import com.example.account.exception.AccountException;
+import com.example.account.service.TransactionExportService;
+import com.example.account.service.TransactionGroupWriter;
 import com.example.account.service.TransactionService;
+import com.example.account.type.ExportFormat;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.util.List;
 
 /**
  * 1. 잔액 사용
  * 2. 잔액 사용 취소
  * 3. 거래 확인
+ * 4. 잔액 일괄 사용
+ * 5. 계좌별 거래 내역
+ * 6. 계좌별 전체 거래 내역 export
+ * 7. 계좌 간 이체
  */
 
 @Slf4j
@@ -23,16 +39,18 @@ import javax.validation.Valid;
 @RequiredArgsConstructor
 public class TransactionController {
     private final TransactionService transactionService;
+    private final TransactionExportService transactionExportService;
+    private final TransactionGroupWriter transactionGroupWriter;
 
     @PostMapping("/transaction/use")
-    @AccountLock
+    @Idempotent
+    @AccountLock(shardedBalance = true, combining = true)
     public UseBalance.Response useBalance(
             @Valid @RequestBody UseBalance.Request request
-    ) throws InterruptedException {
+    ) {
         try {
-            Thread.sleep(3000L);
             return UseBalance.Response.from(
-                    transactionService.useBalance(request.getUserId(),
+                    transactionGroupWriter.useBalance(request.getUserId(),
                             request.getAccountNumber(), request.getAmount()));
 
         } catch (AccountException e) {
@@ -46,7 +64,46 @@ public class TransactionController {
         }
     }
 
+    /**
+     * 여러 계좌에 걸친 잔액 사용을 한 번에 처리한다.
+     * 항목별 실패는 결과에 담아서 돌려주고 나머지 항목은 계속 처리한다.
+     */
+    @PostMapping("/transaction/use/batch")
+    @AccountLock
+    public UseBalanceBatch.Response useBalanceBatch(
+            @Valid @RequestBody UseBalanceBatch.Request request
+    ) {
+        return UseBalanceBatch.Response.from(
+                transactionService.useBalanceBatch(request.getItems()));
+    }
+
+    /**
+     * 두 계좌의 lock 을 계좌 번호 순서로 함께 잡고 출금과 입금을 한 번에 처리한다.
+     */
+    @PostMapping("/transaction/transfer")
+    @AccountLock
+    public Transfer.Response transfer(
+            @Valid @RequestBody Transfer.Request request
+    ) {
+        try {
+            List<TransactionDto> transactions = transactionService.transfer(
+                    request.getUserId(), request.getFromAccountNumber(),
+                    request.getToAccountNumber(), request.getAmount());
+            return Transfer.Response.from(transactions.get(0), transactions.get(1));
+
+        } catch (AccountException e) {
+            log.error("Failed to transfer.");
+
+            transactionService.saveFailedTransferTransaction(
+                    request.getFromAccountNumber(),
+                    request.getAmount()
+            );
+            throw e;
+        }
+    }
+
     @PostMapping("/transaction/cancel")
+    @Idempotent
     @AccountLock
     public CancelBalance.Response cancelBalance(
             @Valid @RequestBody CancelBalance.Request request
@@ -74,4 +131,25 @@ public class TransactionController {
     ){
         return QueryTransactionResponse.from(transactionService.queryTransaction(transactionId));
     }
+
+    @GetMapping("/account/{accountNumber}/transactions")
+    public TransactionHistory.Response getTransactionHistory(
+            @PathVariable String accountNumber,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", defaultValue = "100") int limit
+    ) {
+        return transactionService.getTransactionHistory(accountNumber, after, limit);
+    }
+
+    @GetMapping("/account/{accountNumber}/transactions/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @PathVariable String accountNumber,
+            @RequestParam(value = "format", defaultValue = "NDJSON") ExportFormat format
+    ) {
+        Long accountId = transactionExportService.getAccountId(accountNumber);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .body(outputStream ->
+                        transactionExportService.export(accountId, format, outputStream));
+    }
 }
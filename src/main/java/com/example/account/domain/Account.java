@@ -15,12 +15,17 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Builder
 @Entity
+@Table(uniqueConstraints = {
+        @UniqueConstraint(name = "uk_account_account_number", columnNames = "account_number")
+}, indexes = {
+        @Index(name = "idx_account_account_user", columnList = "account_user_id")
+})
 public class Account extends BaseEntity{
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = PooledSequenceGenerator.NAME)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private AccountUser accountUser;
     private String accountNumber;
 
@@ -32,6 +37,9 @@ public class Account extends BaseEntity{
     private LocalDateTime registeredAt;
     private LocalDateTime unRegisteredAt;
 
+    @Version
+    private Long version;
+
     public void useBalance(Long amount){
         if(amount > balance){
             throw new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE);
@@ -0,0 +1,29 @@
+package com.example.account.domain;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * 거래가 몰리는 계좌의 잔액을 나눠 담는 slot.
+ * slot 마다 따로 차감해서 같은 계좌의 요청이 서로 다른 row 에서 동시에 처리된다.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+@Table(uniqueConstraints = {
+        @UniqueConstraint(name = "uk_account_balance_slot_account_slot",
+                columnNames = {"account_id", "slot"})
+})
+public class AccountBalanceSlot extends BaseEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    private Account account;
+
+    private Integer slot;
+    private Long balance;
+
+}
@@ -1,6 +1,7 @@
 package com.example.account.domain;
 
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -19,7 +20,9 @@ import java.time.LocalDateTime;
 @EntityListeners(AuditingEntityListener.class) //createdDate, LastModifiedDate
 public class BaseEntity {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = PooledSequenceGenerator.NAME)
+    @GenericGenerator(name = PooledSequenceGenerator.NAME,
+            strategy = "com.example.account.domain.PooledSequenceGenerator")
     private Long id;
 
     @CreatedDate
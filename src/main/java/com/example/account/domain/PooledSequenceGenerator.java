@@ -0,0 +1,32 @@
+package com.example.account.domain;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * 모든 엔티티가 같이 쓰는 pooled-lo 시퀀스.
+ * 시퀀스 한 번 호출로 allocation-size 만큼의 id 를 메모리에서 나눠 준다.
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+    public static final String NAME = "pooled";
+    public static final String ALLOCATION_SIZE_SETTING = "account.id.allocation-size";
+    private static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry)
+            throws MappingException {
+        int allocationSize = ConfigurationHelper.getInt(ALLOCATION_SIZE_SETTING,
+                serviceRegistry.getService(ConfigurationService.class).getSettings(),
+                DEFAULT_ALLOCATION_SIZE);
+        params.setProperty(SEQUENCE_PARAM, "hibernate_sequence");
+        params.setProperty(INCREMENT_PARAM, String.valueOf(allocationSize));
+        params.setProperty(OPT_PARAM, "pooled-lo");
+        super.configure(type, params, serviceRegistry);
+    }
+}
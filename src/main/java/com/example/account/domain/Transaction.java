@@ -4,10 +4,7 @@ import com.example.account.type.TransactionResultType;
 import com.example.account.type.TransactionType;
 import lombok.*;
 
-import javax.persistence.Entity;
-import javax.persistence.EnumType;
-import javax.persistence.Enumerated;
-import javax.persistence.ManyToOne;
+import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Getter
@@ -16,6 +13,13 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @Builder
 @Entity
+@Table(uniqueConstraints = {
+        @UniqueConstraint(name = "uk_transaction_transaction_id", columnNames = "transaction_id")
+}, indexes = {
+        // 계좌별 거래 내역 조회 (keyset: transacted_at, id)
+        @Index(name = "idx_transaction_account_transacted_at",
+                columnList = "account_id, transacted_at, id")
+})
 public class Transaction extends BaseEntity {
 
     @Enumerated(EnumType.STRING)
@@ -24,7 +28,7 @@ public class Transaction extends BaseEntity {
     @Enumerated(EnumType.STRING)
     private TransactionResultType transactionResultType;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Account account;
 
     private Long amount;
@@ -33,4 +37,7 @@ public class Transaction extends BaseEntity {
     private String transactionId;
     private LocalDateTime transactedAt;
 
+    // 이체의 반대편 거래 (출금 <-> 입금)
+    private String linkedTransactionId;
+
 }
@@ -0,0 +1,11 @@
+package com.example.account.dto;
+
+import com.example.account.type.AccountStatus;
+
+public interface AccountMetadataView {
+    Long getId();
+
+    Long getUserId();
+
+    AccountStatus getAccountStatus();
+}
@@ -0,0 +1,16 @@
+package com.example.account.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BalanceMismatch {
+    private String accountNumber;
+    // 없으면 마지막 거래 잔액과 Account.balance 가 다른 경우
+    private String transactionId;
+    private Long expectedBalance;
+    private Long actualBalance;
+}
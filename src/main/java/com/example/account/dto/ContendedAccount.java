@@ -0,0 +1,16 @@
+package com.example.account.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ContendedAccount {
+    private String accountNumber;
+    private long acquisitions;
+    private long failures;
+    private double totalWaitMillis;
+    private double maxWaitMillis;
+}
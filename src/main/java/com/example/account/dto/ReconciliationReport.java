@@ -0,0 +1,27 @@
+package com.example.account.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationReport {
+    private boolean running;
+    private boolean failed;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long rangesTotal;
+    private long rangesDone;
+    private long accountsChecked;
+    private long accountsSkipped;
+    private long transactionsChecked;
+    private long mismatchCount;
+    private double accountsPerSecond;
+    // 앞에서부터 일부만 (전체는 로그)
+    private List<BalanceMismatch> mismatches;
+}
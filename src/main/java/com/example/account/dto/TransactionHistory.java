@@ -0,0 +1,101 @@
+package com.example.account.dto;
+
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import lombok.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class TransactionHistory {
+    /**
+     * 마지막으로 받은 거래의 (transactedAt, id).
+     * 다음 페이지는 이 값보다 뒤의 거래부터 조회한다.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Cursor {
+        private final LocalDateTime transactedAt;
+        private final Long id;
+
+        public static Cursor from(TransactionHistoryView view) {
+            return new Cursor(view.getTransactedAt(), view.getId());
+        }
+
+        public String encode() {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (transactedAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        public static Cursor decode(String cursor) {
+            try {
+                String[] fields = new String(Base64.getUrlDecoder().decode(cursor),
+                        StandardCharsets.UTF_8).split("\\|");
+                return new Cursor(LocalDateTime.parse(fields[0]), Long.parseLong(fields[1]));
+            } catch (RuntimeException e) {
+                throw new AccountException(ErrorCode.INVALID_REQUEST);
+            }
+        }
+    }
+
+    /**
+     * 거래 시간 순서대로 돌려준다.
+     * nextCursor 는 마지막 항목 기준이다. 거래 시간은 커밋 전에 정해지므로 늦게 커밋된 거래
+     * (ledger / 잔액 엔진 반영분 등)는 이미 받은 cursor 앞에 들어갈 수 있어서,
+     * cursor 를 따라 새 거래를 이어 받는 방식(tailing)은 빠짐없이 받는다고 보장하지 않는다.
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Response {
+        private String accountNumber;
+        private List<Item> items;
+        private String nextCursor;
+        private boolean hasNext;
+
+        public static Response from(String accountNumber, List<TransactionHistoryView> views,
+                                    String after, boolean hasNext) {
+            return Response.builder()
+                    .accountNumber(accountNumber)
+                    .items(views.stream()
+                            .map(Item::from)
+                            .collect(Collectors.toList()))
+                    .nextCursor(views.isEmpty() ? after
+                            : Cursor.from(views.get(views.size() - 1)).encode())
+                    .hasNext(hasNext)
+                    .build();
+        }
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Item {
+        private TransactionType transactionType;
+        private TransactionResultType transactionResult;
+        private String transactionId;
+        private Long amount;
+        private Long balanceSnapshot;
+        private LocalDateTime transactedAt;
+
+        public static Item from(TransactionHistoryView view) {
+            return Item.builder()
+                    .transactionType(view.getTransactionType())
+                    .transactionResult(view.getTransactionResultType())
+                    .transactionId(view.getTransactionId())
+                    .amount(view.getAmount())
+                    .balanceSnapshot(view.getBalanceSnapshot())
+                    .transactedAt(view.getTransactedAt())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.account.dto;
+
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+
+import java.time.LocalDateTime;
+
+public interface TransactionHistoryView {
+    Long getId();
+
+    TransactionType getTransactionType();
+
+    TransactionResultType getTransactionResultType();
+
+    Long getAmount();
+
+    Long getBalanceSnapshot();
+
+    String getTransactionId();
+
+    LocalDateTime getTransactedAt();
+}
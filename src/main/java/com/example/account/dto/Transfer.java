@@ -0,0 +1,75 @@
+package com.example.account.dto;
+
+import com.example.account.aop.AccountLockIdsInterface;
+import com.example.account.type.TransactionResultType;
+import lombok.*;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class Transfer {
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Request implements AccountLockIdsInterface {
+        @NotNull
+        @Min(1)
+        private Long userId;
+
+        @NotNull
+        @Size(min = 10, max = 10)
+        private String fromAccountNumber;
+
+        @NotNull
+        @Size(min = 10, max = 10)
+        private String toAccountNumber;
+
+        @NotNull
+        @Min(10)
+        @Max(1000_000_000)
+        private Long amount;
+
+        // 두 계좌 모두 잠근다 (정렬은 LockService 에서)
+        @Override
+        public List<String> getAccountNumbers() {
+            return List.of(fromAccountNumber, toAccountNumber);
+        }
+    }
+
+    /**
+     * 출금 거래와 입금 거래를 함께 돌려준다.
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Response {
+        private String fromAccountNumber;
+        private String toAccountNumber;
+        private TransactionResultType transactionResult;
+        private String transactionId;
+        private String depositTransactionId;
+        private Long amount;
+        private Long balance;
+        private LocalDateTime transactedAt;
+
+        public static Response from(TransactionDto withdrawal, TransactionDto deposit) {
+            return Response.builder()
+                    .fromAccountNumber(withdrawal.getAccountNumber())
+                    .toAccountNumber(deposit.getAccountNumber())
+                    .transactionResult(withdrawal.getTransactionResultType())
+                    .transactionId(withdrawal.getTransactionId())
+                    .depositTransactionId(deposit.getTransactionId())
+                    .amount(withdrawal.getAmount())
+                    .balance(withdrawal.getBalanceSnapshot())
+                    .transactedAt(withdrawal.getTransactedAt())
+                    .build();
+        }
+    }
+}
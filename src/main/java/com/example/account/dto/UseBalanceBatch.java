@@ -0,0 +1,78 @@
+package com.example.account.dto;
+
+import com.example.account.aop.AccountLockIdsInterface;
+import com.example.account.type.ErrorCode;
+import com.example.account.type.TransactionResultType;
+import lombok.*;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class UseBalanceBatch {
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Request implements AccountLockIdsInterface {
+        @Valid
+        @NotNull
+        @Size(min = 1, max = 100)
+        private List<UseBalance.Request> items;
+
+        @Override
+        public List<String> getAccountNumbers() {
+            return items.stream()
+                    .map(UseBalance.Request::getAccountNumber)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * 요청 항목 순서대로 결과를 돌려준다.
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Response {
+        private List<Item> items;
+
+        public static Response from(List<TransactionDto> transactionDtos) {
+            return Response.builder()
+                    .items(transactionDtos.stream()
+                            .map(Item::from)
+                            .collect(Collectors.toList()))
+                    .build();
+        }
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Item {
+        private String accountNumber;
+        private TransactionResultType transactionResult;
+        private String transactionId;
+        private Long amount;
+        private LocalDateTime transactedAt;
+        private ErrorCode errorCode;
+
+        public static Item from(TransactionDto transactionDto) {
+            return Item.builder()
+                    .accountNumber(transactionDto.getAccountNumber())
+                    .transactionResult(transactionDto.getTransactionResultType())
+                    .transactionId(transactionDto.getTransactionId())
+                    .amount(transactionDto.getAmount())
+                    .transactedAt(transactionDto.getTransactedAt())
+                    .errorCode(transactionDto.getErrorCode())
+                    .build();
+        }
+    }
+}
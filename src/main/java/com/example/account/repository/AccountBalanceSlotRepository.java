@@ -0,0 +1,54 @@
+package com.example.account.repository;
+
+import com.example.account.domain.AccountBalanceSlot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.util.List;
+
+@Repository
+public interface AccountBalanceSlotRepository extends JpaRepository<AccountBalanceSlot, Long> {
+    boolean existsByAccountId(Long accountId);
+
+    // slot 번호 순서의 잔액 (엔티티로 올리지 않는다)
+    @Query("select s.balance from AccountBalanceSlot s" +
+            " where s.account.id = :accountId order by s.slot")
+    List<Long> findBalancesByAccountId(@Param("accountId") Long accountId);
+
+    // 여러 slot 을 합쳐서 차감할 때, 항상 slot 번호 순서로 잠근다
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from AccountBalanceSlot s" +
+            " where s.account.id = :accountId order by s.slot")
+    List<AccountBalanceSlot> findForUpdateByAccountId(@Param("accountId") Long accountId);
+
+    // 잔액이 충분한 경우에만 차감 (영향받은 row 수 반환)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update AccountBalanceSlot s" +
+            " set s.balance = s.balance - :amount," +
+            " s.updatedAt = current_timestamp" +
+            " where s.account.id = :accountId" +
+            " and s.slot = :slot" +
+            " and s.balance >= :amount")
+    int debitIfSufficient(@Param("accountId") Long accountId,
+                          @Param("slot") Integer slot,
+                          @Param("amount") Long amount);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update AccountBalanceSlot s" +
+            " set s.balance = s.balance + :amount," +
+            " s.updatedAt = current_timestamp" +
+            " where s.account.id = :accountId" +
+            " and s.slot = :slot")
+    int credit(@Param("accountId") Long accountId,
+               @Param("slot") Integer slot,
+               @Param("amount") Long amount);
+
+    @Query("select coalesce(sum(s.balance), 0) from AccountBalanceSlot s" +
+            " where s.account.accountNumber = :accountNumber")
+    long sumBalanceByAccountNumber(@Param("accountNumber") String accountNumber);
+}
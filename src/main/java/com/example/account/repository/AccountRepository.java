@@ -2,7 +2,14 @@ package com.example.account.repository;
 
 import com.example.account.domain.Account;
 import com.example.account.domain.AccountUser;
+import com.example.account.dto.AccountBalanceView;
+import com.example.account.dto.AccountDto;
+import com.example.account.dto.AccountMetadataView;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -10,11 +17,78 @@ import java.util.Optional;
 
 @Repository
 public interface AccountRepository extends JpaRepository<Account, Long> {
-    Optional<Account> findFirstByOrderByIdDesc();
+    @Query("select max(a.accountNumber) from Account a")
+    Optional<String> findMaxAccountNumber();
 
     Integer countByAccountUser(AccountUser accountUser);
 
     Optional<Account> findByAccountNumber(String accountNumber);
 
     List<Account> findByAccountUser(AccountUser accountUser);
+
+    @Query("select max(a.id) from Account a")
+    Optional<Long> findMaxId();
+
+    // 대사 범위 (afterId, toId) 안의 계좌를 id 순서로 (해지 계좌 포함)
+    List<Account> findByIdGreaterThanAndIdLessThanOrderById(
+            Long afterId, Long toId, Pageable pageable);
+
+    @Query("select new com.example.account.dto.AccountDto(a.accountUser.id, a.accountNumber," +
+            " a.balance, a.registeredAt, a.unRegisteredAt)" +
+            " from Account a where a.accountUser.id = :userId")
+    List<AccountDto> findDtosByUserId(@Param("userId") Long userId);
+
+    // 엔티티를 그대로 응답으로 내보낼 때 (lazy 소유주를 함께 로딩)
+    @Query("select a from Account a join fetch a.accountUser where a.id = :id")
+    Optional<Account> findWithAccountUserById(@Param("id") Long id);
+
+    // 사용중, 소유주 일치, 잔액 충분한 경우에만 차감 (영향받은 row 수 반환)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Account a" +
+            " set a.balance = a.balance - :amount," +
+            " a.version = a.version + 1," +
+            " a.updatedAt = current_timestamp" +
+            " where a.accountNumber = :accountNumber" +
+            " and a.accountUser.id = :userId" +
+            " and a.accountStatus = com.example.account.type.AccountStatus.IN_USE" +
+            " and a.balance >= :amount")
+    int debitIfSufficient(@Param("accountNumber") String accountNumber,
+                          @Param("userId") Long userId,
+                          @Param("amount") Long amount);
+
+    // 소유주를 cache 로 확인한 경우: 사용중, 잔액 충분한 경우에만 차감 (영향받은 row 수 반환)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Account a" +
+            " set a.balance = a.balance - :amount," +
+            " a.version = a.version + 1," +
+            " a.updatedAt = current_timestamp" +
+            " where a.id = :id" +
+            " and a.accountStatus = com.example.account.type.AccountStatus.IN_USE" +
+            " and a.balance >= :amount")
+    int debitByIdIfSufficient(@Param("id") Long id, @Param("amount") Long amount);
+
+    @Query("select a.balance from Account a where a.id = :id")
+    Long findBalanceById(@Param("id") Long id);
+
+    // 사용중인 계좌에만 입금 (영향받은 row 수 반환)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Account a" +
+            " set a.balance = a.balance + :amount," +
+            " a.version = a.version + 1," +
+            " a.updatedAt = current_timestamp" +
+            " where a.accountNumber = :accountNumber" +
+            " and a.accountStatus = com.example.account.type.AccountStatus.IN_USE")
+    int creditIfInUse(@Param("accountNumber") String accountNumber,
+                      @Param("amount") Long amount);
+
+    @Query("select a.accountUser.id as userId, a.accountStatus as accountStatus," +
+            " a.balance as balance" +
+            " from Account a where a.accountNumber = :accountNumber")
+    Optional<AccountBalanceView> findBalanceViewByAccountNumber(
+            @Param("accountNumber") String accountNumber);
+
+    @Query("select a.id as id, a.accountUser.id as userId, a.accountStatus as accountStatus" +
+            " from Account a where a.accountNumber = :accountNumber")
+    Optional<AccountMetadataView> findMetadataByAccountNumber(
+            @Param("accountNumber") String accountNumber);
 }
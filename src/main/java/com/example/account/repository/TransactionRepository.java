@@ -1,13 +1,75 @@
 package com.example.account.repository;
 
+import com.example.account.domain.Account;
 import com.example.account.domain.Transaction;
+import com.example.account.dto.TransactionDto;
+import com.example.account.dto.TransactionHistoryView;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface TransactionRepository
         extends JpaRepository<Transaction, Long> {
     Optional<Transaction> findByTransactionId(String transactionId);
+
+    @Query("select new com.example.account.dto.TransactionDto(a.accountNumber," +
+            " t.transactionType, t.transactionResultType, t.amount, t.balanceSnapshot," +
+            " t.transactionId, t.transactedAt)" +
+            " from Transaction t join t.account a where t.transactionId = :transactionId")
+    Optional<TransactionDto> findDtoByTransactionId(
+            @Param("transactionId") String transactionId);
+
+    Optional<Transaction> findFirstByAccountOrderByTransactedAtDescIdDesc(Account account);
+
+    String HISTORY_SELECT = "select t.id as id, t.transactionType as transactionType," +
+            " t.transactionResultType as transactionResultType, t.amount as amount," +
+            " t.balanceSnapshot as balanceSnapshot, t.transactionId as transactionId," +
+            " t.transactedAt as transactedAt from Transaction t";
+
+    @Query(HISTORY_SELECT +
+            " where t.account.id = :accountId" +
+            " order by t.transactedAt, t.id")
+    List<TransactionHistoryView> findHistory(@Param("accountId") Long accountId,
+                                             Pageable pageable);
+
+    // keyset: (transactedAt, id) 가 cursor 보다 뒤인 것만, offset 없이 index 범위로 읽는다
+    // transactedAt 은 커밋 전에 정해지고 id 는 노드마다 따로 할당(pooled-lo)하므로,
+    // 늦게 커밋된 거래(ledger / 잔액 엔진 반영분 등)는 이미 지나간 cursor 앞에 들어가 다음 페이지에 안 보일 수 있다
+    @Query(HISTORY_SELECT +
+            " where t.account.id = :accountId" +
+            " and t.transactedAt >= :transactedAt" +
+            " and (t.transactedAt > :transactedAt or t.id > :id)" +
+            " order by t.transactedAt, t.id")
+    List<TransactionHistoryView> findHistoryAfter(@Param("accountId") Long accountId,
+                                                  @Param("transactedAt") LocalDateTime transactedAt,
+                                                  @Param("id") Long id,
+                                                  Pageable pageable);
+
+    // 전체 내역 export 용, 엔티티 없이 fetch size 단위로 앞으로만 읽는다 (트랜잭션 안에서 사용)
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query(HISTORY_SELECT +
+            " where t.account.id = :accountId" +
+            " order by t.transactedAt, t.id")
+    Stream<TransactionHistoryView> streamHistory(@Param("accountId") Long accountId);
+
+    @Query("select t.transactionId from Transaction t" +
+            " where t.transactionId in :transactionIds")
+    List<String> findTransactionIdsIn(
+            @Param("transactionIds") Collection<String> transactionIds);
 }
@@ -0,0 +1,128 @@
+package com.example.account.service;
+
+import com.example.account.dto.AccountMetadataView;
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountRepository;
+import com.example.account.type.AccountStatus;
+import com.example.account.type.ErrorCode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 계좌 번호 -> (계좌 id, 소유주, 상태) cache.
+ * 없는 계좌도 그대로 cache 해서 잘못된 요청은 DB 를 보지 않고 거절한다.
+ * 계좌가 생성/해지되면 redis pub/sub 으로 모든 노드의 cache 를 지운다.
+ */
+@Slf4j
+@Service
+public class AccountMetadataCache {
+    private static final String INVALIDATE_TOPIC = "ACMD:invalidate";
+
+    private final RedissonClient redissonClient;
+    private final AccountRepository accountRepository;
+    private final Cache<String, Optional<AccountMetadataView>> cache;
+
+    private final boolean enabled;
+
+    public AccountMetadataCache(
+            RedissonClient redissonClient,
+            AccountRepository accountRepository,
+            MeterRegistry meterRegistry,
+            @Value("${account.metadata-cache.enabled:false}") boolean enabled,
+            @Value("${account.metadata-cache.max-size:100000}") long maxSize,
+            @Value("${account.metadata-cache.ttl-seconds:600}") long ttlSeconds
+    ) {
+        this.redissonClient = redissonClient;
+        this.accountRepository = accountRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "account.metadata-cache");
+        this.enabled = enabled;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        if (!enabled) {
+            return;
+        }
+        getTopic().addListener(String.class,
+                (channel, accountNumber) -> cache.invalidate(accountNumber));
+    }
+
+    /**
+     * 없는 계좌, 해지된 계좌면 바로 실패시킨다.
+     * 확인한 메타데이터(id, 소유주)를 돌려주고, cache 가 꺼져 있으면 비어 있다.
+     */
+    public Optional<AccountMetadataView> validateInUse(String accountNumber) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        AccountMetadataView metadata = get(accountNumber)
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+        if (metadata.getAccountStatus() == AccountStatus.UNREGISTERED) {
+            throw new AccountException(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED);
+        }
+        return Optional.of(metadata);
+    }
+
+    public Optional<AccountMetadataView> get(String accountNumber) {
+        if (!enabled) {
+            // 무효화가 꺼져 있으므로 cache 하지 않는다
+            return accountRepository.findMetadataByAccountNumber(accountNumber);
+        }
+        return cache.get(accountNumber, accountRepository::findMetadataByAccountNumber);
+    }
+
+    /**
+     * 커밋 후에 모든 노드에서 지운다 (트랜잭션 밖이면 바로).
+     */
+    public void evict(String accountNumber) {
+        if (!enabled) {
+            return;
+        }
+        cache.invalidate(accountNumber);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publishEvict(accountNumber);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        publishEvict(accountNumber);
+                    }
+                });
+    }
+
+    private void publishEvict(String accountNumber) {
+        cache.invalidate(accountNumber);
+        try {
+            getTopic().publish(accountNumber);
+        } catch (RedisException e) {
+            log.error("account metadata evict publish failed. accountNumber : {}",
+                    accountNumber, e);
+        }
+    }
+
+    private RTopic getTopic() {
+        return redissonClient.getTopic(INVALIDATE_TOPIC, StringCodec.INSTANCE);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.account.service;
+
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountRepository;
+import com.example.account.type.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * 계좌 번호를 redis 카운터에서 block 단위로 예약해 두고 메모리에서 하나씩 나눠 준다.
+ * 노드마다 서로 다른 block 을 받으므로 계좌 생성마다 조회하거나 조율할 필요가 없다.
+ */
+@Slf4j
+@Service
+public class AccountNumberAllocator {
+    private static final String SEQUENCE_KEY = "ACNO:seq";
+    private static final long FIRST_ACCOUNT_NUMBER = 1_000_000_000L;
+    private static final long LAST_ACCOUNT_NUMBER = 9_999_999_999L;
+
+    private final RedissonClient redissonClient;
+    private final AccountRepository accountRepository;
+    private final int blockSize;
+
+    // [next, limit) 가 이 노드에 예약된 번호
+    private long next;
+    private long limit;
+
+    public AccountNumberAllocator(
+            RedissonClient redissonClient,
+            AccountRepository accountRepository,
+            @Value("${account.account-number.block-size:100}") int blockSize
+    ) {
+        this.redissonClient = redissonClient;
+        this.accountRepository = accountRepository;
+        this.blockSize = Math.max(blockSize, 1);
+    }
+
+    public synchronized String allocate() {
+        if (next >= limit) {
+            reserveBlock();
+        }
+        return String.valueOf(next++);
+    }
+
+    private void reserveBlock() {
+        RAtomicLong sequence = redissonClient.getAtomicLong(SEQUENCE_KEY);
+        if (!sequence.isExists()) {
+            // 카운터가 없을 때만 DB 의 마지막 번호로 초기화, 이미 있으면 무시된다.
+            sequence.compareAndSet(0L, getSeed());
+        }
+        long end = sequence.addAndGet(blockSize);
+        long start = end - blockSize;
+        if (start > LAST_ACCOUNT_NUMBER) {
+            log.error("account numbers exhausted. sequence : {}", end);
+            throw new AccountException(ErrorCode.ACCOUNT_NUMBER_EXHAUSTED);
+        }
+        log.debug("Reserved account numbers [{}, {})", start, end);
+        next = start;
+        limit = Math.min(end, LAST_ACCOUNT_NUMBER + 1);
+    }
+
+    private long getSeed() {
+        return accountRepository.findMaxAccountNumber()
+                .map(accountNumber -> Long.parseLong(accountNumber) + 1)
+                .orElse(FIRST_ACCOUNT_NUMBER);
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.account.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 살아있는 노드들로 만든 hash ring 에서 계좌의 담당 노드를 정한다.
+ * 노드는 redis 에 lease 만료 시각으로 등록하고 주기적으로 갱신하며,
+ * lease 가 끝난 노드는 ring 에서 빠진다.
+ */
+@Slf4j
+@Service
+public class AccountOwnership {
+    private static final String NODES_KEY = "ANODES";
+
+    private final RedissonClient redissonClient;
+
+    private final boolean enabled;
+    private final String configuredNodeUrl;
+    private final String host;
+    private final long leaseMillis;
+    private final int virtualNodes;
+
+    private volatile String nodeUrl;
+    private volatile ConsistentHashRing ring = ConsistentHashRing.EMPTY;
+    // 자기 lease 를 갱신하지 못하면 담당 계좌가 있다고 보지 않는다
+    private volatile long leaseUntil;
+
+    public AccountOwnership(
+            RedissonClient redissonClient,
+            @Value("${account.ownership.enabled:false}") boolean enabled,
+            @Value("${account.ownership.node-url:}") String configuredNodeUrl,
+            @Value("${account.ownership.host:localhost}") String host,
+            @Value("${account.ownership.lease-millis:5000}") long leaseMillis,
+            @Value("${account.ownership.virtual-nodes:64}") int virtualNodes
+    ) {
+        this.redissonClient = redissonClient;
+        this.enabled = enabled;
+        this.configuredNodeUrl = configuredNodeUrl;
+        this.host = host;
+        this.leaseMillis = leaseMillis;
+        this.virtualNodes = virtualNodes;
+    }
+
+    /**
+     * 포트가 정해진 뒤에 등록한다 (server.port=0 으로 여러 노드를 띄우는 경우).
+     */
+    @EventListener
+    public void register(WebServerInitializedEvent event) {
+        if (!enabled || "management".equals(event.getApplicationContext().getServerNamespace())) {
+            return;
+        }
+        nodeUrl = configuredNodeUrl.isEmpty()
+                ? "http://" + host + ":" + event.getWebServer().getPort()
+                : configuredNodeUrl;
+        log.info("Registering account owner node : {}", nodeUrl);
+        heartbeat();
+    }
+
+    @Scheduled(fixedDelayString = "${account.ownership.refresh-millis:1000}")
+    public void heartbeat() {
+        if (!enabled || nodeUrl == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            RMap<String, String> nodes = getNodes();
+            nodes.fastPut(nodeUrl, String.valueOf(now + leaseMillis));
+            leaseUntil = now + leaseMillis;
+            refresh(nodes, now);
+        } catch (RedisException e) {
+            log.error("Account owner heartbeat failed. node : {}", nodeUrl, e);
+        }
+    }
+
+    private void refresh(RMap<String, String> nodes, long now) {
+        List<String> liveNodes = new ArrayList<>();
+        for (Map.Entry<String, String> entry : nodes.readAllMap().entrySet()) {
+            long nodeLeaseUntil = parseLease(entry.getValue());
+            if (nodeLeaseUntil > now) {
+                liveNodes.add(entry.getKey());
+            } else if (nodeLeaseUntil + leaseMillis < now) {
+                // 충분히 오래 갱신이 없는 노드는 정리
+                nodes.fastRemoveAsync(entry.getKey());
+            }
+        }
+        ConsistentHashRing current = ring;
+        ConsistentHashRing refreshed = new ConsistentHashRing(liveNodes, virtualNodes);
+        if (!refreshed.getNodes().equals(current.getNodes())) {
+            ring = refreshed;
+            log.info("Account owner nodes changed : {} -> {}",
+                    current.getNodes(), refreshed.getNodes());
+        }
+    }
+
+    @PreDestroy
+    public void deregister() {
+        if (!enabled || nodeUrl == null) {
+            return;
+        }
+        leaseUntil = 0L;
+        try {
+            getNodes().fastRemove(nodeUrl);
+        } catch (RedisException e) {
+            log.error("Account owner deregister failed. node : {}", nodeUrl, e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 이 노드가 담당하고 lease 도 유효한 계좌인지
+     */
+    public boolean isOwner(String accountNumber) {
+        String self = nodeUrl;
+        return enabled && self != null
+                && System.currentTimeMillis() < leaseUntil
+                && self.equals(ring.getOwner(accountNumber));
+    }
+
+    /**
+     * 다른 노드가 담당하는 계좌면 그 노드 주소
+     */
+    public Optional<String> getRemoteOwner(String accountNumber) {
+        String self = nodeUrl;
+        if (!enabled || self == null) {
+            return Optional.empty();
+        }
+        String owner = ring.getOwner(accountNumber);
+        return owner == null || owner.equals(self) ? Optional.empty() : Optional.of(owner);
+    }
+
+    public String getNodeUrl() {
+        return nodeUrl;
+    }
+
+    public List<String> getLiveNodes() {
+        return ring.getNodes();
+    }
+
+    private RMap<String, String> getNodes() {
+        return redissonClient.getMap(NODES_KEY, StringCodec.INSTANCE);
+    }
+
+    private static long parseLease(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.account.service;
+
+import com.example.account.aop.AccountLock;
+import com.example.account.aop.AccountLockIdInterface;
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.HttpServletRequest;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * 다른 노드가 담당하는 계좌의 요청은 담당 노드로 넘겨서 한 노드에서 계좌 요청이 직렬화되게 한다.
+ * 넘겨받은 요청은 다시 넘기지 않고 처리하며, 담당 노드에 연결하지 못하면 이 노드에서 처리한다.
+ * (어느 노드에서 처리하든 계좌 lock 으로 보호되므로 담당이 바뀌는 중에도 결과는 같다)
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE) // IdempotencyAspect 보다 바깥에서 실행 (담당 노드에서 키를 처리)
+@Slf4j
+public class AccountOwnershipAspect {
+    public static final String FORWARDED_HEADER = "X-Account-Forwarded-By";
+
+    private final AccountOwnership accountOwnership;
+    private final ObjectMapper objectMapper;
+    private final RestTemplate restTemplate;
+    private final Counter forwardCounter;
+    private final Counter forwardFallbackCounter;
+
+    public AccountOwnershipAspect(
+            AccountOwnership accountOwnership,
+            ObjectMapper objectMapper,
+            RestTemplateBuilder restTemplateBuilder,
+            MeterRegistry meterRegistry,
+            @Value("${account.ownership.forward-timeout-millis:5000}") long forwardTimeoutMillis
+    ) {
+        this.accountOwnership = accountOwnership;
+        this.objectMapper = objectMapper;
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofMillis(Math.min(forwardTimeoutMillis, 1000L)))
+                .setReadTimeout(Duration.ofMillis(forwardTimeoutMillis))
+                .build();
+        this.forwardCounter = meterRegistry.counter("account.ownership.forwards");
+        this.forwardFallbackCounter = meterRegistry.counter("account.ownership.forward-fallbacks");
+    }
+
+    @Around("@annotation(accountLock) && args(request)")
+    public Object aroundMethod(
+            ProceedingJoinPoint pjp,
+            AccountLock accountLock,
+            AccountLockIdInterface request
+    ) throws Throwable {
+        HttpServletRequest servletRequest = getServletRequest();
+        if (servletRequest == null || servletRequest.getHeader(FORWARDED_HEADER) != null) {
+            return pjp.proceed();
+        }
+        Optional<String> owner = accountOwnership.getRemoteOwner(request.getAccountNumber());
+        if (owner.isEmpty()) {
+            return pjp.proceed();
+        }
+
+        JsonNode body;
+        try {
+            forwardCounter.increment();
+            body = restTemplate.postForObject(owner.get() + servletRequest.getRequestURI(),
+                    new HttpEntity<>(request, forwardHeaders(servletRequest)), JsonNode.class);
+        } catch (ResourceAccessException e) {
+            if (!(e.getCause() instanceof ConnectException)) {
+                // 담당 노드가 처리했는지 알 수 없으므로 여기서 다시 처리하지 않는다
+                log.error("Forwarding failed. owner : {}", owner.get(), e);
+                throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+            }
+            log.warn("Owner node is unreachable, processing locally. owner : {}", owner.get());
+            forwardFallbackCounter.increment();
+            return pjp.proceed();
+        } catch (RestClientException e) {
+            log.error("Forwarding failed. owner : {}", owner.get(), e);
+            throw new AccountException(ErrorCode.INTERNAL_SERVER_ERROR);
+        }
+
+        if (body == null) {
+            throw new AccountException(ErrorCode.INTERNAL_SERVER_ERROR);
+        }
+        if (body.hasNonNull("errorCode")) {
+            throw new AccountException(ErrorCode.valueOf(body.get("errorCode").asText()));
+        }
+        return objectMapper.treeToValue(body,
+                ((MethodSignature) pjp.getSignature()).getReturnType());
+    }
+
+    private HttpHeaders forwardHeaders(HttpServletRequest servletRequest) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set(FORWARDED_HEADER, accountOwnership.getNodeUrl());
+        String idempotencyKey = servletRequest.getHeader(IdempotencyAspect.HEADER);
+        if (idempotencyKey != null) {
+            headers.set(IdempotencyAspect.HEADER, idempotencyKey);
+        }
+        return headers;
+    }
+
+    private static HttpServletRequest getServletRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes
+                ? ((ServletRequestAttributes) attributes).getRequest()
+                : null;
+    }
+}
@@ -5,7 +5,6 @@ import com.example.account.domain.AccountUser;
 import com.example.account.dto.AccountDto;
 import com.example.account.exception.AccountException;
 import com.example.account.repository.AccountRepository;
-import com.example.account.repository.AccountUserRepository;
 import com.example.account.type.AccountStatus;
 import com.example.account.type.ErrorCode;
 import lombok.RequiredArgsConstructor;
@@ -15,7 +14,6 @@ import javax.transaction.Transactional;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 import static com.example.account.type.AccountStatus.IN_USE;
 import static com.example.account.type.ErrorCode.USER_NOT_FOUND;
@@ -27,7 +25,17 @@ public class AccountService {
     // @Autowired 비권장, 생성자 삽입 권장
     private final AccountRepository accountRepository;
 
-    private final AccountUserRepository accountUserRepository;
+    private final AccountUserCache accountUserCache;
+
+    private final BalanceLedgerService balanceLedgerService;
+
+    private final AccountNumberAllocator accountNumberAllocator;
+
+    private final AccountMetadataCache accountMetadataCache;
+
+    private final ShardedBalanceService shardedBalanceService;
+
+    private final JournaledBalanceEngine journaledBalanceEngine;
 
     /**
      * 용자가 있는지 조회
@@ -39,10 +47,9 @@ public class AccountService {
         AccountUser accountUser = getAccountUser(userId);
 
         validateCreateAccount(accountUser);
-        String newAccountNumber = accountRepository.findFirstByOrderByIdDesc()
-                .map(account -> (Integer.parseInt(account.getAccountNumber())) + 1 + "")
-                .orElse("1000000000");
-
+        String newAccountNumber = accountNumberAllocator.allocate();
+        // 없는 계좌로 cache 되어 있을 수 있다
+        accountMetadataCache.evict(newAccountNumber);
 
         return AccountDto.fromEntity(
                 accountRepository.save(Account.builder()
@@ -56,7 +63,7 @@ public class AccountService {
     }
 
     private AccountUser getAccountUser(Long userId) {
-        return accountUserRepository.findById(userId)
+        return accountUserCache.findById(userId)
                 .orElseThrow(() -> new AccountException(USER_NOT_FOUND));
     }
 
@@ -72,13 +79,23 @@ public class AccountService {
             throw new RuntimeException("Minus");
         }
 
-        return accountRepository.findById(id)
+        return accountRepository.findWithAccountUserById(id)
                 .orElseThrow(()-> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
     }
 
     @Transactional
     public AccountDto deleteAccount(Long userId, String accountNumber) {
         AccountUser accountUser = getAccountUser(userId);
+        boolean ledgerAccount = balanceLedgerService.isLedgerAccount(accountNumber);
+        boolean engineAccount = !ledgerAccount
+                && journaledBalanceEngine.isEngineAccount(accountNumber);
+        if (ledgerAccount) {
+            // redis 에만 반영된 잔액을 먼저 DB 에 내려야 잔액 검증이 맞다
+            balanceLedgerService.flush();
+        }
+        if (engineAccount) {
+            journaledBalanceEngine.flush();
+        }
         Account account = accountRepository.findByAccountNumber(accountNumber)
                 .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
 
@@ -89,6 +106,13 @@ public class AccountService {
 
         //위 set 결과를 테스트하기 위함
         accountRepository.save(account);
+        accountMetadataCache.evict(accountNumber);
+        if (ledgerAccount) {
+            balanceLedgerService.evict(accountNumber);
+        }
+        if (engineAccount) {
+            journaledBalanceEngine.evict(accountNumber);
+        }
         return AccountDto.fromEntity(account);
     }
 
@@ -99,19 +123,35 @@ public class AccountService {
         if (account.getAccountStatus() == AccountStatus.UNREGISTERED) {
             throw new AccountException(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED);
         }
-        if (account.getBalance() > 0) {
+        if (getBalance(account.getAccountNumber(), account.getBalance()) > 0) {
             throw new AccountException(ErrorCode.BALANCE_NOT_EMPTY);
         }
     }
 
     @Transactional
     public List<AccountDto> getAccountByUserId(Long userId) {
-        AccountUser accountUser = getAccountUser(userId);
-        List<Account> accounts = accountRepository.findByAccountUser(accountUser);
+        if (!accountUserCache.existsById(userId)) {
+            throw new AccountException(USER_NOT_FOUND);
+        }
+        // 엔티티 없이 바로 dto 로 조회
+        List<AccountDto> accounts = accountRepository.findDtosByUserId(userId);
+        for (AccountDto account : accounts) {
+            account.setBalance(getBalance(account.getAccountNumber(), account.getBalance()));
+        }
+        return accounts;
+    }
 
-        return accounts.stream()
-                .map(AccountDto::fromEntity)
-                //.map(account -> AccountDto.fromEntity(account))
-                .collect(Collectors.toList());
+    // slot 으로 나눈 계좌는 slot 잔액까지 합하고, ledger / 잔액 엔진 계좌는 redis / 메모리 잔액이 최신이다
+    private Long getBalance(String accountNumber, Long accountBalance) {
+        if (balanceLedgerService.isLedgerAccount(accountNumber)) {
+            return balanceLedgerService.getBalance(accountNumber).orElse(accountBalance);
+        }
+        if (journaledBalanceEngine.isEngineAccount(accountNumber)) {
+            return journaledBalanceEngine.getBalance(accountNumber).orElse(accountBalance);
+        }
+        if (shardedBalanceService.isShardedAccount(accountNumber)) {
+            return accountBalance + shardedBalanceService.getSlotBalance(accountNumber);
+        }
+        return accountBalance;
     }
 }
@@ -0,0 +1,60 @@
+package com.example.account.service;
+
+import com.example.account.domain.AccountUser;
+import com.example.account.repository.AccountUserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * 존재가 확인된 사용자 id cache.
+ * 사용자는 삭제되지 않으므로 있는 id 만 기억하고, 없는 id 는 매번 DB 에서 확인한다.
+ * (새로 생성된 사용자도 첫 조회에서 바로 반영된다)
+ */
+@Service
+public class AccountUserCache {
+    private final AccountUserRepository accountUserRepository;
+    private final Cache<Long, Boolean> knownUserIds;
+
+    public AccountUserCache(
+            AccountUserRepository accountUserRepository,
+            MeterRegistry meterRegistry,
+            @Value("${account.user-cache.max-size:100000}") long maxSize
+    ) {
+        this.accountUserRepository = accountUserRepository;
+        this.knownUserIds = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, knownUserIds, "account.user-cache");
+    }
+
+    public boolean existsById(Long userId) {
+        if (knownUserIds.getIfPresent(userId) != null) {
+            return true;
+        }
+        boolean exists = accountUserRepository.existsById(userId);
+        if (exists) {
+            knownUserIds.put(userId, Boolean.TRUE);
+        }
+        return exists;
+    }
+
+    /**
+     * 알고 있는 사용자면 조회 없이 reference(proxy) 를 돌려준다.
+     * id 외의 필드를 읽을 때만 로딩된다.
+     */
+    public Optional<AccountUser> findById(Long userId) {
+        if (knownUserIds.getIfPresent(userId) != null) {
+            return Optional.of(accountUserRepository.getReferenceById(userId));
+        }
+        Optional<AccountUser> accountUser = accountUserRepository.findById(userId);
+        accountUser.ifPresent(user -> knownUserIds.put(user.getId(), Boolean.TRUE));
+        return accountUser;
+    }
+}
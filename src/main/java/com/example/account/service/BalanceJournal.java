@@ -0,0 +1,396 @@
+package com.example.account.service;
+
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 고정 길이 기록을 memory-mapped 파일에 이어 쓰는 append-only journal.
+ * 기록은 seq 가 1씩 증가하고, segment 파일 이름이 첫 seq 라서 seq 만으로 위치를 계산한다.
+ * fsync 는 전용 스레드가 모아서 한 번에 하고 (group fsync), 쓰는 쪽은 자기 seq 가
+ * 디스크에 내려갈 때까지 기다린다. fsync 를 끄면 프로세스가 죽어도 page cache 에 남은
+ * 기록은 살아있지만 OS 장애에는 잃을 수 있다.
+ * fsync 가 한 번이라도 실패하면 그 뒤로는 기록도 대기도 모두 실패한다 (재시작해서 디스크 기준으로 복구).
+ */
+@Slf4j
+class BalanceJournal implements AutoCloseable {
+    static final int RECORD_BYTES = 80;
+    private static final int CHECKSUM_OFFSET = 70;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final TransactionType[] TRANSACTION_TYPES = TransactionType.values();
+    private static final TransactionResultType[] RESULT_TYPES = TransactionResultType.values();
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final boolean fsync;
+    private final long syncIntervalNanos;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    // 반영하는 쪽이 append lock 없이 읽을 수 있도록
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final CRC32 checksum = new CRC32();
+    private Segment current;
+
+    // 기록이 끝난 seq / 디스크에 내려간 seq
+    private volatile long writtenSeq;
+    private volatile long durableSeq;
+    private final Object durableMonitor = new Object();
+
+    private final Thread syncer;
+    private volatile boolean running = true;
+    private volatile boolean failed;
+
+    BalanceJournal(Path directory, int segmentSizeMb, boolean fsync, long syncIntervalMicros) {
+        this.directory = directory;
+        this.recordsPerSegment = (int) Math.min(Integer.MAX_VALUE / RECORD_BYTES,
+                segmentSizeMb * 1024L * 1024L / RECORD_BYTES);
+        this.fsync = fsync;
+        this.syncIntervalNanos = TimeUnit.MICROSECONDS.toNanos(syncIntervalMicros);
+        openSegments();
+        if (fsync) {
+            syncer = new Thread(this::syncLoop, "balance-journal-sync");
+            syncer.setDaemon(true);
+            syncer.start();
+        } else {
+            syncer = null;
+        }
+    }
+
+    /**
+     * 다음 seq 를 붙여서 기록하고 seq 를 돌려준다. 디스크 반영은 awaitDurable 로 기다린다.
+     */
+    long append(Entry entry) {
+        appendLock.lock();
+        try {
+            if (failed) {
+                throw new IllegalStateException("Journal sync failed.");
+            }
+            long seq = writtenSeq + 1;
+            if (seq - current.firstSeq >= recordsPerSegment) {
+                roll(seq);
+            }
+            ByteBuffer buffer = current.buffer;
+            int offset = (int) (seq - current.firstSeq) * RECORD_BYTES;
+            buffer.putLong(offset + 8, entry.accountNumber);
+            buffer.putLong(offset + 16, entry.userId);
+            buffer.putLong(offset + 24, entry.amount);
+            buffer.putLong(offset + 32, entry.balanceSnapshot);
+            buffer.putLong(offset + 40, entry.transactedAt.toEpochSecond(ZoneOffset.UTC));
+            buffer.putInt(offset + 48, entry.transactedAt.getNano());
+            buffer.put(offset + 52, (byte) entry.transactionType.ordinal());
+            buffer.put(offset + 53, (byte) entry.transactionResultType.ordinal());
+            writeTransactionId(buffer, offset + 54, entry.transactionId);
+            // seq 는 마지막에 써서 seq 가 보이면 나머지도 써진 상태
+            buffer.putLong(offset, seq);
+            buffer.putInt(offset + CHECKSUM_OFFSET, checksum(buffer, offset));
+            writtenSeq = seq;
+            if (!fsync) {
+                durableSeq = seq;
+            }
+            return seq;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    void awaitDurable(long seq) {
+        if (durableSeq >= seq) {
+            return;
+        }
+        LockSupport.unpark(syncer);
+        synchronized (durableMonitor) {
+            while (durableSeq < seq) {
+                if (failed) {
+                    throw new IllegalStateException("Journal sync failed.");
+                }
+                if (!running) {
+                    throw new IllegalStateException("Journal is closed.");
+                }
+                try {
+                    durableMonitor.wait(1L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for journal sync.", e);
+                }
+            }
+        }
+    }
+
+    long getWrittenSeq() {
+        return writtenSeq;
+    }
+
+    long getDurableSeq() {
+        return durableSeq;
+    }
+
+    boolean isFailed() {
+        return failed;
+    }
+
+    // 디스크에 내려갔는지 알 수 없는 기록이 생겼으므로 이후 요청을 모두 거절한다
+    void markFailed() {
+        failed = true;
+        synchronized (durableMonitor) {
+            durableMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * afterSeq 다음부터 디스크에 내려간 기록을 최대 limit 개 읽는다.
+     * durableSeq 를 읽은 뒤에 보는 기록은 모두 써진 상태라서 쓰는 쪽과 lock 을 나누지 않는다.
+     */
+    List<Entry> read(long afterSeq, int limit) {
+        long last = Math.min(durableSeq, afterSeq + limit);
+        List<Entry> entries = new ArrayList<>((int) Math.max(last - afterSeq, 0));
+        for (long seq = afterSeq + 1; seq <= last; seq++) {
+            Map.Entry<Long, Segment> segment = segments.floorEntry(seq);
+            if (segment == null) {
+                throw new IllegalStateException("Journal segment missing for seq " + seq);
+            }
+            entries.add(readEntry(segment.getValue().buffer,
+                    (int) (seq - segment.getKey()) * RECORD_BYTES));
+        }
+        return entries;
+    }
+
+    /**
+     * 모든 기록이 beforeSeq 보다 작은 segment 를 지운다 (스냅샷과 DB 반영이 끝난 구간).
+     */
+    void deleteBefore(long beforeSeq) {
+        appendLock.lock();
+        try {
+            while (segments.size() > 1) {
+                Map.Entry<Long, Segment> first = segments.firstEntry();
+                Long nextFirstSeq = segments.higherKey(first.getKey());
+                if (nextFirstSeq == null || nextFirstSeq > beforeSeq) {
+                    return;
+                }
+                // 매핑은 GC 될 때 풀린다 (Java 11 에는 명시적으로 해제하는 API 가 없다)
+                segments.pollFirstEntry();
+                Files.deleteIfExists(first.getValue().path);
+                log.info("Journal segment deleted : {}", first.getValue().path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        appendLock.lock();
+        try {
+            running = false;
+            if (syncer != null) {
+                LockSupport.unpark(syncer);
+            }
+            if (failed) {
+                return;
+            }
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+            }
+            durableSeq = writtenSeq;
+        } finally {
+            appendLock.unlock();
+        }
+        synchronized (durableMonitor) {
+            durableMonitor.notifyAll();
+        }
+    }
+
+    private void syncLoop() {
+        while (running && !failed) {
+            long written = writtenSeq;
+            if (written > durableSeq) {
+                sync(written);
+            } else {
+                // 기록이 없으면 쉬고, 있으면 잠깐 모아서 한 번에 내린다
+                LockSupport.parkNanos(this, syncIntervalNanos);
+            }
+        }
+    }
+
+    private void sync(long written) {
+        Segment segment;
+        appendLock.lock();
+        try {
+            segment = current;
+        } finally {
+            appendLock.unlock();
+        }
+        try {
+            // 이전 segment 는 roll 할 때 이미 내렸다
+            segment.buffer.force();
+        } catch (UncheckedIOException e) {
+            log.error("Journal sync failed.", e);
+            markFailed();
+            return;
+        }
+        durableSeq = written;
+        synchronized (durableMonitor) {
+            durableMonitor.notifyAll();
+        }
+    }
+
+    private void roll(long firstSeq) {
+        current.buffer.force();
+        current = openSegment(firstSeq);
+        segments.put(firstSeq, current);
+        log.info("Journal rolled to segment : {}", current.path);
+    }
+
+    // 시작할 때 segment 들을 열고 마지막 기록 위치를 찾는다 (찢어진 마지막 기록은 버린다)
+    private void openSegments() {
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(path -> {
+                    String name = path.getFileName().toString();
+                    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                }).sorted().forEach(path -> {
+                    Segment segment = openSegment(parseFirstSeq(path));
+                    segments.put(segment.firstSeq, segment);
+                });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (segments.isEmpty()) {
+            segments.put(1L, openSegment(1L));
+        }
+        current = segments.lastEntry().getValue();
+        long seq = current.firstSeq - 1;
+        for (int offset = 0; offset + RECORD_BYTES <= current.buffer.capacity();
+             offset += RECORD_BYTES) {
+            long stored = current.buffer.getLong(offset);
+            if (stored != seq + 1 || current.buffer.getInt(offset + CHECKSUM_OFFSET)
+                    != checksum(current.buffer, offset)) {
+                // 뒤에 남은 찢어진 기록은 다음 기록으로 덮어쓴다
+                current.buffer.putLong(offset, 0L);
+                break;
+            }
+            seq = stored;
+        }
+        writtenSeq = seq;
+        durableSeq = seq;
+        log.info("Journal opened. directory : {}, lastSeq : {}", directory, seq);
+    }
+
+    private Segment openSegment(long firstSeq) {
+        Path path = directory.resolve(String.format("%s%020d%s",
+                SEGMENT_PREFIX, firstSeq, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    (long) recordsPerSegment * RECORD_BYTES);
+            return new Segment(path, firstSeq, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int checksum(ByteBuffer buffer, int offset) {
+        checksum.reset();
+        checksum.update(buffer.duplicate().position(offset).limit(offset + CHECKSUM_OFFSET));
+        return (int) checksum.getValue();
+    }
+
+    private static Entry readEntry(ByteBuffer buffer, int offset) {
+        return Entry.builder()
+                .seq(buffer.getLong(offset))
+                .accountNumber(buffer.getLong(offset + 8))
+                .userId(buffer.getLong(offset + 16))
+                .amount(buffer.getLong(offset + 24))
+                .balanceSnapshot(buffer.getLong(offset + 32))
+                .transactedAt(LocalDateTime.ofEpochSecond(buffer.getLong(offset + 40),
+                        buffer.getInt(offset + 48), ZoneOffset.UTC))
+                .transactionType(TRANSACTION_TYPES[buffer.get(offset + 52)])
+                .transactionResultType(RESULT_TYPES[buffer.get(offset + 53)])
+                .transactionId(readTransactionId(buffer, offset + 54))
+                .build();
+    }
+
+    // 거래 id 는 16진수 32자리 -> 16바이트
+    private static void writeTransactionId(ByteBuffer buffer, int offset, String transactionId) {
+        if (transactionId.length() != 32) {
+            throw new IllegalArgumentException("Unexpected transactionId : " + transactionId);
+        }
+        for (int i = 0; i < 16; i++) {
+            int high = Character.digit(transactionId.charAt(i * 2), 16);
+            int low = Character.digit(transactionId.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Unexpected transactionId : " + transactionId);
+            }
+            buffer.put(offset + i, (byte) ((high << 4) | low));
+        }
+    }
+
+    private static String readTransactionId(ByteBuffer buffer, int offset) {
+        char[] id = new char[32];
+        for (int i = 0; i < 16; i++) {
+            int value = buffer.get(offset + i) & 0xff;
+            id[i * 2] = Character.forDigit(value >>> 4, 16);
+            id[i * 2 + 1] = Character.forDigit(value & 0xf, 16);
+        }
+        return new String(id);
+    }
+
+    private static long parseFirstSeq(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    @Getter
+    @Builder(toBuilder = true)
+    static class Entry {
+        private final long seq;
+        private final long accountNumber;
+        private final long userId;
+        private final long amount;
+        private final long balanceSnapshot;
+        private final LocalDateTime transactedAt;
+        private final TransactionType transactionType;
+        private final TransactionResultType transactionResultType;
+        private final String transactionId;
+    }
+
+    private static class Segment {
+        private final Path path;
+        private final long firstSeq;
+        private final MappedByteBuffer buffer;
+
+        private Segment(Path path, long firstSeq, MappedByteBuffer buffer) {
+            this.path = path;
+            this.firstSeq = firstSeq;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package com.example.account.service;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.Transaction;
+import com.example.account.dto.TransactionDto;
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.AccountStatus;
+import com.example.account.type.ErrorCode;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RList;
+import org.redisson.api.RLock;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.example.account.type.TransactionResultType.F;
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.CANCEL;
+import static com.example.account.type.TransactionType.USE;
+
+/**
+ * 잔액을 redis 에 두고 lua script 로 원자적으로 차감하는 ledger 모드.
+ * 거래 기록은 redis 큐에 쌓아 두었다가 주기적으로 묶어서 DB 에 반영한다 (write-behind).
+ */
+@Slf4j
+@Service
+public class BalanceLedgerService {
+    private static final String QUEUE_KEY = "ACLQ";
+    private static final String FLUSH_LOCK_KEY = "ACLQ:flush";
+
+    private static final long NOT_LOADED = -1L;
+    private static final long USER_UN_MATCH = -2L;
+    private static final long EXCEED_BALANCE = -3L;
+
+    // KEYS[1] 계좌 hash, KEYS[2] 큐 / ARGV[1] userId, ARGV[2] 금액, ARGV[3] 거래 기록
+    private static final String DEBIT_SCRIPT =
+            "local owner = redis.call('HGET', KEYS[1], 'userId') " +
+            "if not owner then return -1 end " +
+            "if owner ~= ARGV[1] then return -2 end " +
+            "if tonumber(redis.call('HGET', KEYS[1], 'balance')) < tonumber(ARGV[2]) then return -3 end " +
+            "local balance = redis.call('HINCRBY', KEYS[1], 'balance', -tonumber(ARGV[2])) " +
+            "redis.call('RPUSH', KEYS[2], ARGV[3] .. '|' .. balance) " +
+            "return balance";
+
+    // KEYS[1] 계좌 hash, KEYS[2] 큐 / ARGV[1] 금액, ARGV[2] 거래 기록
+    private static final String CREDIT_SCRIPT =
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end " +
+            "local balance = redis.call('HINCRBY', KEYS[1], 'balance', tonumber(ARGV[1])) " +
+            "redis.call('RPUSH', KEYS[2], ARGV[2] .. '|' .. balance) " +
+            "return balance";
+
+    // KEYS[1] 계좌 hash, KEYS[2] 큐 / ARGV[1] 거래 기록
+    private static final String RECORD_SCRIPT =
+            "local balance = redis.call('HGET', KEYS[1], 'balance') " +
+            "if not balance then return -1 end " +
+            "redis.call('RPUSH', KEYS[2], ARGV[1] .. '|' .. balance) " +
+            "return tonumber(balance)";
+
+    // 이미 올라와 있는 상태는 덮어쓰지 않는다 / ARGV[1] userId, ARGV[2] 잔액
+    private static final String LOAD_SCRIPT =
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
+            "redis.call('HMSET', KEYS[1], 'userId', ARGV[1], 'balance', ARGV[2]) " +
+            "return 1";
+
+    private final RedissonClient redissonClient;
+    private final TransactionRepository transactionRepository;
+    private final AccountRepository accountRepository;
+    private final AccountUserCache accountUserCache;
+    // 요청 트랜잭션에서 호출되어도 따로 commit 해야 큐에서 지운 기록이 사라지지 않는다
+    private final TransactionTemplate writeBehindTemplate;
+    private final TransactionIdGenerator transactionIdGenerator;
+
+    private final boolean enabled;
+    private final Set<String> ledgerAccounts;
+    private final int flushBatchSize;
+
+    private final Map<String, String> scriptShas = new ConcurrentHashMap<>();
+
+    public BalanceLedgerService(
+            RedissonClient redissonClient,
+            TransactionRepository transactionRepository,
+            AccountRepository accountRepository,
+            AccountUserCache accountUserCache,
+            PlatformTransactionManager transactionManager,
+            TransactionIdGenerator transactionIdGenerator,
+            @Value("${account.ledger.enabled:false}") boolean enabled,
+            @Value("${account.ledger.accounts:}") Set<String> ledgerAccounts,
+            @Value("${account.ledger.flush-batch-size:500}") int flushBatchSize
+    ) {
+        this.redissonClient = redissonClient;
+        this.transactionRepository = transactionRepository;
+        this.accountRepository = accountRepository;
+        this.accountUserCache = accountUserCache;
+        this.writeBehindTemplate = new TransactionTemplate(transactionManager);
+        this.writeBehindTemplate.setPropagationBehavior(
+                TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionIdGenerator = transactionIdGenerator;
+        this.enabled = enabled;
+        this.ledgerAccounts = Set.copyOf(ledgerAccounts);
+        this.flushBatchSize = flushBatchSize;
+    }
+
+    public boolean isLedgerAccount(String accountNumber) {
+        return enabled && ledgerAccounts.contains(accountNumber);
+    }
+
+    public TransactionDto use(Long userId, String accountNumber, Long amount) {
+        LedgerEntry entry = newEntry(USE, S, accountNumber, amount);
+        long result = evalLoaded(DEBIT_SCRIPT, accountNumber,
+                String.valueOf(userId), String.valueOf(amount), entry.format());
+
+        if (result == USER_UN_MATCH) {
+            throw new AccountException(accountUserCache.existsById(userId)
+                    ? ErrorCode.USER_ACCOUNT_UN_MATCH : ErrorCode.USER_NOT_FOUND);
+        }
+        if (result == EXCEED_BALANCE) {
+            throw new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE);
+        }
+        if (result == NOT_LOADED) {
+            throw new AccountException(accountUserCache.existsById(userId)
+                    ? getNotLoadedFailure(accountNumber) : ErrorCode.USER_NOT_FOUND);
+        }
+        return entry.toDto(result);
+    }
+
+    public TransactionDto cancel(String accountNumber, Long amount) {
+        LedgerEntry entry = newEntry(CANCEL, S, accountNumber, amount);
+        long result = evalLoaded(CREDIT_SCRIPT, accountNumber,
+                String.valueOf(amount), entry.format());
+        if (result == NOT_LOADED) {
+            throw new AccountException(getNotLoadedFailure(accountNumber));
+        }
+        return entry.toDto(result);
+    }
+
+    public TransactionDto recordFailure(TransactionType transactionType,
+                                        String accountNumber, Long amount) {
+        LedgerEntry entry = newEntry(transactionType, F, accountNumber, amount);
+        long result = evalLoaded(RECORD_SCRIPT, accountNumber, entry.format());
+        if (result == NOT_LOADED) {
+            throw new AccountException(ErrorCode.ACCOUNT_NOT_FOUND);
+        }
+        return entry.toDto(result);
+    }
+
+    /**
+     * redis 에 올라와 있는 잔액 (DB 에는 아직 반영되지 않았을 수 있다).
+     */
+    public Optional<Long> getBalance(String accountNumber) {
+        String balance = redissonClient.<String, String>getMap(
+                getLedgerKey(accountNumber), StringCodec.INSTANCE).get("balance");
+        return Optional.ofNullable(balance).map(Long::valueOf);
+    }
+
+    /**
+     * 해지 등으로 더 이상 ledger 에서 처리하면 안 되는 계좌의 상태를 제거한다.
+     */
+    public void evict(String accountNumber) {
+        redissonClient.getMap(getLedgerKey(accountNumber), StringCodec.INSTANCE).delete();
+    }
+
+    @Scheduled(fixedDelayString = "${account.ledger.flush-interval-millis:200}")
+    public void flush() {
+        if (enabled) {
+            flushQueue();
+        }
+    }
+
+    // 다른 flush 가 끝나지 않아서 큐를 비우지 못했으면 false
+    private boolean flushQueue() {
+        RLock flushLock = redissonClient.getLock(FLUSH_LOCK_KEY);
+        try {
+            if (!flushLock.tryLock(5, TimeUnit.SECONDS)) {
+                log.warn("Ledger flush skipped, another flush is running.");
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        try {
+            RList<String> queue = redissonClient.getList(QUEUE_KEY, StringCodec.INSTANCE);
+            List<String> records;
+            while (!(records = queue.range(0, flushBatchSize - 1)).isEmpty()) {
+                List<LedgerEntry> entries = records.stream()
+                        .map(LedgerEntry::parse)
+                        .collect(Collectors.toList());
+                writeBehindTemplate.executeWithoutResult(status -> writeBehind(entries));
+                // DB 반영이 끝난 기록만 큐에서 제거 (producer 는 뒤에만 붙인다)
+                queue.trim(records.size(), -1);
+            }
+            return true;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 시작 시 DB 에 밀린 기록을 먼저 반영한 뒤,
+     * redis 에 없는 계좌 상태를 마지막 balanceSnapshot 으로 다시 만든다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        if (!enabled) {
+            return;
+        }
+        flush();
+        ledgerAccounts.forEach(this::load);
+    }
+
+    private boolean load(String accountNumber) {
+        Account account = accountRepository.findByAccountNumber(accountNumber)
+                .orElse(null);
+        if (account == null || account.getAccountStatus() != AccountStatus.IN_USE) {
+            evict(accountNumber);
+            return false;
+        }
+        Long balance = transactionRepository
+                .findFirstByAccountOrderByTransactedAtDescIdDesc(account)
+                .map(Transaction::getBalanceSnapshot)
+                .orElse(account.getBalance());
+
+        evalSha(LOAD_SCRIPT, List.of(getLedgerKey(accountNumber)),
+                String.valueOf(account.getAccountUser().getId()),
+                String.valueOf(balance));
+        log.info("Ledger loaded for accountNumber : {}", accountNumber);
+        return true;
+    }
+
+    private void writeBehind(List<LedgerEntry> entries) {
+        Set<String> written = new HashSet<>(transactionRepository.findTransactionIdsIn(
+                entries.stream()
+                        .map(LedgerEntry::getTransactionId)
+                        .collect(Collectors.toList())));
+        Map<String, Optional<Account>> accounts = new HashMap<>();
+        List<Transaction> transactions = new ArrayList<>();
+
+        for (LedgerEntry entry : entries) {
+            Account account = accounts.computeIfAbsent(entry.getAccountNumber(),
+                            accountRepository::findByAccountNumber)
+                    .orElse(null);
+            if (account == null) {
+                log.error("Ledger entry for unknown accountNumber : {}", entry.getAccountNumber());
+                continue;
+            }
+            account.setBalance(entry.getBalanceSnapshot());
+            if (!written.contains(entry.getTransactionId())) {
+                transactions.add(entry.toTransaction(account));
+            }
+        }
+        transactionRepository.saveAll(transactions);
+    }
+
+    private ErrorCode getNotLoadedFailure(String accountNumber) {
+        return accountRepository.findByAccountNumber(accountNumber).isPresent()
+                ? ErrorCode.ACCOUNT_ALREADY_UNREGISTERED
+                : ErrorCode.ACCOUNT_NOT_FOUND;
+    }
+
+    private long evalLoaded(String script, String accountNumber, Object... values) {
+        List<Object> keys = List.of(getLedgerKey(accountNumber), QUEUE_KEY);
+        long result = evalSha(script, keys, values);
+        if (result == NOT_LOADED) {
+            // 상태가 지워지기 전에 큐에 남은 기록이 있으면 DB 잔액이 아직 옛 값이다
+            if (!flushQueue()) {
+                throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+            }
+            if (load(accountNumber)) {
+                result = evalSha(script, keys, values);
+            }
+        }
+        return result;
+    }
+
+    private long evalSha(String script, List<Object> keys, Object... values) {
+        RScript rScript = redissonClient.getScript(StringCodec.INSTANCE);
+        String sha = scriptShas.computeIfAbsent(script, rScript::scriptLoad);
+        try {
+            Long result = rScript.evalSha(RScript.Mode.READ_WRITE, sha,
+                    RScript.ReturnType.INTEGER, keys, values);
+            return result;
+        } catch (RedisException e) {
+            if (e.getMessage() == null || !e.getMessage().contains("NOSCRIPT")) {
+                throw e;
+            }
+            // redis 가 재시작되어 script cache 가 비워진 경우
+            scriptShas.put(script, rScript.scriptLoad(script));
+            return rScript.evalSha(RScript.Mode.READ_WRITE, scriptShas.get(script),
+                    RScript.ReturnType.INTEGER, keys, values);
+        }
+    }
+
+    private LedgerEntry newEntry(TransactionType transactionType,
+                                        TransactionResultType transactionResultType,
+                                        String accountNumber, Long amount) {
+        return LedgerEntry.builder()
+                .transactionId(transactionIdGenerator.generate())
+                .transactionType(transactionType)
+                .transactionResultType(transactionResultType)
+                .accountNumber(accountNumber)
+                .amount(amount)
+                .transactedAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static String getLedgerKey(String accountNumber) {
+        return "ACBL:" + accountNumber;
+    }
+
+    @Getter
+    @Builder
+    static class LedgerEntry {
+        private final String transactionId;
+        private final TransactionType transactionType;
+        private final TransactionResultType transactionResultType;
+        private final String accountNumber;
+        private final Long amount;
+        private final LocalDateTime transactedAt;
+        // script 가 기록 뒤에 붙여주는 처리 후 잔액
+        private final Long balanceSnapshot;
+
+        String format() {
+            return String.join("|", transactionId, transactionType.name(),
+                    transactionResultType.name(), accountNumber,
+                    String.valueOf(amount), transactedAt.toString());
+        }
+
+        static LedgerEntry parse(String record) {
+            String[] fields = record.split("\\|");
+            return LedgerEntry.builder()
+                    .transactionId(fields[0])
+                    .transactionType(TransactionType.valueOf(fields[1]))
+                    .transactionResultType(TransactionResultType.valueOf(fields[2]))
+                    .accountNumber(fields[3])
+                    .amount(Long.parseLong(fields[4]))
+                    .transactedAt(LocalDateTime.parse(fields[5]))
+                    .balanceSnapshot(Long.parseLong(fields[6]))
+                    .build();
+        }
+
+        TransactionDto toDto(Long balanceSnapshot) {
+            return TransactionDto.builder()
+                    .accountNumber(accountNumber)
+                    .transactionType(transactionType)
+                    .transactionResultType(transactionResultType)
+                    .amount(amount)
+                    .balanceSnapshot(balanceSnapshot)
+                    .transactionId(transactionId)
+                    .transactedAt(transactedAt)
+                    .build();
+        }
+
+        Transaction toTransaction(Account account) {
+            return Transaction.builder()
+                    .transactionType(transactionType)
+                    .transactionResultType(transactionResultType)
+                    .account(account)
+                    .amount(amount)
+                    .balanceSnapshot(balanceSnapshot)
+                    .transactionId(transactionId)
+                    .transactedAt(transactedAt)
+                    .build();
+        }
+    }
+}
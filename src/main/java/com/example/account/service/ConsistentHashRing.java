@@ -0,0 +1,58 @@
+package com.example.account.service;
+
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * 노드마다 가상 노드를 여러 개 두는 consistent hash ring.
+ * 노드가 들어오거나 빠져도 그 노드가 맡던 구간의 계좌만 담당 노드가 바뀐다.
+ */
+public class ConsistentHashRing {
+    public static final ConsistentHashRing EMPTY = new ConsistentHashRing(List.of(), 1);
+
+    private final List<String> nodes;
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        this.nodes = nodes.stream()
+                .distinct()
+                .sorted()
+                .collect(Collectors.toUnmodifiableList());
+        for (String node : this.nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    /**
+     * @return 노드가 없으면 null
+     */
+    public String getOwner(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    // String.hashCode 는 비슷한 계좌번호끼리 몰리므로 md5 앞 8바이트를 쓴다
+    private static long hash(String key) {
+        byte[] digest = DigestUtils.md5Digest(key.getBytes(StandardCharsets.UTF_8));
+        long hash = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash = (hash << 8) | (digest[i] & 0xff);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.account.service;
+
+import com.example.account.aop.Idempotent;
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idempotency-Key 헤더가 있는 요청의 첫 결과를 redis 에 저장해두고,
+ * 같은 키로 다시 오면 계좌 lock 과 DB 작업 없이 저장된 결과를 돌려준다.
+ * 아직 처리중인 같은 키의 요청은 lock 을 두고 경쟁하지 않고 첫 요청의 결과를 기다린다.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1) // AccountOwnershipAspect 안쪽, LockAopAspect 보다 바깥에서 실행
+@Slf4j
+public class IdempotencyAspect {
+    public static final String HEADER = "Idempotency-Key";
+    private static final String KEY_PREFIX = "IDEM:";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    // 값 형식 : 상태|요청 fingerprint|결과
+    private static final String PENDING = "P";
+    private static final String RESULT = "R";
+    private static final String ERROR = "E";
+
+    private final RedissonClient redissonClient;
+    private final ObjectMapper objectMapper;
+    private final Counter replayCounter;
+
+    private final long resultTtlMillis;
+    private final long pendingTtlMillis;
+    private final long waitMillis;
+    private final long pollMillis;
+
+    public IdempotencyAspect(
+            RedissonClient redissonClient,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${account.idempotency.result-ttl-seconds:86400}") long resultTtlSeconds,
+            @Value("${account.idempotency.pending-ttl-seconds:30}") long pendingTtlSeconds,
+            @Value("${account.idempotency.wait-millis:5000}") long waitMillis,
+            @Value("${account.idempotency.poll-millis:20}") long pollMillis
+    ) {
+        this.redissonClient = redissonClient;
+        this.objectMapper = objectMapper;
+        this.replayCounter = meterRegistry.counter("account.idempotency.replays");
+        this.resultTtlMillis = TimeUnit.SECONDS.toMillis(resultTtlSeconds);
+        // 처리 도중 노드가 죽어도 키가 계속 막혀있지 않도록 짧게 둔다
+        this.pendingTtlMillis = TimeUnit.SECONDS.toMillis(pendingTtlSeconds);
+        this.waitMillis = waitMillis;
+        this.pollMillis = pollMillis;
+    }
+
+    @Around("@annotation(idempotent)")
+    public Object aroundMethod(
+            ProceedingJoinPoint pjp,
+            Idempotent idempotent
+    ) throws Throwable {
+        String idempotencyKey = getIdempotencyKey();
+        if (idempotencyKey == null) {
+            return pjp.proceed();
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new AccountException(ErrorCode.INVALID_REQUEST);
+        }
+        RBucket<String> bucket = redissonClient.getBucket(
+                KEY_PREFIX + getMethodName(pjp) + ":" + idempotencyKey, StringCodec.INSTANCE);
+        String fingerprint = fingerprint(pjp.getArgs());
+
+        long deadline = System.currentTimeMillis() + waitMillis;
+        while (!bucket.trySet(format(PENDING, fingerprint, ""),
+                pendingTtlMillis, TimeUnit.MILLISECONDS)) {
+            String[] stored = parse(bucket.get());
+            if (stored != null) {
+                if (!fingerprint.equals(stored[1])) {
+                    throw new AccountException(ErrorCode.IDEMPOTENCY_KEY_REUSED);
+                }
+                if (!PENDING.equals(stored[0])) {
+                    return replay(pjp, stored);
+                }
+            }
+            // 첫 요청이 끝나기를 기다린다 (첫 요청이 lock 대기 초과로 끝나면 키가 지워져서 다시 시도)
+            if (System.currentTimeMillis() >= deadline) {
+                throw new AccountException(ErrorCode.IDEMPOTENT_REQUEST_IN_PROGRESS);
+            }
+            Thread.sleep(pollMillis);
+        }
+        return proceedAndStore(pjp, bucket, fingerprint);
+    }
+
+    private Object proceedAndStore(
+            ProceedingJoinPoint pjp,
+            RBucket<String> bucket,
+            String fingerprint
+    ) throws Throwable {
+        Object result;
+        try {
+            result = pjp.proceed();
+        } catch (AccountException e) {
+            if (isRejectedBeforeMutation(e.getErrorCode())) {
+                delete(bucket);
+            } else if (e.getErrorCode() != ErrorCode.INTERNAL_SERVER_ERROR) {
+                store(bucket, format(ERROR, fingerprint, e.getErrorCode().name()));
+            }
+            // 내부 오류는 반영 여부를 알 수 없으므로 처리중으로 두고 TTL 로 풀리게 한다
+            throw e;
+        }
+        store(bucket, format(RESULT, fingerprint, objectMapper.writeValueAsString(result)));
+        return result;
+    }
+
+    private Object replay(ProceedingJoinPoint pjp, String[] stored)
+            throws JsonProcessingException {
+        replayCounter.increment();
+        if (ERROR.equals(stored[0])) {
+            throw new AccountException(ErrorCode.valueOf(stored[2]));
+        }
+        return objectMapper.readValue(stored[2], getReturnType(pjp));
+    }
+
+    // 거래가 이미 처리된 뒤라 저장에 실패해도 결과는 돌려준다 (처리중 표시는 TTL 로 풀린다)
+    private void store(RBucket<String> bucket, String value) {
+        try {
+            bucket.set(value, resultTtlMillis, TimeUnit.MILLISECONDS);
+        } catch (RedisException e) {
+            log.error("Failed to store idempotent result.", e);
+        }
+    }
+
+    private static void delete(RBucket<String> bucket) {
+        try {
+            bucket.delete();
+        } catch (RedisException e) {
+            log.error("Failed to release idempotency key.", e);
+        }
+    }
+
+    // lock 대기 초과처럼 아무것도 바꾸기 전에 거절된 오류만 키를 바로 풀어서 재시도하게 한다
+    // (실패 기록을 남긴 오류는 같은 키로 다시 처리하면 기록이 중복되므로 결과로 저장한다)
+    private static boolean isRejectedBeforeMutation(ErrorCode errorCode) {
+        return errorCode == ErrorCode.ACCOUNT_TRANSACTION_LOCK;
+    }
+
+    // 같은 키로 다른 내용을 보낸 경우를 구분하기 위한 요청 값
+    String fingerprint(Object[] args) throws JsonProcessingException {
+        return DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(args));
+    }
+
+    static String format(String state, String fingerprint, String payload) {
+        return state + "|" + fingerprint + "|" + payload;
+    }
+
+    private static String[] parse(String value) {
+        return value == null ? null : value.split("\\|", 3);
+    }
+
+    private static String getIdempotencyKey() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return null;
+        }
+        String key = ((ServletRequestAttributes) attributes).getRequest().getHeader(HEADER);
+        return key == null || key.isBlank() ? null : key;
+    }
+
+    private static String getMethodName(ProceedingJoinPoint pjp) {
+        return pjp.getSignature().getDeclaringType().getSimpleName()
+                + "." + pjp.getSignature().getName();
+    }
+
+    private static Class<?> getReturnType(ProceedingJoinPoint pjp) {
+        return ((MethodSignature) pjp.getSignature()).getReturnType();
+    }
+}
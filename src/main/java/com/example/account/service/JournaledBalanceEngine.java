@@ -0,0 +1,690 @@
+package com.example.account.service;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.Transaction;
+import com.example.account.dto.TransactionDto;
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.AccountStatus;
+import com.example.account.type.ErrorCode;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+import static com.example.account.type.TransactionResultType.F;
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.CANCEL;
+import static com.example.account.type.TransactionType.USE;
+
+/**
+ * 사용중인 계좌의 잔액을 메모리(off-heap)에 두고 사용/취소를 journal 에 먼저 기록하는 잔액 엔진.
+ * 요청은 journal 이 디스크에 내려가면 바로 응답하고, Account / Transaction 테이블은
+ * journal 을 따라가며 묶어서 반영한다 (write-behind).
+ * 재시작하면 마지막 스냅샷에 그 뒤의 journal 을 다시 적용해서 잔액을 복구한다.
+ * journal 은 노드 로컬 파일이므로 한 노드만 엔진을 켜야 한다.
+ * 엔진에서 처리하는 계좌는 설정(account.balance-engine.accounts)으로 정한다.
+ * journal fsync 가 실패하면 메모리 잔액에 디스크에 없는 변경이 섞여 있을 수 있으므로,
+ * 엔진은 응답하지 않고 이후 요청과 스냅샷을 모두 거절한다 (재시작하면 journal 로 복구).
+ */
+@Slf4j
+@Service
+public class JournaledBalanceEngine {
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String APPLIED_FILE = "applied.seq";
+    private static final long SNAPSHOT_MAGIC = 0x4143424c534e4150L;
+
+    private final TransactionRepository transactionRepository;
+    private final AccountRepository accountRepository;
+    private final AccountUserCache accountUserCache;
+    // 요청 트랜잭션에서 호출되어도 따로 commit 해야 반영한 seq 를 기록할 수 있다
+    private final TransactionTemplate writeBehindTemplate;
+    private final TransactionIdGenerator transactionIdGenerator;
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+    private final Set<String> engineAccounts;
+    private final Path directory;
+    private final int segmentSizeMb;
+    private final boolean fsync;
+    private final long syncIntervalMicros;
+    private final int applyBatchSize;
+
+    // 계좌 추가/삭제와 스냅샷은 write lock, 잔액 변경은 read lock + 계좌 stripe lock
+    private final ReentrantReadWriteLock structureLock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] stripes = new ReentrantLock[256];
+    private final OffHeapBalanceMap balances;
+
+    private BalanceJournal journal;
+    // DB 에 반영된 마지막 seq (apply 는 한 스레드씩)
+    private volatile long appliedSeq;
+    private volatile boolean recovered;
+
+    public JournaledBalanceEngine(
+            TransactionRepository transactionRepository,
+            AccountRepository accountRepository,
+            AccountUserCache accountUserCache,
+            PlatformTransactionManager transactionManager,
+            TransactionIdGenerator transactionIdGenerator,
+            MeterRegistry meterRegistry,
+            @Value("${account.balance-engine.enabled:false}") boolean enabled,
+            @Value("${account.balance-engine.accounts:}") Set<String> engineAccounts,
+            @Value("${account.balance-engine.journal-dir:./journal}") String journalDir,
+            @Value("${account.balance-engine.segment-size-mb:64}") int segmentSizeMb,
+            @Value("${account.balance-engine.fsync:true}") boolean fsync,
+            @Value("${account.balance-engine.sync-interval-micros:200}") long syncIntervalMicros,
+            @Value("${account.balance-engine.expected-accounts:100000}") int expectedAccounts,
+            @Value("${account.balance-engine.apply-batch-size:500}") int applyBatchSize
+    ) {
+        this.transactionRepository = transactionRepository;
+        this.accountRepository = accountRepository;
+        this.accountUserCache = accountUserCache;
+        this.writeBehindTemplate = new TransactionTemplate(transactionManager);
+        this.writeBehindTemplate.setPropagationBehavior(
+                TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionIdGenerator = transactionIdGenerator;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.engineAccounts = Set.copyOf(engineAccounts);
+        this.directory = Paths.get(journalDir);
+        this.segmentSizeMb = segmentSizeMb;
+        this.fsync = fsync;
+        this.syncIntervalMicros = syncIntervalMicros;
+        this.applyBatchSize = applyBatchSize;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.balances = new OffHeapBalanceMap(enabled ? expectedAccounts : 0);
+    }
+
+    public boolean isEngineAccount(String accountNumber) {
+        return enabled && engineAccounts.contains(accountNumber);
+    }
+
+    /**
+     * 스냅샷과 journal 로 메모리 잔액을 복구한다. DB 반영은 시작이 끝난 뒤에 한다.
+     */
+    @PostConstruct
+    public void open() {
+        if (!enabled) {
+            return;
+        }
+        long snapshotSeq = loadSnapshot();
+        journal = new BalanceJournal(directory, segmentSizeMb, fsync, syncIntervalMicros);
+        appliedSeq = Math.min(readAppliedSeq(), journal.getDurableSeq());
+        long replayed = 0;
+        List<BalanceJournal.Entry> entries;
+        long seq = snapshotSeq;
+        while (!(entries = journal.read(seq, applyBatchSize)).isEmpty()) {
+            for (BalanceJournal.Entry entry : entries) {
+                // 기록의 잔액이 처리 후 잔액이므로 순서대로 덮어쓰면 된다
+                balances.put(entry.getAccountNumber(), entry.getUserId(),
+                        entry.getBalanceSnapshot());
+                seq = entry.getSeq();
+                replayed++;
+            }
+        }
+        // 설정에서 빠진 계좌는 다른 경로가 DB 잔액을 바꾸므로 메모리 잔액을 버린다
+        // (반영하지 않은 journal 은 flush 가 journal 에서 읽어서 반영한다)
+        dropUnconfiguredAccounts();
+        log.info("Balance engine recovered. accounts : {}, snapshotSeq : {}, replayed : {}",
+                balances.size(), snapshotSeq, replayed);
+
+        Gauge.builder("account.balance-engine.accounts", balances, OffHeapBalanceMap::size)
+                .register(meterRegistry);
+        Gauge.builder("account.balance-engine.apply-lag", this,
+                        engine -> engine.journal.getDurableSeq() - engine.appliedSeq)
+                .register(meterRegistry);
+    }
+
+    /**
+     * DB 에 밀린 journal 을 반영하고, 아직 메모리에 없는 엔진 계좌를 올린다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        if (!enabled) {
+            return;
+        }
+        flush();
+        long loaded = 0;
+        for (String accountNumber : engineAccounts) {
+            Optional<Account> account = accountRepository.findByAccountNumber(accountNumber)
+                    .filter(found -> found.getAccountStatus() == AccountStatus.IN_USE);
+            if (account.isPresent() && putIfAbsent(accountNumber,
+                    account.get().getAccountUser().getId(), account.get().getBalance())) {
+                loaded++;
+            }
+        }
+        recovered = true;
+        log.info("Balance engine ready. loaded from DB : {}, accounts : {}",
+                loaded, balances.size());
+    }
+
+    public TransactionDto use(Long userId, String accountNumber, Long amount) {
+        long key = toKey(accountNumber);
+        ReentrantLock stripe = lockLoaded(key, accountNumber);
+        BalanceJournal.Entry entry;
+        try {
+            int index = indexOf(key);
+            if (balances.userIdAt(index) != userId) {
+                throw new AccountException(accountUserCache.existsById(userId)
+                        ? ErrorCode.USER_ACCOUNT_UN_MATCH : ErrorCode.USER_NOT_FOUND);
+            }
+            long balance = balances.balanceAt(index);
+            if (balance < amount) {
+                throw new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE);
+            }
+            entry = append(USE, S, key, userId, amount, balance - amount);
+            balances.setBalanceAt(index, balance - amount);
+        } finally {
+            unlockAccount(stripe);
+        }
+        return awaitDurable(entry, accountNumber);
+    }
+
+    public TransactionDto cancel(String accountNumber, Long amount) {
+        return cancel(accountNumber, amount,
+                transactionIdGenerator.generate(), LocalDateTime.now());
+    }
+
+    /**
+     * 원래 거래의 취소 표시(USE_CANCELED)가 커밋된 뒤에 잔액을 올린다. 롤백되면 잔액도 그대로다.
+     * 계좌 lock 을 잡은 채 커밋하므로 돌려주는 처리 후 잔액은 지금 잔액으로 미리 정한다.
+     * 커밋 뒤에 journal 에 남기지 못하면 취소 표시를 되돌린다.
+     */
+    public TransactionDto cancelAfterCommit(String canceledTransactionId,
+                                            String accountNumber, Long amount) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return cancel(accountNumber, amount);
+        }
+        long key = toKey(accountNumber);
+        ReentrantLock stripe = lockLoaded(key, accountNumber);
+        long balance;
+        try {
+            balance = balances.balanceAt(indexOf(key)) + amount;
+        } finally {
+            unlockAccount(stripe);
+        }
+        String transactionId = transactionIdGenerator.generate();
+        LocalDateTime transactedAt = LocalDateTime.now();
+        TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        try {
+                            cancel(accountNumber, amount, transactionId, transactedAt);
+                        } catch (AccountException e) {
+                            log.error("Balance engine cancel failed after commit. "
+                                    + "transactionId : {}", canceledTransactionId, e);
+                            revertCanceled(canceledTransactionId);
+                            throw e;
+                        }
+                    }
+                });
+        return TransactionDto.builder()
+                .accountNumber(accountNumber)
+                .transactionType(CANCEL)
+                .transactionResultType(S)
+                .amount(amount)
+                .balanceSnapshot(balance)
+                .transactionId(transactionId)
+                .transactedAt(transactedAt)
+                .build();
+    }
+
+    private TransactionDto cancel(String accountNumber, Long amount,
+                                  String transactionId, LocalDateTime transactedAt) {
+        long key = toKey(accountNumber);
+        ReentrantLock stripe = lockLoaded(key, accountNumber);
+        BalanceJournal.Entry entry;
+        try {
+            int index = indexOf(key);
+            long balance = balances.balanceAt(index) + amount;
+            entry = append(CANCEL, S, key, balances.userIdAt(index), amount, balance,
+                    transactionId, transactedAt);
+            balances.setBalanceAt(index, balance);
+        } finally {
+            unlockAccount(stripe);
+        }
+        return awaitDurable(entry, accountNumber);
+    }
+
+    // 요청 트랜잭션은 이미 커밋되었으므로 따로 commit 한다
+    private void revertCanceled(String canceledTransactionId) {
+        try {
+            writeBehindTemplate.executeWithoutResult(status ->
+                    transactionRepository.findByTransactionId(canceledTransactionId)
+                            .ifPresent(transaction -> transaction.setTransactionType(USE)));
+        } catch (RuntimeException e) {
+            log.error("Cancel revert failed. transactionId : {}", canceledTransactionId, e);
+        }
+    }
+
+    public TransactionDto recordFailure(TransactionType transactionType,
+                                        String accountNumber, Long amount) {
+        long key = toKey(accountNumber);
+        ReentrantLock stripe = lockLoaded(key, accountNumber);
+        BalanceJournal.Entry entry;
+        try {
+            int index = indexOf(key);
+            entry = append(transactionType, F, key, balances.userIdAt(index), amount,
+                    balances.balanceAt(index));
+        } finally {
+            unlockAccount(stripe);
+        }
+        return awaitDurable(entry, accountNumber);
+    }
+
+    public Optional<Long> getBalance(String accountNumber) {
+        long key = toKey(accountNumber);
+        if (!enabled || key < 0) {
+            return Optional.empty();
+        }
+        checkJournal();
+        ReentrantLock stripe = lockAccount(key);
+        try {
+            int index = balances.indexOf(key);
+            return index < 0 ? Optional.empty() : Optional.of(balances.balanceAt(index));
+        } finally {
+            unlockAccount(stripe);
+        }
+    }
+
+    /**
+     * 해지 등으로 더 이상 엔진에서 처리하면 안 되는 계좌를 커밋 후에 (트랜잭션 밖이면 바로) 내린다.
+     * 롤백되면 메모리 잔액을 그대로 쓴다.
+     */
+    public void evict(String accountNumber) {
+        long key = toKey(accountNumber);
+        if (key < 0) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            remove(key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        remove(key);
+                    }
+                });
+    }
+
+    private void remove(long key) {
+        structureLock.writeLock().lock();
+        try {
+            balances.remove(key);
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 디스크에 내려간 journal 을 DB 에 반영한다.
+     * 같은 기록을 다시 반영해도 거래 id 로 걸러지고 잔액은 같은 값으로 덮어쓴다.
+     */
+    @Scheduled(fixedDelayString = "${account.balance-engine.apply-interval-millis:200}")
+    public synchronized void flush() {
+        if (!enabled) {
+            return;
+        }
+        List<BalanceJournal.Entry> entries;
+        while (!(entries = journal.read(appliedSeq, applyBatchSize)).isEmpty()) {
+            List<BalanceJournal.Entry> batch = entries;
+            writeBehindTemplate.executeWithoutResult(status -> writeBehind(batch));
+            // commit 이 끝난 기록만 반영된 것으로 남긴다
+            appliedSeq = batch.get(batch.size() - 1).getSeq();
+            writeAppliedSeq(appliedSeq);
+        }
+    }
+
+    /**
+     * 메모리 잔액을 파일로 남기고, 스냅샷과 DB 반영이 모두 지난 journal segment 를 지운다.
+     */
+    @Scheduled(fixedDelayString = "${account.balance-engine.snapshot-interval-millis:60000}")
+    public synchronized void snapshot() {
+        if (!enabled) {
+            return;
+        }
+        if (journal.isFailed()) {
+            log.error("Balance engine snapshot skipped. journal sync failed.");
+            return;
+        }
+        OffHeapBalanceMap copy;
+        long seq;
+        structureLock.writeLock().lock();
+        try {
+            // 진행중인 변경이 없는 시점의 잔액과 seq
+            copy = balances.copy();
+            seq = journal.getWrittenSeq();
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+        journal.awaitDurable(seq);
+        writeSnapshot(copy, seq);
+        journal.deleteBefore(Math.min(seq, appliedSeq) + 1);
+        log.info("Balance engine snapshot written. seq : {}, accounts : {}", seq, copy.size());
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!enabled || journal == null) {
+            return;
+        }
+        try {
+            flush();
+            snapshot();
+        } catch (RuntimeException e) {
+            // 반영하지 못한 기록은 다음 시작 때 journal 에서 다시 반영한다
+            log.error("Balance engine shutdown flush failed.", e);
+        } finally {
+            journal.close();
+        }
+    }
+
+    /**
+     * 메모리에 없으면 추가한다 (이미 있는 계좌의 잔액은 메모리가 최신이다).
+     */
+    boolean putIfAbsent(String accountNumber, long userId, long balance) {
+        long key = toKey(accountNumber);
+        if (key < 0) {
+            return false;
+        }
+        structureLock.writeLock().lock();
+        try {
+            if (balances.indexOf(key) >= 0) {
+                return false;
+            }
+            balances.put(key, userId, balance);
+            return true;
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    // open 에서 다른 요청이 오기 전에 호출
+    private void dropUnconfiguredAccounts() {
+        Set<Long> configured = engineAccounts.stream()
+                .map(JournaledBalanceEngine::toKey)
+                .collect(Collectors.toSet());
+        List<Long> dropped = new ArrayList<>();
+        for (int i = 0; i < balances.capacity(); i++) {
+            long key = balances.keyAt(i);
+            if (key != 0L && !configured.contains(key)) {
+                dropped.add(key);
+            }
+        }
+        dropped.forEach(balances::remove);
+    }
+
+    // 메모리에 없으면 lock 없이 DB 에서 올린 뒤 다시 잡는다
+    private ReentrantLock lockLoaded(long key, String accountNumber) {
+        if (!recovered) {
+            // journal 을 DB 에 반영하기 전에는 DB 잔액으로 올리면 안 된다
+            throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+        }
+        checkJournal();
+        ReentrantLock stripe = lockAccount(key);
+        if (balances.indexOf(key) >= 0) {
+            return stripe;
+        }
+        unlockAccount(stripe);
+        Account account = accountRepository.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+        if (account.getAccountStatus() != AccountStatus.IN_USE) {
+            throw new AccountException(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED);
+        }
+        putIfAbsent(accountNumber, account.getAccountUser().getId(), account.getBalance());
+        return lockAccount(key);
+    }
+
+    // fsync 가 실패한 뒤의 메모리 잔액은 믿을 수 없다
+    private void checkJournal() {
+        if (journal.isFailed()) {
+            throw new AccountException(ErrorCode.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // stripe lock 을 잡은 상태에서 호출 (그 사이 해지로 내려간 경우)
+    private int indexOf(long key) {
+        int index = balances.indexOf(key);
+        if (index < 0) {
+            throw new AccountException(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED);
+        }
+        return index;
+    }
+
+    private BalanceJournal.Entry append(TransactionType transactionType,
+                                        TransactionResultType transactionResultType,
+                                        long key, long userId, long amount, long balance) {
+        return append(transactionType, transactionResultType, key, userId, amount, balance,
+                transactionIdGenerator.generate(), LocalDateTime.now());
+    }
+
+    private BalanceJournal.Entry append(TransactionType transactionType,
+                                        TransactionResultType transactionResultType,
+                                        long key, long userId, long amount, long balance,
+                                        String transactionId, LocalDateTime transactedAt) {
+        BalanceJournal.Entry entry = BalanceJournal.Entry.builder()
+                .accountNumber(key)
+                .userId(userId)
+                .amount(amount)
+                .balanceSnapshot(balance)
+                .transactedAt(transactedAt)
+                .transactionType(transactionType)
+                .transactionResultType(transactionResultType)
+                .transactionId(transactionId)
+                .build();
+        try {
+            return entry.toBuilder().seq(journal.append(entry)).build();
+        } catch (RuntimeException e) {
+            log.error("Journal append failed. accountNumber : {}", key, e);
+            throw new AccountException(ErrorCode.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // 같은 계좌의 다음 기록은 seq 가 더 크므로 lock 을 놓고 기다려도 순서가 유지된다
+    private TransactionDto awaitDurable(BalanceJournal.Entry entry, String accountNumber) {
+        try {
+            journal.awaitDurable(entry.getSeq());
+        } catch (IllegalStateException e) {
+            // 메모리에는 이미 반영했으므로 응답하지 않는다. fsync 실패면 이후 요청도 checkJournal 에서 거절된다
+            log.error("Journal sync failed. seq : {}", entry.getSeq(), e);
+            throw new AccountException(ErrorCode.INTERNAL_SERVER_ERROR);
+        }
+        return TransactionDto.builder()
+                .accountNumber(accountNumber)
+                .transactionType(entry.getTransactionType())
+                .transactionResultType(entry.getTransactionResultType())
+                .amount(entry.getAmount())
+                .balanceSnapshot(entry.getBalanceSnapshot())
+                .transactionId(entry.getTransactionId())
+                .transactedAt(entry.getTransactedAt())
+                .build();
+    }
+
+    private void writeBehind(List<BalanceJournal.Entry> entries) {
+        Set<String> written = new HashSet<>(transactionRepository.findTransactionIdsIn(
+                entries.stream()
+                        .map(BalanceJournal.Entry::getTransactionId)
+                        .collect(Collectors.toList())));
+        Map<Long, Optional<Account>> accounts = new HashMap<>();
+        List<Transaction> transactions = new ArrayList<>();
+
+        for (BalanceJournal.Entry entry : entries) {
+            Account account = accounts.computeIfAbsent(entry.getAccountNumber(),
+                            key -> accountRepository.findByAccountNumber(toAccountNumber(key)))
+                    .orElse(null);
+            if (account == null) {
+                log.error("Journal entry for unknown accountNumber : {}", entry.getAccountNumber());
+                continue;
+            }
+            account.setBalance(entry.getBalanceSnapshot());
+            if (!written.contains(entry.getTransactionId())) {
+                transactions.add(Transaction.builder()
+                        .transactionType(entry.getTransactionType())
+                        .transactionResultType(entry.getTransactionResultType())
+                        .account(account)
+                        .amount(entry.getAmount())
+                        .balanceSnapshot(entry.getBalanceSnapshot())
+                        .transactionId(entry.getTransactionId())
+                        .transactedAt(entry.getTransactedAt())
+                        .build());
+            }
+        }
+        transactionRepository.saveAll(transactions);
+    }
+
+    private ReentrantLock lockAccount(long key) {
+        if (key < 0) {
+            throw new AccountException(ErrorCode.ACCOUNT_NOT_FOUND);
+        }
+        structureLock.readLock().lock();
+        ReentrantLock stripe = stripes[(int) (key ^ (key >>> 32)) & (stripes.length - 1)];
+        stripe.lock();
+        return stripe;
+    }
+
+    private void unlockAccount(ReentrantLock stripe) {
+        stripe.unlock();
+        structureLock.readLock().unlock();
+    }
+
+    private long readAppliedSeq() {
+        Path path = directory.resolve(APPLIED_FILE);
+        try {
+            return Files.exists(path)
+                    ? Long.parseLong(Files.readString(path, StandardCharsets.UTF_8).trim())
+                    : 0L;
+        } catch (IOException | NumberFormatException e) {
+            // 처음부터 다시 반영해도 거래 id 로 걸러진다
+            log.error("Applied seq unreadable, reapplying journal.", e);
+            return 0L;
+        }
+    }
+
+    private void writeAppliedSeq(long seq) {
+        writeAtomically(APPLIED_FILE, out ->
+                out.write(String.valueOf(seq).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // 스냅샷 : magic, seq, 계좌 수, (계좌번호, 소유주 id, 잔액)...
+    private long loadSnapshot() {
+        Path path = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(path)) {
+            return 0L;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readLong() != SNAPSHOT_MAGIC) {
+                throw new IllegalStateException("Not a balance snapshot : " + path);
+            }
+            long seq = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                balances.put(in.readLong(), in.readLong(), in.readLong());
+            }
+            return seq;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeSnapshot(OffHeapBalanceMap copy, long seq) {
+        writeAtomically(SNAPSHOT_FILE, stream -> {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeLong(SNAPSHOT_MAGIC);
+            out.writeLong(seq);
+            out.writeInt(copy.size());
+            for (int i = 0; i < copy.capacity(); i++) {
+                if (copy.keyAt(i) != 0L) {
+                    out.writeLong(copy.keyAt(i));
+                    out.writeLong(copy.userIdAt(i));
+                    out.writeLong(copy.balanceAt(i));
+                }
+            }
+            out.flush();
+        });
+    }
+
+    // 임시 파일에 쓰고 fsync 한 뒤 이름을 바꿔서, 중간에 죽어도 이전 파일이 남게 한다
+    private void writeAtomically(String fileName, FileWriter writer) {
+        Path target = directory.resolve(fileName);
+        Path temp = directory.resolve(fileName + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writer.write(Channels.newOutputStream(channel));
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 계좌번호는 숫자 10자리
+    private static long toKey(String accountNumber) {
+        if (accountNumber == null || accountNumber.length() != 10) {
+            return -1L;
+        }
+        long key = 0;
+        for (int i = 0; i < accountNumber.length(); i++) {
+            char c = accountNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1L;
+            }
+            key = key * 10 + (c - '0');
+        }
+        return key == 0 ? -1L : key;
+    }
+
+    private static String toAccountNumber(long key) {
+        return String.format("%010d", key);
+    }
+
+    @FunctionalInterface
+    private interface FileWriter {
+        void write(OutputStream out) throws IOException;
+    }
+}
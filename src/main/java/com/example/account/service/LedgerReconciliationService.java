@@ -0,0 +1,319 @@
+package com.example.account.service;
+
+import com.example.account.domain.Account;
+import com.example.account.dto.BalanceMismatch;
+import com.example.account.dto.ReconciliationReport;
+import com.example.account.dto.TransactionHistoryView;
+import com.example.account.repository.AccountBalanceSlotRepository;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.TransactionResultType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 계좌별 거래 내역의 balanceSnapshot 이 앞 거래 잔액에서 금액만큼 바뀌었는지,
+ * 마지막 거래 잔액이 Account.balance 와 같은지 확인한다.
+ * 계좌를 id 범위로 나눠서 fork/join pool 에서 범위별로 처리하고,
+ * 범위마다 마지막으로 확인한 계좌 id 를 redis 에 남겨서 중단된 곳부터 다시 시작할 수 있다.
+ * 처리중에 거래가 들어온 계좌는 다르게 보일 수 있으므로 보고된 계좌는 다시 확인한다.
+ */
+@Slf4j
+@Service
+public class LedgerReconciliationService {
+    private static final String CHECKPOINT_KEY = "RECONCILE";
+    private static final String RANGE_SIZE_FIELD = "range-size";
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_REPORTED_MISMATCHES = 100;
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final AccountBalanceSlotRepository accountBalanceSlotRepository;
+    private final RedissonClient redissonClient;
+    private final TransactionTemplate readOnlyTemplate;
+
+    private final Counter accountCounter;
+    private final Counter transactionCounter;
+    private final Counter mismatchCounter;
+
+    private final long rangeSize;
+    private final ForkJoinPool pool;
+    // join 중에 pool 이 보충 스레드를 만들 수 있어서 connection 수는 따로 제한한다
+    private final Semaphore connections;
+
+    private volatile Run run;
+
+    public LedgerReconciliationService(
+            AccountRepository accountRepository,
+            TransactionRepository transactionRepository,
+            AccountBalanceSlotRepository accountBalanceSlotRepository,
+            RedissonClient redissonClient,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${account.reconciliation.max-connections:4}") int maxConnections,
+            @Value("${account.reconciliation.range-size:10000}") long rangeSize
+    ) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.accountBalanceSlotRepository = accountBalanceSlotRepository;
+        this.redissonClient = redissonClient;
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.accountCounter = meterRegistry.counter("account.reconciliation.accounts");
+        this.transactionCounter = meterRegistry.counter("account.reconciliation.transactions");
+        this.mismatchCounter = meterRegistry.counter("account.reconciliation.mismatches");
+        this.rangeSize = rangeSize;
+        this.pool = new ForkJoinPool(maxConnections);
+        this.connections = new Semaphore(maxConnections);
+    }
+
+    /**
+     * @param resume false 면 checkpoint 를 지우고 처음부터
+     * @return 이미 실행중이면 false
+     */
+    public synchronized boolean start(boolean resume) {
+        if (run != null && run.finishedAt == null) {
+            return false;
+        }
+        RMap<String, String> checkpoints = getCheckpoints();
+        // 범위 크기가 바뀌면 남은 checkpoint 의 범위와 맞지 않는다
+        if (!resume || !String.valueOf(rangeSize).equals(checkpoints.get(RANGE_SIZE_FIELD))) {
+            checkpoints.delete();
+            checkpoints.fastPut(RANGE_SIZE_FIELD, String.valueOf(rangeSize));
+        }
+        long maxId = accountRepository.findMaxId().orElse(0L);
+        Run current = new Run(maxId / rangeSize + 1);
+        run = current;
+        log.info("Ledger reconciliation started. ranges : {}, resume : {}",
+                current.rangesTotal, resume);
+
+        CompletableFuture.runAsync(
+                        () -> new RangeTask(current, checkpoints, 0, current.rangesTotal).invoke(),
+                        pool)
+                .whenComplete((ignored, e) -> finish(current, checkpoints, e));
+        return true;
+    }
+
+    public ReconciliationReport getReport() {
+        Run current = run;
+        if (current == null) {
+            return ReconciliationReport.builder().mismatches(List.of()).build();
+        }
+        LocalDateTime end = current.finishedAt == null ? LocalDateTime.now() : current.finishedAt;
+        long elapsedMillis = Math.max(1L, Duration.between(current.startedAt, end).toMillis());
+        List<BalanceMismatch> mismatches;
+        synchronized (current.mismatches) {
+            mismatches = new ArrayList<>(current.mismatches);
+        }
+        return ReconciliationReport.builder()
+                .running(current.finishedAt == null)
+                .failed(current.failed)
+                .startedAt(current.startedAt)
+                .finishedAt(current.finishedAt)
+                .rangesTotal(current.rangesTotal)
+                .rangesDone(current.rangesDone.get())
+                .accountsChecked(current.accounts.get())
+                .accountsSkipped(current.skipped.get())
+                .transactionsChecked(current.transactions.get())
+                .mismatchCount(current.mismatchCount.get())
+                .accountsPerSecond(current.accounts.get() * 1000.0 / elapsedMillis)
+                .mismatches(mismatches)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void finish(Run current, RMap<String, String> checkpoints, Throwable e) {
+        try {
+            if (e == null) {
+                // 끝까지 확인했으면 다음 실행은 처음부터
+                checkpoints.delete();
+            } else {
+                current.failed = true;
+                log.error("Ledger reconciliation stopped. resume from checkpoint.", e);
+            }
+        } finally {
+            current.finishedAt = LocalDateTime.now();
+        }
+        log.info("Ledger reconciliation finished. accounts : {}, transactions : {}, mismatches : {}",
+                current.accounts.get(), current.transactions.get(), current.mismatchCount.get());
+    }
+
+    /**
+     * 범위 [index * rangeSize, (index + 1) * rangeSize) 의 계좌를 page 단위로 확인한다.
+     */
+    private void reconcileRange(Run current, RMap<String, String> checkpoints, long index) {
+        long fromId = index * rangeSize;
+        long toId = fromId + rangeSize;
+        String field = String.valueOf(fromId);
+        String checkpoint = checkpoints.get(field);
+        long afterId = checkpoint == null ? fromId - 1 : Long.parseLong(checkpoint);
+
+        while (afterId < toId - 1) {
+            long pageAfterId = afterId;
+            Long lastId = withConnection(() -> readOnlyTemplate.execute(status -> {
+                List<Account> accounts = accountRepository.findByIdGreaterThanAndIdLessThanOrderById(
+                        pageAfterId, toId, PageRequest.of(0, PAGE_SIZE));
+                accounts.forEach(account -> reconcileAccount(current, account));
+                return accounts.isEmpty() ? null : accounts.get(accounts.size() - 1).getId();
+            }));
+            afterId = lastId == null ? toId - 1 : lastId;
+            checkpoints.fastPut(field, String.valueOf(afterId));
+        }
+        current.rangesDone.incrementAndGet();
+    }
+
+    private void reconcileAccount(Run current, Account account) {
+        // slot 차감은 계좌 lock 없이 병렬이라 잔액 기록이 거래 순서대로 이어지지 않는다
+        if (accountBalanceSlotRepository.existsByAccountId(account.getId())) {
+            current.skipped.incrementAndGet();
+            return;
+        }
+        Long balance = null;
+        long count = 0;
+        try (Stream<TransactionHistoryView> views =
+                     transactionRepository.streamHistory(account.getId())) {
+            for (Iterator<TransactionHistoryView> it = views.iterator(); it.hasNext(); count++) {
+                TransactionHistoryView view = it.next();
+                if (balance != null) {
+                    Long expected = expectedBalance(balance, view);
+                    if (!Objects.equals(expected, view.getBalanceSnapshot())) {
+                        report(current, account, view.getTransactionId(),
+                                expected, view.getBalanceSnapshot());
+                    }
+                }
+                // 어긋난 기록 하나가 뒤의 모든 거래를 어긋나 보이게 하지 않도록 기록된 잔액에서 이어간다
+                balance = view.getBalanceSnapshot();
+            }
+        }
+        if (balance != null && !Objects.equals(balance, account.getBalance())) {
+            report(current, account, null, balance, account.getBalance());
+        }
+        current.accounts.incrementAndGet();
+        current.transactions.addAndGet(count);
+        accountCounter.increment();
+        transactionCounter.increment(count);
+    }
+
+    static Long expectedBalance(long balance, TransactionHistoryView view) {
+        if (view.getTransactionResultType() == TransactionResultType.F) {
+            return balance;
+        }
+        switch (view.getTransactionType()) {
+            case USE:
+            case USE_CANCELED:
+            case TRANSFER_OUT:
+                return balance - view.getAmount();
+            case CANCEL:
+            case TRANSFER_IN:
+                return balance + view.getAmount();
+            default:
+                throw new IllegalStateException("unknown type : " + view.getTransactionType());
+        }
+    }
+
+    private void report(Run current, Account account, String transactionId,
+                        Long expected, Long actual) {
+        log.warn("Balance mismatch. accountNumber : {}, transactionId : {}, expected : {}, actual : {}",
+                account.getAccountNumber(), transactionId, expected, actual);
+        mismatchCounter.increment();
+        if (current.mismatchCount.incrementAndGet() > MAX_REPORTED_MISMATCHES) {
+            return;
+        }
+        current.mismatches.add(BalanceMismatch.builder()
+                .accountNumber(account.getAccountNumber())
+                .transactionId(transactionId)
+                .expectedBalance(expected)
+                .actualBalance(actual)
+                .build());
+    }
+
+    private <T> T withConnection(Supplier<T> work) {
+        try {
+            connections.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("reconciliation interrupted", e);
+        }
+        try {
+            return work.get();
+        } finally {
+            connections.release();
+        }
+    }
+
+    private RMap<String, String> getCheckpoints() {
+        return redissonClient.getMap(CHECKPOINT_KEY, StringCodec.INSTANCE);
+    }
+
+    // 범위 index [from, to) 를 반씩 나눠서 남는 worker 가 가져가게 한다
+    private class RangeTask extends RecursiveAction {
+        private final Run current;
+        private final RMap<String, String> checkpoints;
+        private final long from;
+        private final long to;
+
+        RangeTask(Run current, RMap<String, String> checkpoints, long from, long to) {
+            this.current = current;
+            this.checkpoints = checkpoints;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                long mid = (from + to) >>> 1;
+                invokeAll(new RangeTask(current, checkpoints, from, mid),
+                        new RangeTask(current, checkpoints, mid, to));
+                return;
+            }
+            reconcileRange(current, checkpoints, from);
+        }
+    }
+
+    private static class Run {
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final long rangesTotal;
+        private final AtomicLong rangesDone = new AtomicLong();
+        private final AtomicLong accounts = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong transactions = new AtomicLong();
+        private final AtomicLong mismatchCount = new AtomicLong();
+        private final List<BalanceMismatch> mismatches = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean failed;
+        private volatile LocalDateTime finishedAt;
+
+        Run(long rangesTotal) {
+            this.rangesTotal = rangesTotal;
+        }
+    }
+}
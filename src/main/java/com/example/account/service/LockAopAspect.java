@@ -1,34 +1,255 @@
 package com.example.account.service;
 
+import com.example.account.aop.AccountLock;
 import com.example.account.aop.AccountLockIdInterface;
-import lombok.RequiredArgsConstructor;
+import com.example.account.aop.AccountLockIdsInterface;
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import com.example.account.type.LockMode;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * CompletableFuture / DeferredResult 를 돌려주는 메서드는 lock 을 비동기로 취득해서
+ * 대기하는 동안 요청 스레드를 잡고 있지 않고, 결과가 완료되면 해제한다.
+ */
 @Aspect
 @Component
 @Slf4j
-@RequiredArgsConstructor
 public class LockAopAspect {
     private final LockService lockService;
+    private final LockMetrics lockMetrics;
+    private final ShardedBalanceService shardedBalanceService;
+    private final LockCombiner lockCombiner;
+    // lock 취득 후 메서드 실행 (redis 응답 스레드에서 실행하지 않도록)
+    private final Executor asyncLockExecutor;
+
+    public LockAopAspect(
+            LockService lockService,
+            LockMetrics lockMetrics,
+            ShardedBalanceService shardedBalanceService,
+            LockCombiner lockCombiner,
+            @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+            Executor asyncLockExecutor
+    ) {
+        this.lockService = lockService;
+        this.lockMetrics = lockMetrics;
+        this.shardedBalanceService = shardedBalanceService;
+        this.lockCombiner = lockCombiner;
+        this.asyncLockExecutor = asyncLockExecutor;
+    }
+
+    @Value("${account.lock.optimistic.max-attempts:3}")
+    private int optimisticMaxAttempts;
+
+    @Value("${account.lock.optimistic.backoff-millis:20}")
+    private long optimisticBackoffMillis;
 
     //around는 시작과 끝에 둘러 싸면서 원하는 동작 부여
-    @Around("@annotation(com.example.account.aop.AccountLock) && args(request)")
+    @Around("@annotation(accountLock) && args(request)")
     public Object aroundMethod(
             ProceedingJoinPoint pjp,
+            AccountLock accountLock,
             AccountLockIdInterface request
     ) throws Throwable {
+        if (accountLock.mode() == LockMode.OPTIMISTIC) {
+            return proceedOptimistically(pjp, request.getAccountNumber());
+        }
+        if (accountLock.shardedBalance()
+                && shardedBalanceService.isShardedAccount(request.getAccountNumber())) {
+            // slot 마다 조건부 update 로 차감하므로 계좌 전체를 잠그지 않는다
+            return pjp.proceed();
+        }
+        List<String> accountNumbers = List.of(request.getAccountNumber());
+        if (isAsync(pjp)) {
+            return proceedAsync(pjp, accountNumbers,
+                    () -> lockService.lockAsync(request.getAccountNumber()),
+                    ownerId -> lockService.unlockAsync(request.getAccountNumber(), ownerId));
+        }
+        if (accountLock.combining() && lockCombiner.isEnabled()) {
+            return lockCombiner.execute(getMethodName(pjp), request.getAccountNumber(), pjp);
+        }
+
         // lock 취득 시도
-        lockService.lock(request.getAccountNumber());
+        long lockedAt = lockTimed(pjp, accountNumbers,
+                () -> lockService.lock(request.getAccountNumber()));
         try{
             return pjp.proceed();
         }finally {
             // lock 해제
             lockService.unlock(request.getAccountNumber());
+            lockMetrics.recordHold(getMethodName(pjp), System.nanoTime() - lockedAt);
+        }
+    }
+
+    // 여러 계좌를 다루는 요청은 전체 계좌를 정렬된 순서로 한 번에 잠근다
+    @Around("@annotation(accountLock) && args(request)")
+    public Object aroundBatchMethod(
+            ProceedingJoinPoint pjp,
+            AccountLock accountLock,
+            AccountLockIdsInterface request
+    ) throws Throwable {
+        if (accountLock.mode() == LockMode.OPTIMISTIC) {
+            return proceedOptimistically(pjp, request.getAccountNumbers().toString());
+        }
+        if (isAsync(pjp)) {
+            return proceedAsync(pjp, request.getAccountNumbers(),
+                    () -> lockService.lockAllAsync(request.getAccountNumbers()),
+                    ownerId -> lockService.unlockAllAsync(request.getAccountNumbers(), ownerId));
+        }
+
+        long lockedAt = lockTimed(pjp, request.getAccountNumbers(),
+                () -> lockService.lockAll(request.getAccountNumbers()));
+        try {
+            return pjp.proceed();
+        } finally {
+            lockService.unlockAll(request.getAccountNumbers());
+            lockMetrics.recordHold(getMethodName(pjp), System.nanoTime() - lockedAt);
+        }
+    }
+
+    // 대기 시간을 기록하고 lock 을 잡은 시점을 돌려준다
+    private long lockTimed(ProceedingJoinPoint pjp, List<String> accountNumbers, Runnable lock) {
+        long startedAt = System.nanoTime();
+        try {
+            lock.run();
+        } catch (AccountException e) {
+            lockMetrics.recordWait(getMethodName(pjp), accountNumbers,
+                    System.nanoTime() - startedAt, false);
+            throw e;
+        }
+        long lockedAt = System.nanoTime();
+        lockMetrics.recordWait(getMethodName(pjp), accountNumbers, lockedAt - startedAt, true);
+        return lockedAt;
+    }
+
+    private static String getMethodName(ProceedingJoinPoint pjp) {
+        if (pjp.getSignature() == null) {
+            return null;
+        }
+        return pjp.getSignature().getDeclaringType().getSimpleName()
+                + "." + pjp.getSignature().getName();
+    }
+
+    private static boolean isAsync(ProceedingJoinPoint pjp) {
+        Class<?> returnType = getReturnType(pjp);
+        return CompletionStage.class.isAssignableFrom(returnType)
+                || DeferredResult.class.isAssignableFrom(returnType);
+    }
+
+    private static Class<?> getReturnType(ProceedingJoinPoint pjp) {
+        if (pjp.getSignature() instanceof MethodSignature) {
+            return ((MethodSignature) pjp.getSignature()).getReturnType();
+        }
+        return Object.class;
+    }
+
+    private Object proceedAsync(
+            ProceedingJoinPoint pjp,
+            List<String> accountNumbers,
+            Supplier<CompletableFuture<Long>> lock,
+            Function<Long, CompletableFuture<Void>> unlock
+    ) {
+        String method = getMethodName(pjp);
+        long startedAt = System.nanoTime();
+        CompletableFuture<Long> locked = lock.get().whenComplete((ownerId, e) ->
+                lockMetrics.recordWait(method, accountNumbers,
+                        System.nanoTime() - startedAt, e == null));
+        CompletableFuture<Object> result = locked.thenComposeAsync(ownerId -> {
+            long lockedAt = System.nanoTime();
+            return proceedHoldingLock(pjp).whenComplete((value, e) -> {
+                lockMetrics.recordHold(method, System.nanoTime() - lockedAt);
+                unlock.apply(ownerId).whenComplete((unlocked, unlockError) -> {
+                    if (unlockError != null) {
+                        log.error("async unlock failed.", unlockError);
+                    }
+                });
+            });
+        }, asyncLockExecutor);
+        if (!DeferredResult.class.isAssignableFrom(getReturnType(pjp))) {
+            return result;
+        }
+        DeferredResult<Object> deferredResult = new DeferredResult<>();
+        result.whenComplete((value, e) -> {
+            if (e != null) {
+                deferredResult.setErrorResult(unwrap(e));
+            } else {
+                deferredResult.setResult(value);
+            }
+        });
+        return deferredResult;
+    }
+
+    // 메서드가 돌려준 결과가 완료될 때까지 lock 을 유지한다
+    @SuppressWarnings("unchecked")
+    private static CompletableFuture<Object> proceedHoldingLock(ProceedingJoinPoint pjp) {
+        Object returned;
+        try {
+            returned = pjp.proceed();
+        } catch (Throwable e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (returned instanceof CompletionStage) {
+            return ((CompletionStage<Object>) returned).toCompletableFuture();
+        }
+        if (returned instanceof DeferredResult) {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            ((DeferredResult<Object>) returned).setResultHandler(value -> {
+                if (value instanceof Throwable) {
+                    future.completeExceptionally((Throwable) value);
+                } else {
+                    future.complete(value);
+                }
+            });
+            return future;
+        }
+        return CompletableFuture.completedFuture(returned);
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private Object proceedOptimistically(
+            ProceedingJoinPoint pjp,
+            String accountNumber
+    ) throws Throwable {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return pjp.proceed();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= optimisticMaxAttempts) {
+                    log.error("Optimistic lock retries exhausted for accountNumber : {}",
+                            accountNumber);
+                    throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+                }
+                log.debug("Optimistic lock conflict for accountNumber : {}, attempt : {}",
+                        accountNumber, attempt);
+                backoff(attempt);
+            }
         }
     }
 
+    private void backoff(int attempt) throws InterruptedException {
+        long base = optimisticBackoffMillis << Math.min(attempt - 1, 10);
+        Thread.sleep(base + ThreadLocalRandom.current().nextLong(base + 1));
+    }
 }
@@ -0,0 +1,188 @@
+package com.example.account.service;
+
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 같은 노드에서 같은 계좌의 lock 을 기다리는 요청들을 모아서 처리한다 (flat combining).
+ * 먼저 차례를 얻은 요청 스레드가 대기열의 요청들을 lock 한 번으로 차례대로 실행하고
+ * 각 요청에 자기 결과나 예외를 돌려준다. 나머지 요청은 redis lock 을 두고 경쟁하지 않는다.
+ * 트랜잭션은 묶지 않는다. 각 요청은 따로 실행할 때와 같이 자기 트랜잭션으로 commit 하고,
+ * 실패한 요청의 실패 기록도 그 요청이 따로 남긴다.
+ */
+@Component
+public class LockCombiner {
+    // 깨우는 신호를 놓친 경우에 대비한 최대 대기
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final LockService lockService;
+    private final LockMetrics lockMetrics;
+    private final DistributionSummary batchSizeSummary;
+
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long waitNanos;
+
+    private final ConcurrentHashMap<String, Combining> combinings = new ConcurrentHashMap<>();
+
+    public LockCombiner(
+            LockService lockService,
+            LockMetrics lockMetrics,
+            MeterRegistry meterRegistry,
+            @Value("${account.lock.combining.enabled:false}") boolean enabled,
+            @Value("${account.lock.combining.max-batch-size:64}") int maxBatchSize,
+            @Value("${account.lock.combining.wait-millis:3000}") long waitMillis
+    ) {
+        this.lockService = lockService;
+        this.lockMetrics = lockMetrics;
+        this.batchSizeSummary = DistributionSummary.builder("account.lock.combining.batch-size")
+                .register(meterRegistry);
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.waitNanos = TimeUnit.MILLISECONDS.toNanos(waitMillis);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 대기열에 넣고, 처리하는 스레드가 없으면 직접 처리한다.
+     * 대기 시간 안에 처리되지 않으면 대기열에서 빠지고 lock 실패로 끝난다.
+     */
+    public Object execute(String method, String accountNumber, ProceedingJoinPoint pjp)
+            throws Throwable {
+        Request request = new Request(pjp, Thread.currentThread());
+        Combining combining = combinings.compute(accountNumber, (key, current) -> {
+            Combining target = current == null ? new Combining() : current;
+            target.queue.add(request);
+            return target;
+        });
+
+        long deadline = System.nanoTime() + waitNanos;
+        while (!request.result.isDone()) {
+            if (combining.running.compareAndSet(false, true)) {
+                try {
+                    combine(method, accountNumber, combining, request);
+                } finally {
+                    combining.running.set(false);
+                }
+                // 남은 요청 중 하나가 이어서 처리하도록 깨운다
+                wakeNext(combining);
+                continue;
+            }
+            if (System.nanoTime() - deadline > 0 && combining.queue.remove(request)) {
+                throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+            }
+            LockSupport.parkNanos(this, PARK_NANOS);
+        }
+        combinings.computeIfPresent(accountNumber, (key, current) ->
+                current.queue.isEmpty() && !current.running.get() ? null : current);
+
+        try {
+            return request.result.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    // 자기 요청이 끝날 때까지 대기열을 묶음 단위로 처리
+    private void combine(String method, String accountNumber,
+                         Combining combining, Request own) {
+        while (!own.result.isDone()) {
+            List<Request> batch = new ArrayList<>();
+            Request request;
+            while (batch.size() < maxBatchSize && (request = combining.queue.poll()) != null) {
+                batch.add(request);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            runBatch(method, accountNumber, batch);
+        }
+    }
+
+    private void runBatch(String method, String accountNumber, List<Request> batch) {
+        long startedAt = System.nanoTime();
+        try {
+            lockService.lock(accountNumber);
+        } catch (AccountException e) {
+            lockMetrics.recordWait(method, List.of(accountNumber),
+                    System.nanoTime() - startedAt, false);
+            batch.forEach(request -> request.complete(null, e));
+            return;
+        }
+        long lockedAt = System.nanoTime();
+        lockMetrics.recordWait(method, List.of(accountNumber), lockedAt - startedAt, true);
+        batchSizeSummary.record(batch.size());
+        try {
+            // 요청마다 자기 트랜잭션이 끝난 뒤에 결과를 돌려준다
+            batch.forEach(Request::proceed);
+        } finally {
+            lockService.unlock(accountNumber);
+            lockMetrics.recordHold(method, System.nanoTime() - lockedAt);
+        }
+    }
+
+    private static void wakeNext(Combining combining) {
+        Request next = combining.queue.peek();
+        if (next != null) {
+            LockSupport.unpark(next.thread);
+        }
+    }
+
+    // 테스트용
+    int getQueuedCount(String accountNumber) {
+        Combining combining = combinings.get(accountNumber);
+        return combining == null ? 0 : combining.queue.size();
+    }
+
+    private static class Combining {
+        private final Queue<Request> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean running = new AtomicBoolean();
+    }
+
+    private static class Request {
+        private final ProceedingJoinPoint pjp;
+        private final Thread thread;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private Request(ProceedingJoinPoint pjp, Thread thread) {
+            this.pjp = pjp;
+            this.thread = thread;
+        }
+
+        private void proceed() {
+            try {
+                complete(pjp.proceed(), null);
+            } catch (Throwable e) {
+                complete(null, e);
+            }
+        }
+
+        private void complete(Object value, Throwable error) {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+            LockSupport.unpark(thread);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.account.service;
+
+import com.example.account.dto.ContendedAccount;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * GET /actuator/lockcontention : 최근 lock 대기 기록 기준 경합이 심한 계좌 10개
+ */
+@Component
+@Endpoint(id = "lockcontention")
+@RequiredArgsConstructor
+public class LockContentionEndpoint {
+    private static final int TOP_ACCOUNTS = 10;
+
+    private final LockMetrics lockMetrics;
+
+    @ReadOperation
+    public List<ContendedAccount> topContendedAccounts() {
+        return lockMetrics.getTopContendedAccounts(TOP_ACCOUNTS);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.account.service;
+
+import com.example.account.dto.ContendedAccount;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Collectors;
+
+/**
+ * 계좌 lock 의 대기 시간, 보유 시간, 실패를 메서드별로 기록한다.
+ * - account.lock.wait (method, outcome=acquired|failed)
+ * - account.lock.hold (method)
+ * 최근 대기 기록은 고정 크기 ring buffer 에 남겨서 경합이 심한 계좌를 뽑아 볼 수 있다.
+ */
+@Component
+public class LockMetrics {
+    private static final String UNKNOWN_METHOD = "unknown";
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicReferenceArray<WaitSample> recentSamples;
+    private final AtomicLong sampleIndex = new AtomicLong();
+
+    public LockMetrics(
+            MeterRegistry meterRegistry,
+            @Value("${account.lock.metrics.sample-size:4096}") int sampleSize
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.recentSamples = new AtomicReferenceArray<>(Math.max(sampleSize, 1));
+    }
+
+    public void recordWait(String method, Collection<String> accountNumbers,
+                           long waitNanos, boolean acquired) {
+        Timer.builder("account.lock.wait")
+                .tag("method", methodTag(method))
+                .tag("outcome", acquired ? "acquired" : "failed")
+                .register(meterRegistry)
+                .record(waitNanos, TimeUnit.NANOSECONDS);
+        for (String accountNumber : accountNumbers) {
+            int index = (int) (sampleIndex.getAndIncrement() % recentSamples.length());
+            recentSamples.set(index, new WaitSample(accountNumber, waitNanos, acquired));
+        }
+    }
+
+    public void recordHold(String method, long holdNanos) {
+        Timer.builder("account.lock.hold")
+                .tag("method", methodTag(method))
+                .register(meterRegistry)
+                .record(holdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 최근 기록 중 대기 시간 합이 큰 순서 (실패는 별도로 센다).
+     */
+    public List<ContendedAccount> getTopContendedAccounts(int limit) {
+        Map<String, ContendedAccount> byAccount = new HashMap<>();
+        for (int i = 0; i < recentSamples.length(); i++) {
+            WaitSample sample = recentSamples.get(i);
+            if (sample == null) {
+                continue;
+            }
+            ContendedAccount account = byAccount.computeIfAbsent(sample.accountNumber,
+                    accountNumber -> ContendedAccount.builder()
+                            .accountNumber(accountNumber).build());
+            double waitMillis = sample.waitNanos / 1_000_000.0;
+            account.setAcquisitions(account.getAcquisitions() + (sample.acquired ? 1 : 0));
+            account.setFailures(account.getFailures() + (sample.acquired ? 0 : 1));
+            account.setTotalWaitMillis(account.getTotalWaitMillis() + waitMillis);
+            account.setMaxWaitMillis(Math.max(account.getMaxWaitMillis(), waitMillis));
+        }
+        return byAccount.values().stream()
+                .sorted(Comparator.comparingDouble(ContendedAccount::getTotalWaitMillis)
+                        .reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private static String methodTag(String method) {
+        return method == null ? UNKNOWN_METHOD : method;
+    }
+
+    @AllArgsConstructor
+    private static class WaitSample {
+        private final String accountNumber;
+        private final long waitNanos;
+        private final boolean acquired;
+    }
+}
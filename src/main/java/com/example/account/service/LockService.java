@@ -3,43 +3,469 @@ package com.example.account.service;
 
 import com.example.account.exception.AccountException;
 import com.example.account.type.ErrorCode;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
+/**
+ * 계좌 lock 은 2단계로 취득한다.
+ * 1. 노드 내부의 계좌별 lock (같은 노드의 요청은 여기서 대기)
+ * 2. redis 분산 lock (노드당 계좌별로 한 스레드만 redis 에 접근)
+ * 계좌별 lock 은 잡으려는 스레드가 있는 동안만 map 에 두므로 다른 계좌끼리는 서로 기다리지 않는다.
+ *
+ * 비동기 취득(lockAsync)은 스레드에 묶이지 않도록 로컬 lock 없이 redis lock 만 쓰고,
+ * 스레드 id 대신 음수 owner id 로 잡아서 다른 스레드에서 해제할 수 있게 한다.
+ * 이 노드가 잡아둔 담당 계좌 lock 이 있으면 먼저 놓아서 자기 자신을 기다리지 않게 한다.
+ *
+ * 이 노드가 담당하는 계좌(AccountOwnership)는 redis lock 을 노드 owner id 로 잡아둔 채
+ * 요청 사이에 재사용하므로 요청마다 redis 를 거치지 않는다. 잡아둔 lock 은 한동안 쓰이지 않거나,
+ * 오래 잡고 있었거나, 담당 노드가 바뀌면 놓아서 다른 노드의 다계좌 요청이 취득할 수 있게 한다.
+ * redis lock 은 공정하지 않으므로, 놓을 때 unlock 알림을 기다리는 쪽이 있었으면
+ * 잠시(lock-handoff-millis) 다시 잡지 않고 기다리던 쪽이 먼저 가져가게 한다.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class LockService {
+    private static final long WAIT_TIME_MILLIS = 1000L;
+    private static final long LEASE_TIME_MILLIS = 15000L;
+
     private final RedissonClient redissonClient;
+    private final AccountOwnership accountOwnership;
+    private final Map<String, LocalLock> localLocks = new ConcurrentHashMap<>();
+    // 실제 스레드 id 와 겹치지 않도록 음수를 쓴다
+    private final AtomicLong asyncOwnerIds = new AtomicLong();
+    private final long ownedLockOwnerId = -asyncOwnerIds.incrementAndGet();
+    // 이 노드가 잡아둔 담당 계좌 lock. 계좌의 로컬 lock 을 잡은 상태에서만 넣고 뺀다
+    private final Map<String, OwnedLock> ownedLocks = new ConcurrentHashMap<>();
+    // 기다리는 쪽이 있을 때 담당 계좌 lock 을 놓은 시각. hand-off 시간이 지나면 지운다
+    private final Map<String, Long> releasedOwnedLocks = new ConcurrentHashMap<>();
+    private final long ownedLockIdleNanos;
+    private final long ownedLockMaxHoldNanos;
+    private final long ownedLockHandoffNanos;
+
+    private final Counter localWaitCounter;
+    private final Counter redisRoundTripCounter;
+    private final Counter lockFailureCounter;
+    private final Counter ownedLockReuseCounter;
+
+    public LockService(
+            RedissonClient redissonClient,
+            AccountOwnership accountOwnership,
+            MeterRegistry meterRegistry,
+            @Value("${account.ownership.lock-idle-millis:50}") long ownedLockIdleMillis,
+            @Value("${account.ownership.lock-max-hold-millis:500}") long ownedLockMaxHoldMillis,
+            @Value("${account.ownership.lock-handoff-millis:20}") long ownedLockHandoffMillis
+    ) {
+        this.redissonClient = redissonClient;
+        this.accountOwnership = accountOwnership;
+        this.ownedLockIdleNanos = TimeUnit.MILLISECONDS.toNanos(ownedLockIdleMillis);
+        // lease 가 끝나기 전에 놓아야 다른 노드와 겹치지 않는다
+        this.ownedLockMaxHoldNanos = TimeUnit.MILLISECONDS.toNanos(
+                Math.min(ownedLockMaxHoldMillis, LEASE_TIME_MILLIS / 2));
+        this.ownedLockHandoffNanos = TimeUnit.MILLISECONDS.toNanos(ownedLockHandoffMillis);
+        this.localWaitCounter = meterRegistry.counter("account.lock.local.waits");
+        this.redisRoundTripCounter = meterRegistry.counter("account.lock.redis.round-trips");
+        this.lockFailureCounter = meterRegistry.counter("account.lock.failures");
+        this.ownedLockReuseCounter = meterRegistry.counter("account.lock.owned.reuses");
+    }
 
     public void lock(String accountNumber) {
+        long startedAt = System.nanoTime();
+        log.debug("Trying local lock for accountNumber : {}", accountNumber);
+        LocalLock localLock = acquireLocalLock(accountNumber, WAIT_TIME_MILLIS);
+
+        // 같은 스레드가 다시 잡는 경우는 처음 잡은 방식을 따른다
+        boolean owned = localLock.getHoldCount() > 1
+                ? ownedLocks.containsKey(accountNumber)
+                : accountOwnership.isOwner(accountNumber);
+        if (owned) {
+            acquireOwnedLock(accountNumber, startedAt, localLock);
+            return;
+        }
+        releaseOwnedLock(accountNumber);
+
         RLock lock = redissonClient.getLock(getLockKey(accountNumber));
         log.debug("Trying lock for accountNumber : {}", accountNumber);
+        acquireRedisLock(lock, startedAt, List.of(accountNumber));
+    }
+
+    /**
+     * 여러 계좌를 한 번에 잠글 때는 항상 정렬된 순서로 취득해서 교착을 막는다.
+     */
+    public void lockAll(Collection<String> accountNumbers) {
+        List<String> sortedAccountNumbers = sortedDistinct(accountNumbers);
+        if (sortedAccountNumbers.size() == 1) {
+            lock(sortedAccountNumbers.get(0));
+            return;
+        }
+        long startedAt = System.nanoTime();
+        log.debug("Trying lock for accountNumbers : {}", sortedAccountNumbers);
+        List<String> acquired = new ArrayList<>();
+        try {
+            for (String accountNumber : sortedAccountNumbers) {
+                LocalLock localLock = acquireLocalLock(accountNumber, remainingMillis(startedAt));
+                acquired.add(accountNumber);
+                // 이 노드가 잡아둔 lock 이 있으면 multi lock 이 자기 자신을 기다리게 된다
+                if (localLock.getHoldCount() == 1) {
+                    releaseOwnedLock(accountNumber);
+                }
+            }
+        } catch (AccountException e) {
+            releaseLocalLocks(acquired);
+            throw e;
+        }
+        acquireRedisLock(getMultiLock(sortedAccountNumbers), startedAt, acquired);
+    }
+
+    public void unlock(String accountNumber) {
+        log.debug("Unlock for accountNumber: {}", accountNumber);
+        if (ownedLocks.containsKey(accountNumber)) {
+            // redis lock 은 다음 요청을 위해 잡아둔다
+            releaseLocalLocks(List.of(accountNumber));
+            return;
+        }
+        try {
+            redisRoundTripCounter.increment();
+            redissonClient.getLock(getLockKey(accountNumber)).unlock();
+        } finally {
+            releaseLocalLocks(List.of(accountNumber));
+        }
+    }
+
+    public void unlockAll(Collection<String> accountNumbers) {
+        List<String> sortedAccountNumbers = sortedDistinct(accountNumbers);
+        if (sortedAccountNumbers.size() == 1) {
+            unlock(sortedAccountNumbers.get(0));
+            return;
+        }
+        log.debug("Unlock for accountNumbers: {}", sortedAccountNumbers);
         try {
-            boolean isLock = lock.tryLock(1, 15, TimeUnit.SECONDS);
+            redisRoundTripCounter.increment();
+            getMultiLock(sortedAccountNumbers).unlock();
+        } finally {
+            releaseLocalLocks(sortedAccountNumbers);
+        }
+    }
+
+    /**
+     * 완료되면 해제할 때 쓸 owner id 를 돌려준다. 취득 실패는 ACCOUNT_TRANSACTION_LOCK 으로 실패한다.
+     */
+    public CompletableFuture<Long> lockAsync(String accountNumber) {
+        log.debug("Trying async lock for accountNumber : {}", accountNumber);
+        releaseOwnedLockForAsync(accountNumber);
+        return acquireRedisLockAsync(redissonClient.getLock(getLockKey(accountNumber)));
+    }
+
+    public CompletableFuture<Long> lockAllAsync(Collection<String> accountNumbers) {
+        List<String> sortedAccountNumbers = sortedDistinct(accountNumbers);
+        if (sortedAccountNumbers.size() == 1) {
+            return lockAsync(sortedAccountNumbers.get(0));
+        }
+        log.debug("Trying async lock for accountNumbers : {}", sortedAccountNumbers);
+        sortedAccountNumbers.forEach(this::releaseOwnedLockForAsync);
+        return acquireRedisLockAsync(getMultiLock(sortedAccountNumbers));
+    }
+
+    public CompletableFuture<Void> unlockAsync(String accountNumber, long ownerId) {
+        log.debug("Async unlock for accountNumber: {}", accountNumber);
+        redisRoundTripCounter.increment();
+        return redissonClient.getLock(getLockKey(accountNumber))
+                .unlockAsync(ownerId).toCompletableFuture();
+    }
+
+    public CompletableFuture<Void> unlockAllAsync(Collection<String> accountNumbers, long ownerId) {
+        List<String> sortedAccountNumbers = sortedDistinct(accountNumbers);
+        if (sortedAccountNumbers.size() == 1) {
+            return unlockAsync(sortedAccountNumbers.get(0), ownerId);
+        }
+        log.debug("Async unlock for accountNumbers: {}", sortedAccountNumbers);
+        redisRoundTripCounter.increment();
+        return getMultiLock(sortedAccountNumbers).unlockAsync(ownerId).toCompletableFuture();
+    }
+
+    private CompletableFuture<Long> acquireRedisLockAsync(RLock lock) {
+        long ownerId = -asyncOwnerIds.incrementAndGet();
+        redisRoundTripCounter.increment();
+        return lock.tryLockAsync(WAIT_TIME_MILLIS, LEASE_TIME_MILLIS,
+                        TimeUnit.MILLISECONDS, ownerId)
+                .toCompletableFuture()
+                .thenApply(isLock -> {
+                    if (!isLock) {
+                        log.error("========== Async lock acquisition failed============");
+                        lockFailureCounter.increment();
+                        throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+                    }
+                    return ownerId;
+                });
+    }
+
+    // 요청이 사용중이면 놓지 않는다. 그 요청이 끝난 뒤 해제 주기에 놓인다
+    private void releaseOwnedLockForAsync(String accountNumber) {
+        if (!ownedLocks.containsKey(accountNumber) || !tryLocalLock(accountNumber)) {
+            return;
+        }
+        try {
+            releaseOwnedLock(accountNumber);
+        } finally {
+            releaseLocalLocks(List.of(accountNumber));
+        }
+    }
+
+    /**
+     * 한동안 쓰이지 않았거나, 오래 잡고 있었거나, 담당이 바뀐 계좌의 lock 을 놓는다.
+     * 요청이 사용중인 계좌는 건너뛰고 다음 주기에 다시 본다.
+     */
+    @Scheduled(fixedDelayString = "${account.ownership.release-interval-millis:50}")
+    public void releaseOwnedLocks() {
+        long now = System.nanoTime();
+        releasedOwnedLocks.values().removeIf(releasedAt -> now - releasedAt >= ownedLockHandoffNanos);
+        for (Map.Entry<String, OwnedLock> entry : ownedLocks.entrySet()) {
+            String accountNumber = entry.getKey();
+            OwnedLock owned = entry.getValue();
+            if (now - owned.lastUsedAt < ownedLockIdleNanos
+                    && now - owned.acquiredAt < ownedLockMaxHoldNanos
+                    && accountOwnership.isOwner(accountNumber)) {
+                continue;
+            }
+            if (!tryLocalLock(accountNumber)) {
+                continue;
+            }
+            try {
+                releaseOwnedLock(accountNumber);
+            } finally {
+                releaseLocalLocks(List.of(accountNumber));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void releaseAllOwnedLocks() {
+        for (String accountNumber : ownedLocks.keySet()) {
+            if (tryLocalLock(accountNumber)) {
+                try {
+                    releaseOwnedLock(accountNumber);
+                } finally {
+                    releaseLocalLocks(List.of(accountNumber));
+                }
+            }
+        }
+    }
+
+    // 계좌의 로컬 lock 을 잡은 상태에서 호출
+    private void acquireOwnedLock(String accountNumber, long startedAt,
+                                  LocalLock localLock) {
+        OwnedLock owned = ownedLocks.get(accountNumber);
+        if (owned != null && System.nanoTime() - owned.acquiredAt >= ownedLockMaxHoldNanos
+                && localLock.getHoldCount() == 1) {
+            // 해제 주기를 놓쳤더라도 lease 안에서만 사용
+            releaseOwnedLock(accountNumber);
+            owned = null;
+        }
+        if (owned != null) {
+            ownedLockReuseCounter.increment();
+            owned.lastUsedAt = System.nanoTime();
+            return;
+        }
+        waitForHandoff(accountNumber, startedAt);
+        boolean isLock;
+        try {
+            redisRoundTripCounter.increment();
+            isLock = redissonClient.getLock(getLockKey(accountNumber))
+                    .tryLockAsync(remainingMillis(startedAt), LEASE_TIME_MILLIS,
+                            TimeUnit.MILLISECONDS, ownedLockOwnerId)
+                    .toCompletableFuture().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            isLock = false;
+        } catch (Exception e) {
+            log.error("redis lock error.", e);
+            isLock = false;
+        }
+        if (!isLock) {
+            log.error("========== Owned lock acquisition failed============");
+            lockFailureCounter.increment();
+            releaseLocalLocks(List.of(accountNumber));
+            throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+        }
+        ownedLocks.put(accountNumber, new OwnedLock(System.nanoTime()));
+    }
+
+    // 방금 놓은 lock 을 바로 다시 잡으면 unlock 알림을 받고 오는 다른 노드가 계속 밀린다
+    private void waitForHandoff(String accountNumber, long startedAt) {
+        Long releasedAt = releasedOwnedLocks.remove(accountNumber);
+        if (releasedAt == null) {
+            return;
+        }
+        long handoffNanos = Math.min(ownedLockHandoffNanos - (System.nanoTime() - releasedAt),
+                TimeUnit.MILLISECONDS.toNanos(remainingMillis(startedAt)));
+        if (handoffNanos > 0) {
+            LockSupport.parkNanos(this, handoffNanos);
+        }
+    }
+
+    // 계좌의 로컬 lock 을 잡은 상태에서 호출
+    private void releaseOwnedLock(String accountNumber) {
+        if (ownedLocks.remove(accountNumber) == null) {
+            return;
+        }
+        if (hasLockWaiters(accountNumber)) {
+            releasedOwnedLocks.put(accountNumber, System.nanoTime());
+        }
+        try {
+            redisRoundTripCounter.increment();
+            redissonClient.getLock(getLockKey(accountNumber))
+                    .unlockAsync(ownedLockOwnerId).toCompletableFuture().join();
+        } catch (Exception e) {
+            // 못 놓은 lock 은 lease 가 끝나면 풀린다
+            log.error("Owned lock release failed. accountNumber : {}", accountNumber, e);
+        }
+    }
+
+    // redisson 은 lock 을 기다리는 동안 lock 채널을 구독하고 있다
+    private boolean hasLockWaiters(String accountNumber) {
+        if (ownedLockHandoffNanos == 0) {
+            return false;
+        }
+        try {
+            redisRoundTripCounter.increment();
+            return redissonClient.getTopic(getLockChannel(accountNumber)).countSubscribers() > 0;
+        } catch (Exception e) {
+            log.error("Lock waiter check failed. accountNumber : {}", accountNumber, e);
+            return false;
+        }
+    }
+
+    private void acquireRedisLock(RLock lock, long startedAt,
+                                  List<String> lockedAccountNumbers) {
+        try {
+            redisRoundTripCounter.increment();
+            boolean isLock = lock.tryLock(remainingMillis(startedAt),
+                    LEASE_TIME_MILLIS, TimeUnit.MILLISECONDS);
             if (!isLock) {
                 log.error("========== Lock acquisition failed============");
                 throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
             }
-        } catch(AccountException e){
+        } catch (AccountException e) {
+            lockFailureCounter.increment();
+            releaseLocalLocks(lockedAccountNumbers);
             throw e;
-        }
-        catch (Exception e) {
+        } catch (Exception e) {
             log.error("redis lock error.");
         }
     }
 
-    public void unlock(String accountNumber){
-        log.debug("Unlock for accountNumber: {}", accountNumber);
-        redissonClient.getLock(getLockKey(accountNumber)).unlock();
+    private LocalLock acquireLocalLock(String accountNumber, long waitMillis) {
+        LocalLock localLock = retainLocalLock(accountNumber);
+        try {
+            if (localLock.tryLock(0L, TimeUnit.MILLISECONDS)) {
+                return localLock;
+            }
+            // 같은 노드의 다른 요청이 사용중이면 redis 가 아닌 로컬에서 대기
+            localWaitCounter.increment();
+            if (localLock.tryLock(waitMillis, TimeUnit.MILLISECONDS)) {
+                return localLock;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dropLocalLock(accountNumber);
+        log.error("========== Local lock acquisition failed============");
+        lockFailureCounter.increment();
+        throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+    }
+
+    private boolean tryLocalLock(String accountNumber) {
+        if (retainLocalLock(accountNumber).tryLock()) {
+            return true;
+        }
+        dropLocalLock(accountNumber);
+        return false;
+    }
+
+    private void releaseLocalLocks(List<String> accountNumbers) {
+        for (int i = accountNumbers.size() - 1; i >= 0; i--) {
+            LocalLock localLock = localLocks.get(accountNumbers.get(i));
+            if (localLock != null && localLock.isHeldByCurrentThread()) {
+                localLock.unlock();
+                dropLocalLock(accountNumbers.get(i));
+            }
+        }
+    }
+
+    // 잡으려는 스레드 수를 세서, 마지막 스레드가 놓을 때 map 에서 뺀다
+    private LocalLock retainLocalLock(String accountNumber) {
+        return localLocks.compute(accountNumber, (key, localLock) -> {
+            LocalLock retained = localLock == null ? new LocalLock() : localLock;
+            retained.users++;
+            return retained;
+        });
+    }
+
+    private void dropLocalLock(String accountNumber) {
+        localLocks.computeIfPresent(accountNumber,
+                (key, localLock) -> --localLock.users == 0 ? null : localLock);
+    }
+
+    private RLock getMultiLock(List<String> sortedAccountNumbers) {
+        return redissonClient.getMultiLock(sortedAccountNumbers.stream()
+                .map(accountNumber -> redissonClient.getLock(getLockKey(accountNumber)))
+                .toArray(RLock[]::new));
+    }
+
+    private static long remainingMillis(long startedAt) {
+        return Math.max(WAIT_TIME_MILLIS
+                - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), 0L);
+    }
+
+    private static List<String> sortedDistinct(Collection<String> accountNumbers) {
+        return accountNumbers.stream()
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
     }
 
     private static String getLockKey(String accountNumber) {
         return "ACLK:" + accountNumber;
     }
+
+    private static String getLockChannel(String accountNumber) {
+        return "redisson_lock__channel:{" + getLockKey(accountNumber) + "}";
+    }
+
+    private static class LocalLock extends ReentrantLock {
+        // localLocks 의 compute 안에서만 바꾼다
+        private int users;
+
+        private LocalLock() {
+            super(true);
+        }
+    }
+
+    private static class OwnedLock {
+        private final long acquiredAt;
+        private volatile long lastUsedAt;
+
+        private OwnedLock(long acquiredAt) {
+            this.acquiredAt = acquiredAt;
+            this.lastUsedAt = acquiredAt;
+        }
+    }
 }
@@ -0,0 +1,161 @@
+package com.example.account.service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 계좌번호(long) -> (소유주 id, 잔액) 을 direct buffer 에 두는 open addressing 해시 테이블.
+ * 객체를 만들지 않으므로 계좌 수가 많아도 GC 대상이 늘지 않는다.
+ * 구조 변경(put, remove)과 값 변경은 호출하는 쪽에서 동기화해야 한다.
+ */
+final class OffHeapBalanceMap {
+    // key(8) + userId(8) + balance(8)
+    static final int ENTRY_BYTES = 24;
+    private static final long EMPTY = 0L;
+    private static final int MIN_CAPACITY = 16;
+
+    private ByteBuffer buffer;
+    private int capacity;
+    private int size;
+
+    OffHeapBalanceMap(int expectedSize) {
+        allocate(tableSize(expectedSize));
+    }
+
+    /**
+     * @return 없으면 -1
+     */
+    int indexOf(long key) {
+        int mask = capacity - 1;
+        for (int index = mix(key) & mask; ; index = (index + 1) & mask) {
+            long current = keyAt(index);
+            if (current == key) {
+                return index;
+            }
+            if (current == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    long keyAt(int index) {
+        return buffer.getLong(index * ENTRY_BYTES);
+    }
+
+    long userIdAt(int index) {
+        return buffer.getLong(index * ENTRY_BYTES + 8);
+    }
+
+    long balanceAt(int index) {
+        return buffer.getLong(index * ENTRY_BYTES + 16);
+    }
+
+    void setBalanceAt(int index, long balance) {
+        buffer.putLong(index * ENTRY_BYTES + 16, balance);
+    }
+
+    /**
+     * 있으면 값을 덮어쓴다.
+     */
+    void put(long key, long userId, long balance) {
+        if (key <= EMPTY) {
+            throw new IllegalArgumentException("key must be positive : " + key);
+        }
+        int index = indexOf(key);
+        if (index < 0) {
+            if ((size + 1) * 4L > capacity * 3L) {
+                allocate(capacity * 2);
+            }
+            index = insert(key);
+            size++;
+        }
+        buffer.putLong(index * ENTRY_BYTES + 8, userId);
+        setBalanceAt(index, balance);
+    }
+
+    void remove(long key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return;
+        }
+        // linear probing 이므로 뒤에 밀려있던 항목들을 당겨서 빈칸 없이 유지
+        int mask = capacity - 1;
+        int hole = index;
+        for (int next = (hole + 1) & mask; keyAt(next) != EMPTY; next = (next + 1) & mask) {
+            int home = mix(keyAt(next)) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                copyEntry(next, hole);
+                hole = next;
+            }
+        }
+        buffer.putLong(hole * ENTRY_BYTES, EMPTY);
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 스냅샷용 복사본
+     */
+    OffHeapBalanceMap copy() {
+        OffHeapBalanceMap copy = new OffHeapBalanceMap(0);
+        copy.buffer = ByteBuffer.allocateDirect(buffer.capacity());
+        copy.buffer.put(buffer.duplicate().clear());
+        copy.capacity = capacity;
+        copy.size = size;
+        return copy;
+    }
+
+    private int insert(long key) {
+        int mask = capacity - 1;
+        int index = mix(key) & mask;
+        while (keyAt(index) != EMPTY) {
+            index = (index + 1) & mask;
+        }
+        buffer.putLong(index * ENTRY_BYTES, key);
+        return index;
+    }
+
+    private void copyEntry(int from, int to) {
+        buffer.putLong(to * ENTRY_BYTES, keyAt(from));
+        buffer.putLong(to * ENTRY_BYTES + 8, userIdAt(from));
+        buffer.putLong(to * ENTRY_BYTES + 16, balanceAt(from));
+    }
+
+    private void allocate(int newCapacity) {
+        ByteBuffer old = buffer;
+        int oldCapacity = capacity;
+        buffer = ByteBuffer.allocateDirect(newCapacity * ENTRY_BYTES);
+        capacity = newCapacity;
+        if (old == null) {
+            return;
+        }
+        for (int i = 0; i < oldCapacity; i++) {
+            long key = old.getLong(i * ENTRY_BYTES);
+            if (key != EMPTY) {
+                int index = insert(key);
+                buffer.putLong(index * ENTRY_BYTES + 8, old.getLong(i * ENTRY_BYTES + 8));
+                buffer.putLong(index * ENTRY_BYTES + 16, old.getLong(i * ENTRY_BYTES + 16));
+            }
+        }
+    }
+
+    private static int tableSize(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3L < expectedSize * 4L) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    // 계좌번호는 연속으로 발급되므로 비트를 섞어서 한 구간에 몰리지 않게 한다
+    private static int mix(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.account.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+
+/**
+ * 기존 방식의 random UUID (하이픈 제거).
+ */
+@Service
+@ConditionalOnProperty(name = "account.transaction.id.mode",
+        havingValue = "random", matchIfMissing = true)
+public class RandomTransactionIdGenerator implements TransactionIdGenerator {
+    @Override
+    public String generate() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+}
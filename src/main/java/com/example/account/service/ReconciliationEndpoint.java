@@ -0,0 +1,31 @@
+package com.example.account.service;
+
+import com.example.account.dto.ReconciliationReport;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * GET /actuator/reconciliation : 진행 상황과 발견한 잔액 불일치
+ * POST /actuator/reconciliation {"resume": false} : 대사 시작 (기본은 checkpoint 부터 이어서)
+ */
+@Component
+@Endpoint(id = "reconciliation")
+@RequiredArgsConstructor
+public class ReconciliationEndpoint {
+    private final LedgerReconciliationService ledgerReconciliationService;
+
+    @ReadOperation
+    public ReconciliationReport report() {
+        return ledgerReconciliationService.getReport();
+    }
+
+    @WriteOperation
+    public ReconciliationReport start(@Nullable Boolean resume) {
+        ledgerReconciliationService.start(resume == null || resume);
+        return ledgerReconciliationService.getReport();
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.account.service;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountBalanceSlot;
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountBalanceSlotRepository;
+import com.example.account.repository.AccountRepository;
+import com.example.account.type.ErrorCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 거래가 몰리는 계좌의 잔액을 K 개의 slot 으로 나눠서 관리한다.
+ * 차감은 잔액이 충분한 slot 하나의 row 만 조건부 update 하므로 계좌 lock 없이 병렬로 처리되고,
+ * 계좌 잔액은 Account.balance 와 slot 잔액의 합이다.
+ */
+@Slf4j
+@Service
+public class ShardedBalanceService {
+    private final AccountBalanceSlotRepository accountBalanceSlotRepository;
+    private final AccountRepository accountRepository;
+    private final LockService lockService;
+    // slot 생성은 계좌 lock 을 놓기 전에 commit 되어야 한다
+    private final TransactionTemplate requiresNewTransactionTemplate;
+    private final Counter combinedDebitCounter;
+
+    private final boolean enabled;
+    private final Set<String> shardedAccounts;
+    private final int slotCount;
+
+    private final Set<String> initializedAccounts = ConcurrentHashMap.newKeySet();
+
+    public ShardedBalanceService(
+            AccountBalanceSlotRepository accountBalanceSlotRepository,
+            AccountRepository accountRepository,
+            LockService lockService,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${account.sharded-balance.enabled:false}") boolean enabled,
+            @Value("${account.sharded-balance.accounts:}") Set<String> shardedAccounts,
+            @Value("${account.sharded-balance.slots:8}") int slotCount
+    ) {
+        this.accountBalanceSlotRepository = accountBalanceSlotRepository;
+        this.accountRepository = accountRepository;
+        this.lockService = lockService;
+        this.requiresNewTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.requiresNewTransactionTemplate.setPropagationBehavior(
+                TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.combinedDebitCounter = meterRegistry.counter("account.balance.slot.combined-debits");
+        this.enabled = enabled;
+        this.shardedAccounts = Set.copyOf(shardedAccounts);
+        this.slotCount = slotCount;
+    }
+
+    public boolean isShardedAccount(String accountNumber) {
+        return enabled && shardedAccounts.contains(accountNumber);
+    }
+
+    /**
+     * 처음 사용할 때 Account.balance 를 slot 들로 나눠서 옮긴다.
+     * Account 엔티티를 읽기 전에 호출해야 옮기기 전의 잔액을 보지 않는다.
+     */
+    public void ensureSlots(String accountNumber) {
+        if (initializedAccounts.contains(accountNumber)) {
+            return;
+        }
+        lockService.lock(accountNumber);
+        try {
+            requiresNewTransactionTemplate.executeWithoutResult(
+                    status -> splitBalance(accountNumber));
+        } finally {
+            lockService.unlock(accountNumber);
+        }
+        initializedAccounts.add(accountNumber);
+    }
+
+    private void splitBalance(String accountNumber) {
+        Account account = accountRepository.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+        if (accountBalanceSlotRepository.existsByAccountId(account.getId())) {
+            return;
+        }
+        long balance = account.getBalance();
+        List<AccountBalanceSlot> slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(AccountBalanceSlot.builder()
+                    .account(account)
+                    .slot(i)
+                    .balance(balance / slotCount + (i == 0 ? balance % slotCount : 0))
+                    .build());
+        }
+        accountBalanceSlotRepository.saveAll(slots);
+        account.setBalance(0L);
+        log.info("Split balance into {} slots. accountNumber : {}", slotCount, accountNumber);
+    }
+
+    /**
+     * 잔액이 충분한 slot 하나에서 차감하고, 그런 slot 이 없으면 전체 slot 을 합쳐서 차감한다.
+     * 시작 slot 을 무작위로 골라서 동시 요청이 서로 다른 slot 으로 퍼지게 한다.
+     *
+     * @return 잔액이 부족하면 false
+     */
+    public boolean debit(Long accountId, Long amount) {
+        List<Long> balances = accountBalanceSlotRepository.findBalancesByAccountId(accountId);
+        if (balances.isEmpty()) {
+            throw new AccountException(ErrorCode.ACCOUNT_NOT_FOUND);
+        }
+        int start = ThreadLocalRandom.current().nextInt(balances.size());
+        long total = 0;
+        for (int i = 0; i < balances.size(); i++) {
+            int slot = (start + i) % balances.size();
+            total += balances.get(slot);
+            if (balances.get(slot) >= amount
+                    && accountBalanceSlotRepository.debitIfSufficient(accountId, slot, amount) == 1) {
+                return true;
+            }
+        }
+        if (total < amount) {
+            return false;
+        }
+        return debitCombined(accountId, amount);
+    }
+
+    private boolean debitCombined(Long accountId, Long amount) {
+        List<AccountBalanceSlot> slots =
+                accountBalanceSlotRepository.findForUpdateByAccountId(accountId);
+        long total = slots.stream().mapToLong(AccountBalanceSlot::getBalance).sum();
+        if (total < amount) {
+            return false;
+        }
+        long remaining = amount;
+        for (AccountBalanceSlot slot : slots) {
+            long taken = Math.min(slot.getBalance(), remaining);
+            slot.setBalance(slot.getBalance() - taken);
+            remaining -= taken;
+            if (remaining == 0) {
+                break;
+            }
+        }
+        combinedDebitCounter.increment();
+        return true;
+    }
+
+    public void credit(Long accountId, Long amount) {
+        int slot = ThreadLocalRandom.current().nextInt(slotCount);
+        // slot 수 설정이 나눈 뒤에 늘어난 경우
+        if (accountBalanceSlotRepository.credit(accountId, slot, amount) == 0
+                && accountBalanceSlotRepository.credit(accountId, 0, amount) == 0) {
+            throw new AccountException(ErrorCode.ACCOUNT_NOT_FOUND);
+        }
+    }
+
+    public long getSlotBalance(String accountNumber) {
+        return accountBalanceSlotRepository.sumBalanceByAccountNumber(accountNumber);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.account.service;
+
+import com.example.account.dto.TransactionHistory;
+import com.example.account.dto.TransactionHistoryView;
+import com.example.account.exception.AccountException;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.ErrorCode;
+import com.example.account.type.ExportFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * 계좌의 전체 거래 내역을 NDJSON / CSV 로 내보낸다.
+ * 목록을 만들지 않고 cursor 로 한 행씩 읽어서 바로 응답에 쓰므로 행 수와 관계없이 메모리 사용이 일정하다.
+ * (엔티티가 아닌 projection 으로 읽어서 영속성 컨텍스트에도 쌓이지 않는다)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TransactionExportService {
+    private static final String CSV_HEADER =
+            "transactionId,transactionType,transactionResult,amount,balanceSnapshot,transactedAt";
+
+    private final TransactionRepository transactionRepository;
+    private final AccountMetadataCache accountMetadataCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 응답을 쓰기 시작하기 전에 계좌를 확인해서, 없는 계좌는 일반 에러 응답으로 돌려준다.
+     */
+    public Long getAccountId(String accountNumber) {
+        return accountMetadataCache.get(accountNumber)
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND))
+                .getId();
+    }
+
+    public long export(Long accountId, ExportFormat format, OutputStream outputStream) {
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        Long written = transactionTemplate.execute(status -> {
+            try (Stream<TransactionHistoryView> views =
+                         transactionRepository.streamHistory(accountId)) {
+                if (format == ExportFormat.CSV) {
+                    writeLine(writer, CSV_HEADER);
+                }
+                long count = 0;
+                for (Iterator<TransactionHistoryView> it = views.iterator(); it.hasNext(); count++) {
+                    writeLine(writer, format(format, it.next()));
+                }
+                return count;
+            }
+        });
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("Exported {} transactions. accountId : {}", written, accountId);
+        return Objects.requireNonNullElse(written, 0L);
+    }
+
+    private String format(ExportFormat format, TransactionHistoryView view) {
+        if (format == ExportFormat.CSV) {
+            return String.join(",", view.getTransactionId(),
+                    view.getTransactionType().name(),
+                    view.getTransactionResultType().name(),
+                    toCsv(view.getAmount()),
+                    toCsv(view.getBalanceSnapshot()),
+                    view.getTransactedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        }
+        try {
+            return objectMapper.writeValueAsString(TransactionHistory.Item.from(view));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String toCsv(Object value) {
+        return value == null ? "" : value.toString();
+    }
+
+    private static void writeLine(Writer writer, String line) {
+        try {
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
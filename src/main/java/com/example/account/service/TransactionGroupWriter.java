@@ -0,0 +1,285 @@
+package com.example.account.service;
+
+import com.example.account.domain.Transaction;
+import com.example.account.dto.AccountMetadataView;
+import com.example.account.dto.TransactionDto;
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.ErrorCode;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.USE;
+
+/**
+ * 일반 계좌의 잔액 사용을 모아서 DB 트랜잭션 하나로 커밋한다 (group commit).
+ * writer 스레드가 요청마다 조건부 차감을 하고, 차감한 요청의 거래 기록은 마지막에 batch insert 로
+ * 넣은 뒤 한 번에 커밋한다. 잔액 변경과 그 거래 기록은 항상 같은 트랜잭션에서 커밋된다.
+ * 호출한 쪽은 DB 연결 없이 커밋을 기다렸다가 결과를 받으므로 응답 시점의 내구성은 단건 처리와 같다.
+ * 차감되지 않은 요청(잔액 부족, 소유주 다름 등)은 원인 판정과 실패 기록을 단건 처리에 맡긴다.
+ */
+@Slf4j
+@Service
+public class TransactionGroupWriter {
+    private static final long WAIT_TIMEOUT_MILLIS = 5000L;
+
+    private final TransactionService transactionService;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final BalanceLedgerService balanceLedgerService;
+    private final JournaledBalanceEngine journaledBalanceEngine;
+    private final ShardedBalanceService shardedBalanceService;
+    private final TransactionIdGenerator transactionIdGenerator;
+    private final TransactionTemplate transactionTemplate;
+    private final DistributionSummary batchSizeSummary;
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<PendingUse> queue;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public TransactionGroupWriter(
+            TransactionService transactionService,
+            AccountRepository accountRepository,
+            TransactionRepository transactionRepository,
+            BalanceLedgerService balanceLedgerService,
+            JournaledBalanceEngine journaledBalanceEngine,
+            ShardedBalanceService shardedBalanceService,
+            TransactionIdGenerator transactionIdGenerator,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${account.transaction.group-commit.enabled:false}") boolean enabled,
+            @Value("${account.transaction.group-commit.batch-size:100}") int batchSize,
+            @Value("${account.transaction.group-commit.max-delay-millis:5}") long maxDelayMillis,
+            @Value("${account.transaction.group-commit.queue-capacity:10000}") int queueCapacity
+    ) {
+        this.transactionService = transactionService;
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.balanceLedgerService = balanceLedgerService;
+        this.journaledBalanceEngine = journaledBalanceEngine;
+        this.shardedBalanceService = shardedBalanceService;
+        this.transactionIdGenerator = transactionIdGenerator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSizeSummary = meterRegistry.summary("account.transaction.group-commit.batch-size");
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::run, "transaction-group-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writerThread != null) {
+            writerThread.join(WAIT_TIMEOUT_MILLIS);
+        }
+    }
+
+    /**
+     * 트랜잭션 밖에서 호출해야 한다 (기다리는 동안 DB 연결을 잡고 있지 않도록).
+     * ledger / 잔액 엔진 / slot 계좌, 꺼져 있거나 큐가 가득 찬 경우는 단건으로 처리한다.
+     */
+    public TransactionDto useBalance(Long userId, String accountNumber, Long amount) {
+        PendingUse pendingUse = new PendingUse(userId, accountNumber, amount);
+        if (!running || !isGroupAccount(accountNumber) || !queue.offer(pendingUse)) {
+            return transactionService.useBalance(userId, accountNumber, amount);
+        }
+        return await(pendingUse)
+                .orElseGet(() -> transactionService.useBalance(userId, accountNumber, amount));
+    }
+
+    private boolean isGroupAccount(String accountNumber) {
+        return !balanceLedgerService.isLedgerAccount(accountNumber)
+                && !journaledBalanceEngine.isEngineAccount(accountNumber)
+                && !shardedBalanceService.isShardedAccount(accountNumber);
+    }
+
+    // 차감되지 않았거나 writer 가 가져가기 전에 대기 시간이 지나면 비어 있다
+    private Optional<TransactionDto> await(PendingUse pendingUse) {
+        try {
+            try {
+                return pendingUse.result.get(WAIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (pendingUse.state.compareAndSet(PendingUse.QUEUED, PendingUse.CANCELED)) {
+                    log.warn("Group commit wait timed out, using balance directly. accountNumber : {}",
+                            pendingUse.accountNumber);
+                    return Optional.empty();
+                }
+                // writer 가 이미 처리중이면 커밋 여부를 알 때까지 기다린다
+                return pendingUse.result.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new AccountException(ErrorCode.INTERNAL_SERVER_ERROR);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AccountException(ErrorCode.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private void run() {
+        List<PendingUse> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // 첫 요청이 들어온 시점부터 batchSize 가 차거나 maxDelay 가 지날 때까지 모은다
+    private void collect(List<PendingUse> batch) throws InterruptedException {
+        PendingUse first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        take(batch, first);
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            PendingUse next = remaining > 0
+                    ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+                return;
+            }
+            take(batch, next);
+        }
+    }
+
+    // 대기 시간이 지나서 단건으로 넘어간 요청은 건너뛴다
+    private static void take(List<PendingUse> batch, PendingUse pendingUse) {
+        if (pendingUse.state.compareAndSet(PendingUse.QUEUED, PendingUse.TAKEN)) {
+            batch.add(pendingUse);
+        }
+    }
+
+    private void commit(List<PendingUse> batch) {
+        batchSizeSummary.record(batch.size());
+        List<Optional<TransactionDto>> results;
+        try {
+            results = transactionTemplate.execute(status -> useAll(batch));
+        } catch (RuntimeException e) {
+            // 커밋되지 않았으므로 묶인 요청 모두 반영되지 않았다
+            log.error("Group commit failed, retrying one by one.", e);
+            batch.forEach(this::commitOne);
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result.complete(results.get(i));
+        }
+    }
+
+    // 한 건 때문에 묶음 전체가 실패하지 않도록 각자의 트랜잭션으로 다시 처리
+    private void commitOne(PendingUse pendingUse) {
+        try {
+            pendingUse.result.complete(transactionTemplate.execute(
+                    status -> useAll(List.of(pendingUse))).get(0));
+        } catch (RuntimeException e) {
+            pendingUse.result.completeExceptionally(e);
+        }
+    }
+
+    // 차감은 요청 순서대로 하고, 거래 기록은 모아서 마지막에 넣는다
+    private List<Optional<TransactionDto>> useAll(List<PendingUse> batch) {
+        List<Optional<Transaction>> debited = new ArrayList<>(batch.size());
+        List<Transaction> transactions = new ArrayList<>(batch.size());
+        for (PendingUse pendingUse : batch) {
+            Optional<Transaction> transaction = debit(pendingUse);
+            transaction.ifPresent(transactions::add);
+            debited.add(transaction);
+        }
+        transactionRepository.saveAll(transactions);
+
+        List<Optional<TransactionDto>> results = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            String accountNumber = batch.get(i).accountNumber;
+            results.add(debited.get(i).map(
+                    transaction -> TransactionDto.fromEntity(transaction, accountNumber)));
+        }
+        return results;
+    }
+
+    private Optional<Transaction> debit(PendingUse pendingUse) {
+        AccountMetadataView metadata = accountRepository
+                .findMetadataByAccountNumber(pendingUse.accountNumber)
+                .orElse(null);
+        if (metadata == null || !Objects.equals(pendingUse.userId, metadata.getUserId())
+                || accountRepository.debitByIdIfSufficient(
+                metadata.getId(), pendingUse.amount) == 0) {
+            return Optional.empty();
+        }
+        return Optional.of(Transaction.builder()
+                .transactionType(USE)
+                .transactionResultType(S)
+                .account(accountRepository.getReferenceById(metadata.getId()))
+                .amount(pendingUse.amount)
+                .balanceSnapshot(accountRepository.findBalanceById(metadata.getId()))
+                .transactionId(transactionIdGenerator.generate())
+                .transactedAt(LocalDateTime.now())
+                .build());
+    }
+
+    private static class PendingUse {
+        private static final int QUEUED = 0;
+        private static final int TAKEN = 1;
+        private static final int CANCELED = 2;
+
+        private final Long userId;
+        private final String accountNumber;
+        private final Long amount;
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private final CompletableFuture<Optional<TransactionDto>> result =
+                new CompletableFuture<>();
+
+        private PendingUse(Long userId, String accountNumber, Long amount) {
+            this.userId = userId;
+            this.accountNumber = accountNumber;
+            this.amount = amount;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.account.service;
+
+/**
+ * 거래 id 생성기. account.transaction.id.mode 로 구현을 고른다.
+ * 어떤 구현이든 외부에 나가는 형식은 32자리 16진수 문자열로 같다.
+ */
+public interface TransactionIdGenerator {
+    String generate();
+}
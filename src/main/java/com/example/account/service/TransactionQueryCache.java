@@ -0,0 +1,197 @@
+package com.example.account.service;
+
+import com.example.account.dto.TransactionDto;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 거래 조회 결과 cache.
+ * 1단계는 노드 내부 cache (크기/TTL 제한), 2단계는 노드들이 같이 쓰는 redis.
+ * 조회한 요청은 redis 에 값이 없을 때만 채우고, 취소는 커밋 후에 바뀐 상태로 덮어쓴다.
+ * 그래서 커밋 전에 이전 상태를 읽은 요청이 늦게 쓰더라도 redis 의 값을 되돌리지 못한다.
+ * 노드 내부 cache 는 redis pub/sub 으로 지우지만, 알림보다 늦게 채워진 값은
+ * local-ttl-millis 동안 남을 수 있다.
+ */
+@Slf4j
+@Service
+public class TransactionQueryCache {
+    private static final String CACHE_NAME = "account.transaction.cache";
+    private static final String INVALIDATE_TOPIC = "ACTX:invalidate";
+
+    private final RedissonClient redissonClient;
+    private final Cache<String, TransactionDto> localCache;
+    private final Counter redisHitCounter;
+    private final Counter redisMissCounter;
+
+    private final boolean enabled;
+    private final Duration redisTtl;
+
+    public TransactionQueryCache(
+            RedissonClient redissonClient,
+            MeterRegistry meterRegistry,
+            @Value("${account.transaction.cache.enabled:false}") boolean enabled,
+            @Value("${account.transaction.cache.local-max-size:10000}") long localMaxSize,
+            @Value("${account.transaction.cache.local-ttl-millis:5000}") long localTtlMillis,
+            @Value("${account.transaction.cache.redis-ttl-seconds:600}") long redisTtlSeconds
+    ) {
+        this.redissonClient = redissonClient;
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtlMillis, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        // hit / miss / eviction 수
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, CACHE_NAME + ".local");
+        this.redisHitCounter = meterRegistry.counter(CACHE_NAME + ".redis.hits");
+        this.redisMissCounter = meterRegistry.counter(CACHE_NAME + ".redis.misses");
+        this.enabled = enabled;
+        this.redisTtl = Duration.ofSeconds(redisTtlSeconds);
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        if (!enabled) {
+            return;
+        }
+        getTopic().addListener(String.class,
+                (channel, transactionId) -> localCache.invalidate(transactionId));
+    }
+
+    public TransactionDto get(String transactionId, Supplier<TransactionDto> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        TransactionDto cached = localCache.getIfPresent(transactionId);
+        if (cached != null) {
+            return cached;
+        }
+        TransactionDto transactionDto = getFromRedis(transactionId)
+                .orElseGet(() -> {
+                    TransactionDto loaded = loader.get();
+                    putToRedisIfAbsent(loaded);
+                    return loaded;
+                });
+        localCache.put(transactionId, transactionDto);
+        return transactionDto;
+    }
+
+    /**
+     * 거래 상태가 바뀌면 커밋 후에 (트랜잭션 밖이면 바로) redis 를 바뀐 상태로 덮어쓰고
+     * 모든 노드의 내부 cache 를 지운다.
+     */
+    public void update(TransactionDto transactionDto) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            updateNow(transactionDto);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        updateNow(transactionDto);
+                    }
+                });
+    }
+
+    private void updateNow(TransactionDto transactionDto) {
+        String transactionId = transactionDto.getTransactionId();
+        localCache.invalidate(transactionId);
+        try {
+            getBucket(transactionId)
+                    .set(format(transactionDto), redisTtl.toMillis(), TimeUnit.MILLISECONDS);
+            getTopic().publish(transactionId);
+        } catch (RedisException e) {
+            log.error("transaction cache update failed. transactionId : {}", transactionId, e);
+        }
+    }
+
+    private Optional<TransactionDto> getFromRedis(String transactionId) {
+        try {
+            String cached = getBucket(transactionId).get();
+            if (cached == null) {
+                redisMissCounter.increment();
+                return Optional.empty();
+            }
+            redisHitCounter.increment();
+            return Optional.of(parse(cached));
+        } catch (RedisException e) {
+            log.error("transaction cache read failed. transactionId : {}", transactionId, e);
+            return Optional.empty();
+        }
+    }
+
+    // 이미 있는 값은 커밋 후에 쓴 최신 상태일 수 있으므로 덮어쓰지 않는다
+    private void putToRedisIfAbsent(TransactionDto transactionDto) {
+        try {
+            getBucket(transactionDto.getTransactionId())
+                    .trySet(format(transactionDto), redisTtl.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RedisException e) {
+            log.error("transaction cache write failed. transactionId : {}",
+                    transactionDto.getTransactionId(), e);
+        }
+    }
+
+    private RBucket<String> getBucket(String transactionId) {
+        return redissonClient.getBucket(getCacheKey(transactionId), StringCodec.INSTANCE);
+    }
+
+    private RTopic getTopic() {
+        return redissonClient.getTopic(INVALIDATE_TOPIC, StringCodec.INSTANCE);
+    }
+
+    private static String getCacheKey(String transactionId) {
+        return "ACTX:" + transactionId;
+    }
+
+    static String format(TransactionDto transactionDto) {
+        return String.join("|", transactionDto.getTransactionId(),
+                transactionDto.getTransactionType().name(),
+                transactionDto.getTransactionResultType().name(),
+                transactionDto.getAccountNumber(),
+                String.valueOf(transactionDto.getAmount()),
+                String.valueOf(transactionDto.getBalanceSnapshot()),
+                transactionDto.getTransactedAt().toString());
+    }
+
+    static TransactionDto parse(String record) {
+        String[] fields = record.split("\\|");
+        return TransactionDto.builder()
+                .transactionId(fields[0])
+                .transactionType(TransactionType.valueOf(fields[1]))
+                .transactionResultType(TransactionResultType.valueOf(fields[2]))
+                .accountNumber(fields[3])
+                .amount(parseLong(fields[4]))
+                .balanceSnapshot(parseLong(fields[5]))
+                .transactedAt(LocalDateTime.parse(fields[6]))
+                .build();
+    }
+
+    private static Long parseLong(String field) {
+        return "null".equals(field) ? null : Long.valueOf(field);
+    }
+}
@@ -1,12 +1,15 @@
 package com.example.account.service;
 
 import com.example.account.domain.Account;
-import com.example.account.domain.AccountUser;
 import com.example.account.domain.Transaction;
+import com.example.account.dto.AccountBalanceView;
+import com.example.account.dto.AccountMetadataView;
+import com.example.account.dto.TransactionHistory;
+import com.example.account.dto.TransactionHistoryView;
 import com.example.account.dto.TransactionDto;
+import com.example.account.dto.UseBalance;
 import com.example.account.exception.AccountException;
 import com.example.account.repository.AccountRepository;
-import com.example.account.repository.AccountUserRepository;
 import com.example.account.repository.TransactionRepository;
 import com.example.account.type.AccountStatus;
 import com.example.account.type.ErrorCode;
@@ -14,16 +17,21 @@ import com.example.account.type.TransactionResultType;
 import com.example.account.type.TransactionType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
-import java.util.UUID;
+import java.util.Optional;
 
 import static com.example.account.type.TransactionResultType.F;
 import static com.example.account.type.TransactionResultType.S;
 import static com.example.account.type.TransactionType.CANCEL;
+import static com.example.account.type.TransactionType.TRANSFER_IN;
+import static com.example.account.type.TransactionType.TRANSFER_OUT;
 import static com.example.account.type.TransactionType.USE;
 
 @Slf4j
@@ -31,59 +39,308 @@ import static com.example.account.type.TransactionType.USE;
 @RequiredArgsConstructor
 //@Transactional //모든 것에 transactional 부여
 public class TransactionService {
+    private static final int MAX_HISTORY_LIMIT = 1000;
+
     private final TransactionRepository transactionRepository;
-    private final AccountUserRepository accountUserRepository;
+    private final AccountUserCache accountUserCache;
     private final AccountRepository accountRepository;
+    private final BalanceLedgerService balanceLedgerService;
+    private final TransactionIdGenerator transactionIdGenerator;
+    private final TransactionQueryCache transactionQueryCache;
+    private final AccountMetadataCache accountMetadataCache;
+    private final ShardedBalanceService shardedBalanceService;
+    private final JournaledBalanceEngine journaledBalanceEngine;
 
+    /**
+     * 잔액 차감은 조건부 update 한 번으로 처리하고,
+     * 실패한 경우에만 원인을 조회해서 에러 코드를 결정한다.
+     */
     @Transactional
     public TransactionDto useBalance(Long userId, String accountNumber,
                                      Long amount) {
-        AccountUser user = accountUserRepository.findById(userId)
-                .orElseThrow(() -> new AccountException(ErrorCode.USER_NOT_FOUND));
+        Optional<AccountMetadataView> metadata = accountMetadataCache.validateInUse(accountNumber);
+        if (balanceLedgerService.isLedgerAccount(accountNumber)) {
+            return balanceLedgerService.use(userId, accountNumber, amount);
+        }
+        if (journaledBalanceEngine.isEngineAccount(accountNumber)) {
+            return journaledBalanceEngine.use(userId, accountNumber, amount);
+        }
+        if (shardedBalanceService.isShardedAccount(accountNumber)) {
+            return useShardedBalance(userId, accountNumber, amount);
+        }
+        if (metadata.isPresent()) {
+            return useCachedAccount(userId, accountNumber, metadata.get(), amount);
+        }
+        if (accountRepository.debitIfSufficient(accountNumber, userId, amount) == 0) {
+            throw new AccountException(getUseBalanceFailure(userId, accountNumber, amount));
+        }
         Account account = accountRepository.findByAccountNumber(accountNumber)
                 .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
-        validateUseBalance(user, account, amount);
-
-        account.useBalance(amount);
 
         return TransactionDto.fromEntity(saveAndGetTransaction(USE, S, amount, account));
     }
 
-    private void validateUseBalance(AccountUser user, Account account, Long amount) {
-        if (!Objects.equals(user.getId(), account.getAccountUser().getId())) {
-            throw new AccountException(ErrorCode.USER_ACCOUNT_UN_MATCH);
+    // cache 의 id 와 소유주로 확인하므로 계좌 엔티티는 읽지 않고 참조만 건다
+    private TransactionDto useCachedAccount(Long userId, String accountNumber,
+                                            AccountMetadataView metadata, Long amount) {
+        if (!Objects.equals(userId, metadata.getUserId())) {
+            throw new AccountException(accountUserCache.existsById(userId)
+                    ? ErrorCode.USER_ACCOUNT_UN_MATCH : ErrorCode.USER_NOT_FOUND);
+        }
+        if (accountRepository.debitByIdIfSufficient(metadata.getId(), amount) == 0) {
+            throw new AccountException(getUseBalanceFailure(userId, accountNumber, amount));
+        }
+        return saveCachedAccountTransaction(USE, amount, accountNumber, metadata.getId());
+    }
+
+    private TransactionDto saveCachedAccountTransaction(
+            TransactionType transactionType, Long amount,
+            String accountNumber, Long accountId) {
+        Transaction transaction = transactionRepository.save(Transaction.builder()
+                .transactionType(transactionType)
+                .transactionResultType(S)
+                .account(accountRepository.getReferenceById(accountId))
+                .amount(amount)
+                .balanceSnapshot(accountRepository.findBalanceById(accountId))
+                .transactionId(transactionIdGenerator.generate())
+                .transactedAt(LocalDateTime.now())
+                .build());
+        return TransactionDto.fromEntity(transaction, accountNumber);
+    }
+
+    // 계좌 lock 없이 들어오므로 잔액은 slot 단위의 조건부 update 로만 바꾼다
+    private TransactionDto useShardedBalance(Long userId, String accountNumber, Long amount) {
+        shardedBalanceService.ensureSlots(accountNumber);
+        Account account = accountRepository.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+        if (!Objects.equals(userId, account.getAccountUser().getId())) {
+            throw new AccountException(accountUserCache.existsById(userId)
+                    ? ErrorCode.USER_ACCOUNT_UN_MATCH : ErrorCode.USER_NOT_FOUND);
         }
         if (account.getAccountStatus() == AccountStatus.UNREGISTERED) {
             throw new AccountException(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED);
         }
-        if (account.getBalance() < amount) {
+        if (!shardedBalanceService.debit(account.getId(), amount)) {
             throw new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE);
         }
+        return TransactionDto.fromEntity(saveAndGetTransaction(USE, S, amount, account));
+    }
 
+    private ErrorCode getUseBalanceFailure(Long userId, String accountNumber, Long amount) {
+        if (!accountUserCache.existsById(userId)) {
+            return ErrorCode.USER_NOT_FOUND;
+        }
+        AccountBalanceView account = accountRepository
+                .findBalanceViewByAccountNumber(accountNumber)
+                .orElse(null);
+        if (account == null) {
+            return ErrorCode.ACCOUNT_NOT_FOUND;
+        }
+        if (!Objects.equals(userId, account.getUserId())) {
+            return ErrorCode.USER_ACCOUNT_UN_MATCH;
+        }
+        if (account.getAccountStatus() == AccountStatus.UNREGISTERED) {
+            return ErrorCode.ACCOUNT_ALREADY_UNREGISTERED;
+        }
+        if (account.getBalance() < amount) {
+            return ErrorCode.AMOUNT_EXCEED_BALANCE;
+        }
+        // update 와 조회 사이에 다른 거래가 잔액을 바꾼 경우 (lock 대기 초과와 달리 실패 기록이 남는다)
+        return ErrorCode.ACCOUNT_BALANCE_CHANGED;
     }
 
     @Transactional
     public void saveFailedUseTransaction(String accountNumber, Long amount) {
+        if (balanceLedgerService.isLedgerAccount(accountNumber)) {
+            balanceLedgerService.recordFailure(USE, accountNumber, amount);
+            return;
+        }
+        if (journaledBalanceEngine.isEngineAccount(accountNumber)) {
+            journaledBalanceEngine.recordFailure(USE, accountNumber, amount);
+            return;
+        }
         Account account = accountRepository.findByAccountNumber(accountNumber)
                 .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
 
         saveAndGetTransaction(USE, F, amount, account);
     }
 
+    /**
+     * 여러 건의 잔액 사용을 하나의 DB 트랜잭션에서 처리한다.
+     * 항목별 실패는 전체를 롤백하지 않고 단건과 동일하게 실패 거래로 기록한다.
+     * 계좌 lock 은 호출하는 쪽에서 전체 계좌에 대해 미리 잡아야 한다.
+     */
+    @Transactional
+    public List<TransactionDto> useBalanceBatch(List<UseBalance.Request> requests) {
+        List<TransactionDto> results = new ArrayList<>(requests.size());
+        for (UseBalance.Request request : requests) {
+            results.add(useBalanceOrRecordFailure(request.getUserId(),
+                    request.getAccountNumber(), request.getAmount()));
+        }
+        return results;
+    }
+
+    private TransactionDto useBalanceOrRecordFailure(Long userId, String accountNumber,
+                                                     Long amount) {
+        try {
+            return useBalance(userId, accountNumber, amount);
+        } catch (AccountException e) {
+            log.error("Failed to use balance in batch. accountNumber : {}", accountNumber);
+            TransactionDto failed = recordBatchFailure(accountNumber, amount);
+            failed.setErrorCode(e.getErrorCode());
+            return failed;
+        }
+    }
+
+    private TransactionDto recordBatchFailure(String accountNumber, Long amount) {
+        if (balanceLedgerService.isLedgerAccount(accountNumber)) {
+            try {
+                return balanceLedgerService.recordFailure(USE, accountNumber, amount);
+            } catch (AccountException e) {
+                return failedWithoutRecord(accountNumber, amount);
+            }
+        }
+        if (journaledBalanceEngine.isEngineAccount(accountNumber)) {
+            try {
+                return journaledBalanceEngine.recordFailure(USE, accountNumber, amount);
+            } catch (AccountException e) {
+                return failedWithoutRecord(accountNumber, amount);
+            }
+        }
+        return accountRepository.findByAccountNumber(accountNumber)
+                .map(account -> TransactionDto.fromEntity(
+                        saveAndGetTransaction(USE, F, amount, account)))
+                .orElseGet(() -> failedWithoutRecord(accountNumber, amount));
+    }
+
+    // 계좌가 없으면 거래를 남길 곳이 없으므로 결과만 만든다
+    private static TransactionDto failedWithoutRecord(String accountNumber, Long amount) {
+        return TransactionDto.builder()
+                .accountNumber(accountNumber)
+                .transactionType(USE)
+                .transactionResultType(F)
+                .amount(amount)
+                .transactedAt(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * 계좌 간 이체. 출금과 입금을 하나의 DB 트랜잭션에서 처리하고
+     * 출금/입금 거래를 서로의 거래 id 로 연결해서 남긴다. (결과는 출금, 입금 순서)
+     * 두 계좌의 lock 은 호출하는 쪽에서 미리 잡아야 하고,
+     * row lock 도 항상 같은 순서로 잡도록 계좌 번호 순서대로 update 한다.
+     */
+    @Transactional
+    public List<TransactionDto> transfer(Long userId, String fromAccountNumber,
+                                         String toAccountNumber, Long amount) {
+        if (Objects.equals(fromAccountNumber, toAccountNumber)) {
+            throw new AccountException(ErrorCode.INVALID_REQUEST);
+        }
+        accountMetadataCache.validateInUse(fromAccountNumber);
+        accountMetadataCache.validateInUse(toAccountNumber);
+        // ledger / 잔액 엔진 계좌의 잔액은 DB 밖에 있어서 DB 트랜잭션 하나로 묶을 수 없고,
+        // slot 으로 나눈 계좌는 Account.balance 로 잔액을 확인할 수 없다
+        if (balanceLedgerService.isLedgerAccount(fromAccountNumber)
+                || balanceLedgerService.isLedgerAccount(toAccountNumber)
+                || journaledBalanceEngine.isEngineAccount(fromAccountNumber)
+                || journaledBalanceEngine.isEngineAccount(toAccountNumber)
+                || shardedBalanceService.isShardedAccount(fromAccountNumber)
+                || shardedBalanceService.isShardedAccount(toAccountNumber)) {
+            throw new AccountException(ErrorCode.INVALID_REQUEST);
+        }
+        if (fromAccountNumber.compareTo(toAccountNumber) < 0) {
+            debit(userId, fromAccountNumber, amount);
+            credit(toAccountNumber, amount);
+        } else {
+            credit(toAccountNumber, amount);
+            debit(userId, fromAccountNumber, amount);
+        }
+        Account fromAccount = accountRepository.findByAccountNumber(fromAccountNumber)
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+        Account toAccount = accountRepository.findByAccountNumber(toAccountNumber)
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+
+        Transaction withdrawal = newTransaction(TRANSFER_OUT, S, amount, fromAccount);
+        Transaction deposit = newTransaction(TRANSFER_IN, S, amount, toAccount);
+        withdrawal.setLinkedTransactionId(deposit.getTransactionId());
+        deposit.setLinkedTransactionId(withdrawal.getTransactionId());
+        transactionRepository.saveAll(List.of(withdrawal, deposit));
+
+        return List.of(TransactionDto.fromEntity(withdrawal),
+                TransactionDto.fromEntity(deposit));
+    }
+
+    private void debit(Long userId, String accountNumber, Long amount) {
+        if (accountRepository.debitIfSufficient(accountNumber, userId, amount) == 0) {
+            throw new AccountException(getUseBalanceFailure(userId, accountNumber, amount));
+        }
+    }
+
+    private void credit(String accountNumber, Long amount) {
+        if (accountRepository.creditIfInUse(accountNumber, amount) == 0) {
+            throw new AccountException(getCreditFailure(accountNumber));
+        }
+    }
+
+    private ErrorCode getCreditFailure(String accountNumber) {
+        AccountBalanceView account = accountRepository
+                .findBalanceViewByAccountNumber(accountNumber)
+                .orElse(null);
+        if (account == null) {
+            return ErrorCode.ACCOUNT_NOT_FOUND;
+        }
+        if (account.getAccountStatus() == AccountStatus.UNREGISTERED) {
+            return ErrorCode.ACCOUNT_ALREADY_UNREGISTERED;
+        }
+        return ErrorCode.ACCOUNT_BALANCE_CHANGED;
+    }
+
+    @Transactional
+    public void saveFailedTransferTransaction(String fromAccountNumber, Long amount) {
+        if (balanceLedgerService.isLedgerAccount(fromAccountNumber)) {
+            balanceLedgerService.recordFailure(TRANSFER_OUT, fromAccountNumber, amount);
+            return;
+        }
+        if (journaledBalanceEngine.isEngineAccount(fromAccountNumber)) {
+            journaledBalanceEngine.recordFailure(TRANSFER_OUT, fromAccountNumber, amount);
+            return;
+        }
+        Account account = accountRepository.findByAccountNumber(fromAccountNumber)
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+
+        saveAndGetTransaction(TRANSFER_OUT, F, amount, account);
+    }
+
     private Transaction saveAndGetTransaction(
             TransactionType transactionType,
             TransactionResultType transactionResultType,
             Long amount, Account account) {
-        return transactionRepository.save(
-                Transaction.builder()
-                        .transactionType(transactionType)
-                        .transactionResultType(transactionResultType)
-                        .account(account)
-                        .amount(amount)
-                        .balanceSnapshot(account.getBalance())
-                        .transactionId(UUID.randomUUID().toString().replace("-", ""))
-                        .transactedAt(LocalDateTime.now())
-                        .build());
+        return transactionRepository.save(newTransaction(
+                transactionType, transactionResultType, amount, account));
+    }
+
+    private Transaction newTransaction(
+            TransactionType transactionType,
+            TransactionResultType transactionResultType,
+            Long amount, Account account) {
+        return Transaction.builder()
+                .transactionType(transactionType)
+                .transactionResultType(transactionResultType)
+                .account(account)
+                .amount(amount)
+                .balanceSnapshot(getBalanceSnapshot(account))
+                .transactionId(transactionIdGenerator.generate())
+                .transactedAt(LocalDateTime.now())
+                .build();
+    }
+
+    // slot 으로 나눈 계좌는 slot 잔액까지 합한 금액
+    private Long getBalanceSnapshot(Account account) {
+        if (shardedBalanceService.isShardedAccount(account.getAccountNumber())) {
+            return account.getBalance()
+                    + shardedBalanceService.getSlotBalance(account.getAccountNumber());
+        }
+        return account.getBalance();
     }
 
     @Transactional
@@ -92,25 +349,81 @@ public class TransactionService {
             String accountNumber,
             Long amount
     ) {
-        Transaction transaction = transactionRepository
-                .findByTransactionId(transactionId)
-                .orElseThrow(() -> new AccountException(ErrorCode.TRANSACTION_NOT_FOUND));
-        Account account = accountRepository.findByAccountNumber(accountNumber)
-                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
-
-        validateCancelBalance(transaction, account, amount);
+        Optional<AccountMetadataView> metadata = accountMetadataCache.validateInUse(accountNumber);
+        boolean ledgerAccount = balanceLedgerService.isLedgerAccount(accountNumber);
+        boolean engineAccount = !ledgerAccount
+                && journaledBalanceEngine.isEngineAccount(accountNumber);
+        boolean shardedAccount = shardedBalanceService.isShardedAccount(accountNumber);
+        if (shardedAccount) {
+            shardedBalanceService.ensureSlots(accountNumber);
+        }
+        Transaction transaction = findTransactionToCancel(
+                transactionId, ledgerAccount, engineAccount);
+        // cache 로 확인한 계좌는 id 만으로 검증하고, 잔액은 조건부 update 로 바꾼다
+        Account account = null;
+        Long accountId;
+        if (metadata.isPresent() && !shardedAccount) {
+            accountId = metadata.get().getId();
+        } else {
+            account = accountRepository.findByAccountNumber(accountNumber)
+                    .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+            accountId = account.getId();
+        }
 
-        account.cancelBalance(amount);
+        validateCancelBalance(transaction, accountId, amount);
 
         transaction.setTransactionType(TransactionType.USE_CANCELED);
         transactionRepository.save(transaction);
+        if (engineAccount) {
+            // 엔진 잔액은 커밋 뒤에 올린다. 그게 실패하면 취소 표시를 되돌리므로 cache 는 그 다음에 바꾼다
+            TransactionDto canceled = journaledBalanceEngine.cancelAfterCommit(
+                    transactionId, accountNumber, amount);
+            transactionQueryCache.update(TransactionDto.fromEntity(transaction, accountNumber));
+            return canceled;
+        }
+        transactionQueryCache.update(TransactionDto.fromEntity(transaction, accountNumber));
+
+        if (ledgerAccount) {
+            return balanceLedgerService.cancel(accountNumber, amount);
+        }
+        if (account == null) {
+            if (accountRepository.creditIfInUse(accountNumber, amount) == 0) {
+                throw new AccountException(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED);
+            }
+            return saveCachedAccountTransaction(CANCEL, amount, accountNumber, accountId);
+        }
+        if (shardedAccount) {
+            shardedBalanceService.credit(accountId, amount);
+        } else {
+            account.cancelBalance(amount);
+        }
 
         return TransactionDto.fromEntity(
                 saveAndGetTransaction(CANCEL, S, amount, account));
     }
 
-    private void validateCancelBalance(Transaction transaction, Account account, Long amount) {
-        if (!Objects.equals(transaction.getAccount().getId(), account.getId())) {
+    private Transaction findTransactionToCancel(String transactionId, boolean ledgerAccount,
+                                                boolean engineAccount) {
+        Optional<Transaction> transaction = transactionRepository.findByTransactionId(transactionId);
+        if (transaction.isEmpty() && (ledgerAccount || engineAccount)) {
+            // 아직 DB 에 반영되지 않은 ledger / 잔액 엔진 거래일 수 있다
+            if (ledgerAccount) {
+                balanceLedgerService.flush();
+            } else {
+                journaledBalanceEngine.flush();
+            }
+            transaction = transactionRepository.findByTransactionId(transactionId);
+        }
+        return transaction.orElseThrow(
+                () -> new AccountException(ErrorCode.TRANSACTION_NOT_FOUND));
+    }
+
+    private void validateCancelBalance(Transaction transaction, Long accountId, Long amount) {
+        if (transaction.getTransactionType() == TRANSFER_OUT
+                || transaction.getTransactionType() == TRANSFER_IN) {
+            throw new AccountException(ErrorCode.TRANSFER_NOT_CANCELABLE);
+        }
+        if (!Objects.equals(transaction.getAccount().getId(), accountId)) {
             throw new AccountException(ErrorCode.TRANSACTION_ACCOUNT_UN_MATCH);
         }
         if (!Objects.equals(transaction.getAmount(), amount)) {
@@ -126,6 +439,14 @@ public class TransactionService {
 
     @Transactional
     public void saveFailedCancelTransaction(String accountNumber, Long amount) {
+        if (balanceLedgerService.isLedgerAccount(accountNumber)) {
+            balanceLedgerService.recordFailure(CANCEL, accountNumber, amount);
+            return;
+        }
+        if (journaledBalanceEngine.isEngineAccount(accountNumber)) {
+            journaledBalanceEngine.recordFailure(CANCEL, accountNumber, amount);
+            return;
+        }
         Account account = accountRepository.findByAccountNumber(accountNumber)
                 .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
 
@@ -133,10 +454,38 @@ public class TransactionService {
     }
 
     public TransactionDto queryTransaction(String transactionId) {
-        return TransactionDto.fromEntity(
-                transactionRepository
-                        .findByTransactionId(transactionId)
-                        .orElseThrow(() -> new AccountException(ErrorCode.TRANSACTION_NOT_FOUND)));
+        return transactionQueryCache.get(transactionId, () -> transactionRepository
+                .findDtoByTransactionId(transactionId)
+                .orElseThrow(() -> new AccountException(ErrorCode.TRANSACTION_NOT_FOUND)));
+    }
+
+    /**
+     * 계좌의 거래 내역을 (거래 시간, id) 순서의 keyset 으로 나눠서 조회한다.
+     * offset 을 쓰지 않으므로 뒤쪽 페이지도 비용이 같고, 새 거래가 들어와도 cursor 가 밀리지 않는다.
+     * 다만 거래 시간은 커밋 전에 정하므로, 조회 중에 늦게 커밋된 거래는 이미 읽은 cursor 앞에 들어가
+     * 이어지는 페이지에서 빠질 수 있다. 빠짐없이 보려면 처음부터 다시 조회해야 한다.
+     */
+    public TransactionHistory.Response getTransactionHistory(
+            String accountNumber, String after, int limit) {
+        if (limit < 1 || limit > MAX_HISTORY_LIMIT) {
+            throw new AccountException(ErrorCode.INVALID_REQUEST);
+        }
+        AccountMetadataView account = accountMetadataCache.get(accountNumber)
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+
+        // 한 건 더 읽어서 다음 페이지가 있는지 확인
+        PageRequest page = PageRequest.of(0, limit + 1);
+        List<TransactionHistoryView> views;
+        if (after == null || after.isEmpty()) {
+            views = transactionRepository.findHistory(account.getId(), page);
+        } else {
+            TransactionHistory.Cursor cursor = TransactionHistory.Cursor.decode(after);
+            views = transactionRepository.findHistoryAfter(account.getId(),
+                    cursor.getTransactedAt(), cursor.getId(), page);
+        }
+        boolean hasNext = views.size() > limit;
+        return TransactionHistory.Response.from(accountNumber,
+                hasNext ? views.subList(0, limit) : views, after, hasNext);
     }
 
 
@@ -10,16 +10,21 @@ public enum ErrorCode {
     USER_NOT_FOUND("사용자가 없습니다."),
     ACCOUNT_NOT_FOUND("계좌가 없습니다."),
     ACCOUNT_TRANSACTION_LOCK("해당 계좌가 사용중입니다."),
+    ACCOUNT_BALANCE_CHANGED("처리 중에 다른 거래가 잔액을 바꿨습니다."),
     AMOUNT_EXCEED_BALANCE("거래 금액이 계좌 잔액보다 큽니다."),
     USER_ACCOUNT_UN_MATCH("사용자와 계좌 소유쥬가 다릅니다."),
     ACCOUNT_ALREADY_UNREGISTERED("계좌가 이미 해지되었습니다."),
     BALANCE_NOT_EMPTY("잔액이 있는 계좌는 해지할 수 없습니다."),
     MAX_ACCOUNT_PER_USER_10("사용자 최대 계좌는 10개 입니다."),
+    ACCOUNT_NUMBER_EXHAUSTED("발급 가능한 계좌 번호가 없습니다."),
 
     TRANSACTION_NOT_FOUND("해당 거래가 없습니다."),
     TRANSACTION_ACCOUNT_UN_MATCH("이 거래는 해당 계좌에서 발생하지 않았습니다."),
     TOO_OLD_ORDER_TO_CANCEL("1년이 지난 거래는 취소가 불가능합니다."),
     TRANSACTION_ALREADY_CANCELED("이미 취소된 거래입니다."),
+    TRANSFER_NOT_CANCELABLE("이체 거래는 취소할 수 없습니다."),
+    IDEMPOTENT_REQUEST_IN_PROGRESS("같은 키의 요청이 처리중입니다."),
+    IDEMPOTENCY_KEY_REUSED("다른 요청에 사용된 멱등 키입니다."),
     INVALID_REQUEST("잘못된 요청입니다."),
     CANCEL_MUST_FULLY("부분취소는 허용되지 않습니다.");
     private final String description;
@@ -0,0 +1,12 @@
+package com.example.account.type;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum ExportFormat {
+    NDJSON("application/x-ndjson"),
+    CSV("text/csv");
+    private final String contentType;
+}
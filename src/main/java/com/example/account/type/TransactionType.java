@@ -3,5 +3,7 @@ package com.example.account.type;
 public enum TransactionType {
     USE,
     CANCEL,
-    USE_CANCELED
+    USE_CANCELED,
+    TRANSFER_OUT,
+    TRANSFER_IN
 }
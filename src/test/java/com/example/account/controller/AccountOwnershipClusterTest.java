@@ -0,0 +1,149 @@
+package com.example.account.controller;
+
+import com.example.account.AccountApplication;
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import com.example.account.dto.UseBalance;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.AccountUserRepository;
+import com.example.account.service.AccountOwnership;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.account.type.AccountStatus.IN_USE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * localhost 에 노드 두 개를 띄워서 담당 노드로 요청이 넘어가고 잔액이 맞는지 확인.
+ * 다른 테스트 context 와 겹치지 않도록 redis 포트와 DB 이름을 따로 쓰고,
+ * 두 번째 노드는 첫 노드의 redis 와 DB 를 같이 쓴다.
+ */
+class AccountOwnershipClusterTest {
+    private static final String ACCOUNT_NUMBER = "1999999996";
+    private static final long INITIAL_BALANCE = 100_000L;
+    private static final long AMOUNT = 100L;
+    private static final int REQUESTS_PER_NODE = 30;
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @BeforeAll
+    static void startNodes() throws InterruptedException {
+        nodeA = startNode("--account.redis.embedded=true",
+                "--account.transaction.id.node-id=1");
+        nodeB = startNode("--account.redis.embedded=false",
+                "--account.transaction.id.node-id=2",
+                "--spring.jpa.hibernate.ddl-auto=none",
+                "--spring.sql.init.mode=never");
+        long deadline = System.currentTimeMillis() + 10_000L;
+        while (liveNodes(nodeA) < 2 || liveNodes(nodeB) < 2) {
+            assertTrue(System.currentTimeMillis() < deadline, "nodes did not join");
+            Thread.sleep(50);
+        }
+
+        AccountUser user = nodeA.getBean(AccountUserRepository.class).findById(1L).orElseThrow();
+        nodeA.getBean(AccountRepository.class).save(Account.builder()
+                .accountUser(user)
+                .accountStatus(IN_USE)
+                .balance(INITIAL_BALANCE)
+                .accountNumber(ACCOUNT_NUMBER)
+                .registeredAt(LocalDateTime.now()).build());
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        if (nodeA != null) {
+            nodeA.close();
+        }
+    }
+
+    @Test
+    @DisplayName("두 노드로 동시에 보낸 사용 요청이 담당 노드에서 처리되고 잔액이 맞는다")
+    void forwardToOwner() throws Exception {
+        //given
+        String owner = nodeA.getBean(AccountOwnership.class)
+                .getRemoteOwner(ACCOUNT_NUMBER)
+                .orElse(nodeA.getBean(AccountOwnership.class).getNodeUrl());
+        ConfigurableApplicationContext nonOwner =
+                owner.equals(nodeA.getBean(AccountOwnership.class).getNodeUrl()) ? nodeB : nodeA;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        //when
+        for (int i = 0; i < REQUESTS_PER_NODE; i++) {
+            results.add(executor.submit(() -> use(start, nodeA)));
+            results.add(executor.submit(() -> use(start, nodeB)));
+        }
+        start.countDown();
+        executor.shutdown();
+
+        //then
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        long succeeded = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                succeeded++;
+            }
+        }
+        long balance = nodeA.getBean(AccountRepository.class)
+                .findByAccountNumber(ACCOUNT_NUMBER).orElseThrow().getBalance();
+        assertEquals(INITIAL_BALANCE - succeeded * AMOUNT, balance);
+        assertEquals(REQUESTS_PER_NODE, nonOwner.getBean(MeterRegistry.class)
+                .get("account.ownership.forwards").counter().count());
+    }
+
+    private boolean use(CountDownLatch start, ConfigurableApplicationContext node)
+            throws InterruptedException {
+        start.await();
+        JsonNode response = restTemplate.postForObject(baseUrl(node) + "/transaction/use",
+                new UseBalance.Request(1L, ACCOUNT_NUMBER, AMOUNT), JsonNode.class);
+        return response != null
+                && "S".equals(response.path("transactionResult").asText());
+    }
+
+    private static ConfigurableApplicationContext startNode(String... args) {
+        List<String> properties = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.redis.port=6390",
+                "--spring.datasource.url=jdbc:h2:mem:ownership",
+                "--account.ownership.enabled=true",
+                "--account.ownership.lease-millis=1000",
+                "--account.ownership.refresh-millis=100"));
+        properties.addAll(List.of(args));
+        return new SpringApplicationBuilder(AccountApplication.class)
+                .run(properties.toArray(String[]::new));
+    }
+
+    private static int liveNodes(ConfigurableApplicationContext node) {
+        return node.getBean(AccountOwnership.class).getLiveNodes().size();
+    }
+
+    private static String baseUrl(ConfigurableApplicationContext node) {
+        return "http://localhost:"
+                + ((WebServerApplicationContext) node).getWebServer().getPort();
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.account.controller;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import com.example.account.domain.Transaction;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.AccountUserRepository;
+import com.example.account.repository.TransactionRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+
+import static com.example.account.type.AccountStatus.IN_USE;
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 조회 endpoint 별로 실행되는 SQL 수 확인 (lazy 연관관계 + dto projection).
+ * AccountApplicationTests 와 같은 context 를 쓰도록 MockMvc 는 직접 만든다.
+ */
+@SpringBootTest
+class QueryStatementCountTest {
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private AccountUserRepository accountUserRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    private MockMvc mockMvc;
+    private Statistics statistics;
+    private Account account;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+
+        AccountUser user = accountUserRepository.findById(1L).orElseThrow();
+        account = accountRepository.save(Account.builder()
+                .accountUser(user)
+                .accountStatus(IN_USE)
+                .balance(10000L)
+                .accountNumber("1999999999")
+                .registeredAt(LocalDateTime.now()).build());
+        transactionRepository.save(Transaction.builder()
+                .account(account)
+                .transactionType(USE)
+                .transactionResultType(S)
+                .amount(1000L)
+                .balanceSnapshot(9000L)
+                .transactionId("statementcounttransaction0000000")
+                .transactedAt(LocalDateTime.now()).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        statistics.setStatisticsEnabled(false);
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("GET /transaction/{transactionId} - 쿼리 1번")
+    void queryTransaction() throws Exception {
+        assertEquals(1, countStatements(get("/transaction/statementcounttransaction0000000")));
+    }
+
+    @Test
+    @DisplayName("GET /account?user_id - 사용자 확인 후 쿼리 1번")
+    void getAccountsByUserId() throws Exception {
+        //given
+        // 사용자 존재 여부는 첫 요청 이후 cache
+        mockMvc.perform(get("/account?user_id=1"));
+
+        //when
+        //then
+        assertEquals(1, countStatements(get("/account?user_id=1")));
+    }
+
+    @Test
+    @DisplayName("GET /account/{id} - 소유주까지 쿼리 1번")
+    void getAccount() throws Exception {
+        assertEquals(1, countStatements(get("/account/" + account.getId())));
+    }
+
+    private long countStatements(RequestBuilder request) throws Exception {
+        statistics.clear();
+        mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").exists());
+        return statistics.getPrepareStatementCount();
+    }
+}
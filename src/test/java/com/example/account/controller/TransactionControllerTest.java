@@ -2,7 +2,11 @@ package com.example.account.controller;
 
 import com.example.account.dto.CancelBalance;
 import com.example.account.dto.TransactionDto;
+import com.example.account.dto.Transfer;
 import com.example.account.dto.UseBalance;
+import com.example.account.dto.UseBalanceBatch;
+import com.example.account.service.TransactionExportService;
+import com.example.account.service.TransactionGroupWriter;
 import com.example.account.service.TransactionService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -13,9 +17,13 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
+import static com.example.account.type.ErrorCode.AMOUNT_EXCEED_BALANCE;
+import static com.example.account.type.TransactionResultType.F;
 import static com.example.account.type.TransactionResultType.S;
 import static com.example.account.type.TransactionType.USE;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.given;
@@ -30,6 +38,12 @@ class TransactionControllerTest {
     @MockBean
     private TransactionService transactionService;
 
+    @MockBean
+    private TransactionExportService transactionExportService;
+
+    @MockBean
+    private TransactionGroupWriter transactionGroupWriter;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -39,7 +53,7 @@ class TransactionControllerTest {
     @Test
     void successUseBalance() throws Exception {
         //given
-        given(transactionService.useBalance(anyLong(),
+        given(transactionGroupWriter.useBalance(anyLong(),
                 anyString(), anyLong()))
                 .willReturn(TransactionDto.builder()
                         .accountNumber("1000000000")
@@ -64,6 +78,43 @@ class TransactionControllerTest {
 
     }
 
+    @Test
+    void successUseBalanceBatch() throws Exception {
+        //given
+        given(transactionService.useBalanceBatch(anyList()))
+                .willReturn(List.of(
+                        TransactionDto.builder()
+                                .accountNumber("1000000000")
+                                .transactedAt(LocalDateTime.now())
+                                .amount(1000L)
+                                .transactionId("transactionId")
+                                .transactionResultType(S)
+                                .build(),
+                        TransactionDto.builder()
+                                .accountNumber("2000000000")
+                                .transactedAt(LocalDateTime.now())
+                                .amount(2000L)
+                                .transactionId("failedTransactionId")
+                                .transactionResultType(F)
+                                .errorCode(AMOUNT_EXCEED_BALANCE)
+                                .build()));
+        //when
+        //then
+        mockMvc.perform(post("/transaction/use/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new UseBalanceBatch.Request(List.of(
+                                        new UseBalance.Request(1L, "1000000000", 1000L),
+                                        new UseBalance.Request(1L, "2000000000", 2000L)))
+                        )))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].accountNumber").value("1000000000"))
+                .andExpect(jsonPath("$.items[0].transactionResult").value("S"))
+                .andExpect(jsonPath("$.items[1].transactionResult").value("F"))
+                .andExpect(jsonPath("$.items[1].errorCode").value("AMOUNT_EXCEED_BALANCE"));
+    }
+
     @Test
     void successCancelBalance() throws Exception {
         //given
@@ -93,6 +144,43 @@ class TransactionControllerTest {
 
     }
 
+    @Test
+    void successTransfer() throws Exception {
+        //given
+        given(transactionService.transfer(anyLong(), anyString(), anyString(), anyLong()))
+                .willReturn(List.of(
+                        TransactionDto.builder()
+                                .accountNumber("1000000000")
+                                .transactedAt(LocalDateTime.now())
+                                .amount(3000L)
+                                .balanceSnapshot(7000L)
+                                .transactionId("withdrawalId")
+                                .transactionResultType(S)
+                                .build(),
+                        TransactionDto.builder()
+                                .accountNumber("2000000000")
+                                .transactedAt(LocalDateTime.now())
+                                .amount(3000L)
+                                .transactionId("depositId")
+                                .transactionResultType(S)
+                                .build()));
+        //when
+        //then
+        mockMvc.perform(post("/transaction/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new Transfer.Request(1L, "1000000000", "2000000000", 3000L)
+                        )))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.fromAccountNumber").value("1000000000"))
+                .andExpect(jsonPath("$.toAccountNumber").value("2000000000"))
+                .andExpect(jsonPath("$.transactionResult").value("S"))
+                .andExpect(jsonPath("$.transactionId").value("withdrawalId"))
+                .andExpect(jsonPath("$.depositTransactionId").value("depositId"))
+                .andExpect(jsonPath("$.balance").value("7000"));
+    }
+
     @Test
     void successQueryTransaction() throws Exception {
         //given
@@ -0,0 +1,134 @@
+package com.example.account.controller;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import com.example.account.dto.Transfer;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.AccountUserRepository;
+import com.example.account.repository.TransactionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.account.type.AccountStatus.IN_USE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * 양방향 이체를 동시에 보내도 교착 없이 끝나고 잔액 합계가 유지되는지 확인.
+ * AccountApplicationTests 와 같은 context 를 쓰도록 MockMvc 는 직접 만든다.
+ */
+@SpringBootTest
+class TransferConcurrencyTest {
+    private static final String ACCOUNT_A = "1999999997";
+    private static final String ACCOUNT_B = "1999999998";
+    private static final long INITIAL_BALANCE = 100_000L;
+    private static final long AMOUNT = 100L;
+    private static final int TRANSFERS_PER_DIRECTION = 30;
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AccountUserRepository accountUserRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        AccountUser user = accountUserRepository.findById(1L).orElseThrow();
+        for (String accountNumber : List.of(ACCOUNT_A, ACCOUNT_B)) {
+            accountRepository.save(Account.builder()
+                    .accountUser(user)
+                    .accountStatus(IN_USE)
+                    .balance(INITIAL_BALANCE)
+                    .accountNumber(accountNumber)
+                    .registeredAt(LocalDateTime.now()).build());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("반대 방향 이체 동시 실행 - 교착 없이 완료되고 잔액 합계 유지")
+    void oppositeDirectionTransfers() throws Exception {
+        //given
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> aToB = new ArrayList<>();
+        List<Future<Boolean>> bToA = new ArrayList<>();
+
+        //when
+        for (int i = 0; i < TRANSFERS_PER_DIRECTION; i++) {
+            aToB.add(executor.submit(() -> transfer(start, ACCOUNT_A, ACCOUNT_B)));
+            bToA.add(executor.submit(() -> transfer(start, ACCOUNT_B, ACCOUNT_A)));
+        }
+        start.countDown();
+        executor.shutdown();
+
+        //then
+        // lock 을 항상 같은 순서로 잡으므로 대기 시간 안에 모두 끝나야 한다
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        long succeededAToB = countSucceeded(aToB);
+        long succeededBToA = countSucceeded(bToA);
+        long balanceA = accountRepository.findByAccountNumber(ACCOUNT_A)
+                .orElseThrow().getBalance();
+        long balanceB = accountRepository.findByAccountNumber(ACCOUNT_B)
+                .orElseThrow().getBalance();
+        assertEquals(2 * INITIAL_BALANCE, balanceA + balanceB);
+        assertEquals(INITIAL_BALANCE + (succeededBToA - succeededAToB) * AMOUNT, balanceA);
+    }
+
+    private boolean transfer(CountDownLatch start, String from, String to) throws Exception {
+        start.await();
+        String response = mockMvc.perform(post("/transaction/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new Transfer.Request(1L, from, to, AMOUNT))))
+                .andReturn().getResponse().getContentAsString();
+        // lock 대기 시간 초과 등으로 실패한 요청은 에러 응답을 받는다
+        return "S".equals(objectMapper.readTree(response).path("transactionResult").asText());
+    }
+
+    private static long countSucceeded(List<Future<Boolean>> futures) throws Exception {
+        long succeeded = 0;
+        for (Future<Boolean> future : futures) {
+            if (future.get()) {
+                succeeded++;
+            }
+        }
+        return succeeded;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.account.repository;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import javax.persistence.EntityManager;
+
+import static com.example.account.type.AccountStatus.IN_USE;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 조회 비용이 테이블 크기에 비례하지 않도록 (table scan 이 아닌) index 를 타는지 실행 계획으로 확인한다.
+ */
+@DataJpaTest
+class AccountRepositoryTest {
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private AccountUserRepository accountUserRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    @DisplayName("계좌 번호 조회는 unique index 사용")
+    void findByAccountNumberUsesIndex() {
+        //when
+        String plan = explain("select * from account where account_number = '1000000000'");
+
+        //then
+        assertTrue(plan.contains("UK_ACCOUNT_ACCOUNT_NUMBER"), plan);
+    }
+
+    @Test
+    @DisplayName("소유주 별 계좌 조회는 table scan 하지 않음")
+    void findByAccountUserUsesIndex() {
+        //when
+        String plan = explain("select count(*) from account where account_user_id = 1");
+
+        //then
+        assertFalse(plan.contains("tableScan"), plan);
+    }
+
+    @Test
+    @DisplayName("같은 계좌 번호는 저장할 수 없음")
+    void duplicateAccountNumber() {
+        //given
+        AccountUser user = accountUserRepository.findById(1L).orElseThrow();
+        accountRepository.saveAndFlush(newAccount(user));
+
+        //when
+        //then
+        assertThrows(DataIntegrityViolationException.class,
+                () -> accountRepository.saveAndFlush(newAccount(user)));
+    }
+
+    private String explain(String sql) {
+        return String.valueOf(entityManager.createNativeQuery("explain " + sql)
+                .getSingleResult());
+    }
+
+    private static Account newAccount(AccountUser user) {
+        return Account.builder()
+                .accountUser(user)
+                .accountStatus(IN_USE)
+                .balance(0L)
+                .accountNumber("1000000000").build();
+    }
+}
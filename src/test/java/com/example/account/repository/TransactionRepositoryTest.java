@@ -0,0 +1,188 @@
+package com.example.account.repository;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import com.example.account.domain.Transaction;
+import com.example.account.dto.TransactionHistoryView;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.example.account.type.AccountStatus.IN_USE;
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class TransactionRepositoryTest {
+    private static final int COUNT = 200;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private AccountUserRepository accountUserRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Statistics statistics;
+    private Account account;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        // data.sql 로 들어가는 사용자
+        AccountUser user = accountUserRepository.findById(1L).orElseThrow();
+        account = accountRepository.save(Account.builder()
+                .accountUser(user)
+                .accountStatus(IN_USE)
+                .balance(10000L)
+                .accountNumber("1000000000").build());
+        entityManager.flush();
+    }
+
+    @Test
+    @DisplayName("pooled id 와 batch insert 로 거래 저장 statement 수 비교")
+    void statementsPerInsert() {
+        //given
+        entityManager.unwrap(Session.class).setJdbcBatchSize(1);
+
+        //when
+        long unbatched = countStatements();
+        entityManager.unwrap(Session.class).setJdbcBatchSize(null);
+        long batched = countStatements();
+
+        //then
+        log.info("statements per insert - batch off : {}, batch on : {}",
+                (double) unbatched / COUNT, (double) batched / COUNT);
+        // pooled id 이전에는 건마다 시퀀스 호출 + insert 로 건당 2개
+        assertTrue(unbatched < COUNT + COUNT / 10);
+        assertTrue(batched <= COUNT / 10);
+    }
+
+    @Test
+    @DisplayName("거래 id 조회는 unique index 사용")
+    void findByTransactionIdUsesIndex() {
+        //when
+        String plan = explain("select * from transaction where transaction_id = 'id'");
+
+        //then
+        assertTrue(plan.contains("UK_TRANSACTION_TRANSACTION_ID"), plan);
+    }
+
+    @Test
+    @DisplayName("계좌별 거래 내역은 (account_id, transacted_at) index 사용")
+    void historyUsesAccountTransactedAtIndex() {
+        //when
+        String plan = explain("select * from transaction where account_id = 1"
+                + " and transacted_at < now() order by transacted_at desc");
+
+        //then
+        assertTrue(plan.contains("IDX_TRANSACTION_ACCOUNT_TRANSACTED_AT"), plan);
+    }
+
+    @Test
+    @DisplayName("keyset 페이지 - 같은 시간의 거래도 빠짐없이, 중간에 추가된 거래는 뒤에")
+    void historyKeysetPagination() {
+        //given
+        LocalDateTime base = LocalDateTime.of(2026, 1, 1, 0, 0);
+        List<Transaction> saved = transactionRepository.saveAll(List.of(
+                transaction(base), transaction(base), transaction(base),
+                transaction(base.plusSeconds(1)), transaction(base.plusSeconds(2))));
+        entityManager.flush();
+
+        //when
+        List<String> seen = new ArrayList<>();
+        List<TransactionHistoryView> page =
+                transactionRepository.findHistory(account.getId(), PageRequest.of(0, 2));
+        while (!page.isEmpty()) {
+            page.forEach(view -> seen.add(view.getTransactionId()));
+            if (seen.size() == 2) {
+                // 조회 중에 새 거래가 생겨도 cursor 는 그대로
+                transactionRepository.saveAndFlush(transaction(base.plusSeconds(3)));
+            }
+            TransactionHistoryView last = page.get(page.size() - 1);
+            page = transactionRepository.findHistoryAfter(account.getId(),
+                    last.getTransactedAt(), last.getId(), PageRequest.of(0, 2));
+        }
+
+        //then
+        assertEquals(6, seen.size());
+        for (int i = 0; i < saved.size(); i++) {
+            assertEquals(saved.get(i).getTransactionId(), seen.get(i));
+        }
+    }
+
+    @Test
+    @DisplayName("keyset 조회는 (account_id, transacted_at, id) index 사용")
+    void historyAfterUsesIndex() {
+        //when
+        String plan = explain("select * from transaction where account_id = 1"
+                + " and transacted_at >= now() and (transacted_at > now() or id > 10)"
+                + " order by transacted_at, id");
+
+        //then
+        assertTrue(plan.contains("IDX_TRANSACTION_ACCOUNT_TRANSACTED_AT"), plan);
+    }
+
+    private Transaction transaction(LocalDateTime transactedAt) {
+        return Transaction.builder()
+                .transactionType(USE)
+                .transactionResultType(S)
+                .account(account)
+                .amount(10L)
+                .balanceSnapshot(10000L)
+                .transactionId(UUID.randomUUID().toString().replace("-", ""))
+                .transactedAt(transactedAt)
+                .build();
+    }
+
+    private String explain(String sql) {
+        return String.valueOf(entityManager.createNativeQuery("explain " + sql)
+                .getSingleResult());
+    }
+
+    private long countStatements() {
+        statistics.clear();
+        transactionRepository.saveAll(transactions());
+        entityManager.flush();
+        assertEquals(COUNT, statistics.getEntityInsertCount());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private List<Transaction> transactions() {
+        return IntStream.range(0, COUNT)
+                .mapToObj(i -> Transaction.builder()
+                        .transactionType(USE)
+                        .transactionResultType(S)
+                        .account(account)
+                        .amount(10L)
+                        .balanceSnapshot(10000L)
+                        .transactionId(UUID.randomUUID().toString().replace("-", ""))
+                        .transactedAt(LocalDateTime.now())
+                        .build())
+                .collect(Collectors.toList());
+    }
+}
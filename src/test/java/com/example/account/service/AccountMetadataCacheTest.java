@@ -0,0 +1,134 @@
+package com.example.account.service;
+
+import com.example.account.dto.AccountMetadataView;
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountRepository;
+import com.example.account.type.AccountStatus;
+import com.example.account.type.ErrorCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class AccountMetadataCacheTest {
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private RTopic topic;
+
+    private AccountMetadataCache accountMetadataCache;
+
+    @BeforeEach
+    void setUp() {
+        accountMetadataCache = new AccountMetadataCache(redissonClient, accountRepository,
+                new SimpleMeterRegistry(), true, 100, 600);
+    }
+
+    @Test
+    @DisplayName("사용중인 계좌는 한 번만 조회")
+    void validateInUseLoadsOnce() {
+        //given
+        given(accountRepository.findMetadataByAccountNumber(anyString()))
+                .willReturn(Optional.of(metadata(AccountStatus.IN_USE)));
+
+        //when
+        accountMetadataCache.validateInUse("1000000000");
+        accountMetadataCache.validateInUse("1000000000");
+
+        //then
+        verify(accountRepository, times(1)).findMetadataByAccountNumber("1000000000");
+    }
+
+    @Test
+    @DisplayName("없는 계좌도 cache - 계좌 없음")
+    void negativeCache() {
+        //given
+        given(accountRepository.findMetadataByAccountNumber(anyString()))
+                .willReturn(Optional.empty());
+
+        //when
+        AccountException first = assertThrows(AccountException.class,
+                () -> accountMetadataCache.validateInUse("1000000000"));
+        AccountException second = assertThrows(AccountException.class,
+                () -> accountMetadataCache.validateInUse("1000000000"));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_NOT_FOUND, first.getErrorCode());
+        assertEquals(ErrorCode.ACCOUNT_NOT_FOUND, second.getErrorCode());
+        verify(accountRepository, times(1)).findMetadataByAccountNumber("1000000000");
+    }
+
+    @Test
+    @DisplayName("해지된 계좌 - 이미 해지")
+    void unregistered() {
+        //given
+        given(accountRepository.findMetadataByAccountNumber(anyString()))
+                .willReturn(Optional.of(metadata(AccountStatus.UNREGISTERED)));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> accountMetadataCache.validateInUse("1000000000"));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED, exception.getErrorCode());
+    }
+
+    @Test
+    @DisplayName("해지되면 다시 조회하고 다른 노드에 알린다")
+    void evict() {
+        //given
+        given(accountRepository.findMetadataByAccountNumber(anyString()))
+                .willReturn(Optional.of(metadata(AccountStatus.IN_USE)),
+                        Optional.of(metadata(AccountStatus.UNREGISTERED)));
+        given(redissonClient.getTopic(anyString(), any()))
+                .willReturn(topic);
+        accountMetadataCache.validateInUse("1000000000");
+
+        //when
+        accountMetadataCache.evict("1000000000");
+        AccountException exception = assertThrows(AccountException.class,
+                () -> accountMetadataCache.validateInUse("1000000000"));
+
+        //then
+        verify(topic).publish("1000000000");
+        assertEquals(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED, exception.getErrorCode());
+    }
+
+    private static AccountMetadataView metadata(AccountStatus accountStatus) {
+        return new AccountMetadataView() {
+            @Override
+            public Long getId() {
+                return 1L;
+            }
+
+            @Override
+            public Long getUserId() {
+                return 12L;
+            }
+
+            @Override
+            public AccountStatus getAccountStatus() {
+                return accountStatus;
+            }
+        };
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.account.service;
+
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountRepository;
+import com.example.account.type.ErrorCode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RedissonClient;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class AccountNumberAllocatorTest {
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private RAtomicLong sequence;
+
+    private AccountNumberAllocator accountNumberAllocator;
+
+    @BeforeEach
+    void setUp() {
+        accountNumberAllocator = new AccountNumberAllocator(
+                redissonClient, accountRepository, 3);
+        given(redissonClient.getAtomicLong(anyString()))
+                .willReturn(sequence);
+    }
+
+    @Test
+    @DisplayName("첫 계좌 번호는 1000000000")
+    void allocateFirstAccountNumber() {
+        //given
+        given(sequence.isExists()).willReturn(false);
+        given(accountRepository.findMaxAccountNumber())
+                .willReturn(Optional.empty());
+        given(sequence.addAndGet(3L)).willReturn(1000000003L);
+
+        //when
+        String accountNumber = accountNumberAllocator.allocate();
+
+        //then
+        verify(sequence).compareAndSet(0L, 1000000000L);
+        assertEquals("1000000000", accountNumber);
+    }
+
+    @Test
+    @DisplayName("카운터가 없으면 DB 의 마지막 번호 다음부터 시작")
+    void seedFromLastAccountNumber() {
+        //given
+        given(sequence.isExists()).willReturn(false);
+        given(accountRepository.findMaxAccountNumber())
+                .willReturn(Optional.of("1000000012"));
+        given(sequence.addAndGet(3L)).willReturn(1000000016L);
+
+        //when
+        accountNumberAllocator.allocate();
+
+        //then
+        verify(sequence).compareAndSet(0L, 1000000013L);
+    }
+
+    @Test
+    @DisplayName("block 안에서는 redis 를 다시 호출하지 않는다")
+    void allocateFromReservedBlock() {
+        //given
+        given(sequence.isExists()).willReturn(true);
+        given(sequence.addAndGet(3L))
+                .willReturn(1000000023L, 1000000053L);
+
+        //when
+        String first = accountNumberAllocator.allocate();
+        String second = accountNumberAllocator.allocate();
+        String third = accountNumberAllocator.allocate();
+        String fourth = accountNumberAllocator.allocate();
+
+        //then
+        verify(sequence, times(2)).addAndGet(3L);
+        verify(sequence, never()).compareAndSet(anyLong(), anyLong());
+        assertEquals("1000000020", first);
+        assertEquals("1000000021", second);
+        assertEquals("1000000022", third);
+        assertEquals("1000000050", fourth);
+    }
+
+    @Test
+    @DisplayName("10자리 번호를 다 쓰면 발급 실패")
+    void accountNumberExhausted() {
+        //given
+        given(sequence.isExists()).willReturn(true);
+        given(sequence.addAndGet(3L)).willReturn(10000000003L);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> accountNumberAllocator.allocate());
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_NUMBER_EXHAUSTED, exception.getErrorCode());
+    }
+}
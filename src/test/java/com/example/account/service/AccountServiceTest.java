@@ -3,7 +3,6 @@ package com.example.account.service;
 import com.example.account.domain.Account;
 import com.example.account.domain.AccountUser;
 import com.example.account.exception.AccountException;
-import com.example.account.repository.AccountUserRepository;
 import com.example.account.type.AccountStatus;
 import com.example.account.repository.AccountRepository;
 import com.example.account.type.ErrorCode;
@@ -33,7 +32,22 @@ class AccountServiceTest {
     private AccountRepository accountRepository;
 
     @Mock
-    private AccountUserRepository accountUserRepository;
+    private AccountUserCache accountUserCache;
+
+    @Mock
+    private BalanceLedgerService balanceLedgerService;
+
+    @Mock
+    private AccountNumberAllocator accountNumberAllocator;
+
+    @Mock
+    private AccountMetadataCache accountMetadataCache;
+
+    @Mock
+    private ShardedBalanceService shardedBalanceService;
+
+    @Mock
+    private JournaledBalanceEngine journaledBalanceEngine;
 
     @InjectMocks
     private AccountService accountService;
@@ -44,12 +58,10 @@ class AccountServiceTest {
         AccountUser user = AccountUser.builder()
                 .name("Pobi").build();
         user.setId(12L);
-        given(accountUserRepository.findById(anyLong()))
+        given(accountUserCache.findById(anyLong()))
                 .willReturn(Optional.of(user));
-        given(accountRepository.findFirstByOrderByIdDesc())
-                .willReturn(Optional.of(Account.builder()
-                        .accountUser(user)
-                        .accountNumber("1000000012").build()));
+        given(accountNumberAllocator.allocate())
+                .willReturn("1000000013");
         given(accountRepository.save(any()))
                 .willReturn(Account.builder()
                         .accountUser(user)
@@ -71,10 +83,10 @@ class AccountServiceTest {
         AccountUser user = AccountUser.builder()
                 .name("Pobi").build();
         user.setId(15L);
-        given(accountUserRepository.findById(anyLong()))
+        given(accountUserCache.findById(anyLong()))
                 .willReturn(Optional.of(user));
-        given(accountRepository.findFirstByOrderByIdDesc())
-                .willReturn(Optional.empty());
+        given(accountNumberAllocator.allocate())
+                .willReturn("1000000000");
         given(accountRepository.save(any()))
                 .willReturn(Account.builder()
                         .accountUser(user)
@@ -94,7 +106,7 @@ class AccountServiceTest {
     @DisplayName("해당 유저 없음 - 계좌 생성 실패")
     void createAccount_UserNotFound() {
         //given
-        given(accountUserRepository.findById(anyLong()))
+        given(accountUserCache.findById(anyLong()))
                 .willReturn(Optional.empty());
 
         //when
@@ -111,7 +123,7 @@ class AccountServiceTest {
         AccountUser user = AccountUser.builder()
                 .name("Pobi").build();
         user.setId(15L);
-        given(accountUserRepository.findById(anyLong()))
+        given(accountUserCache.findById(anyLong()))
                 .willReturn(Optional.of(user));
         given(accountRepository.countByAccountUser(any()))
                 .willReturn(10);
@@ -129,7 +141,7 @@ class AccountServiceTest {
         AccountUser user = AccountUser.builder()
                 .name("Pobi").build();
         user.setId(12L);
-        given(accountUserRepository.findById(anyLong()))
+        given(accountUserCache.findById(anyLong()))
                 .willReturn(Optional.of(user));
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.of(Account.builder()
@@ -144,12 +156,13 @@ class AccountServiceTest {
         assertEquals(12L, accountDto.getUserId());
         assertEquals("1000000012", captor.getValue().getAccountNumber());
         assertEquals(AccountStatus.UNREGISTERED, captor.getValue().getAccountStatus());
+        verify(accountMetadataCache).evict("1234567890");
     }
 
     @Test
     void deleteAccount_UserNotFound() {
         //given
-        given(accountUserRepository.findById(anyLong()))
+        given(accountUserCache.findById(anyLong()))
                 .willReturn(Optional.empty());
         //when
         AccountException exception = assertThrows(AccountException.class,
@@ -165,7 +178,7 @@ class AccountServiceTest {
         AccountUser user = AccountUser.builder()
                 .name("Pobi").build();
         user.setId(12L);
-        given(accountUserRepository.findById(anyLong()))
+        given(accountUserCache.findById(anyLong()))
                 .willReturn(Optional.of(user));
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.empty());
@@ -186,7 +199,7 @@ class AccountServiceTest {
         AccountUser harry = AccountUser.builder()
                 .name("Harry").build();
         harry.setId(13L);
-        given(accountUserRepository.findById(anyLong()))
+        given(accountUserCache.findById(anyLong()))
                 .willReturn(Optional.of(pobi));
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.of(Account.builder()
@@ -207,7 +220,7 @@ class AccountServiceTest {
         AccountUser pobi = AccountUser.builder()
                 .name("Pobi").build();
         pobi.setId(12L);
-        given(accountUserRepository.findById(anyLong()))
+        given(accountUserCache.findById(anyLong()))
                 .willReturn(Optional.of(pobi));
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.of(Account.builder()
@@ -228,7 +241,7 @@ class AccountServiceTest {
         AccountUser pobi = AccountUser.builder()
                 .name("Pobi").build();
         pobi.setId(12L);
-        given(accountUserRepository.findById(anyLong()))
+        given(accountUserCache.findById(anyLong()))
                 .willReturn(Optional.of(pobi));
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.of(Account.builder()
@@ -247,7 +260,7 @@ class AccountServiceTest {
     @DisplayName("계좌 조회 성공")
     void successAccountSearch() {
         //given
-        given(accountRepository.findById(anyLong()))
+        given(accountRepository.findWithAccountUserById(anyLong()))
                 .willReturn(Optional.of(Account.builder()
                         .accountStatus(AccountStatus.IN_USE)
                         .accountNumber("65789").build()));
@@ -259,7 +272,7 @@ class AccountServiceTest {
         Account account = accountService.getAccount(4555L);
 
         //then
-        verify(accountRepository, times(1)).findById(captor.capture());
+        verify(accountRepository, times(1)).findWithAccountUserById(captor.capture());
         verify(accountRepository, times(0)).save(any());
 
         assertEquals(4555L, captor.getValue());
@@ -282,29 +295,26 @@ class AccountServiceTest {
     @Test
     void successGetAccountsById(){
         //given
-        AccountUser pobi = AccountUser.builder()
-                .name("Pobi").build();
-        pobi.setId(12L);
-        List<Account> accounts = Arrays.asList(
-                Account.builder()
-                        .accountUser(pobi)
+        List<AccountDto> accounts = Arrays.asList(
+                AccountDto.builder()
+                        .userId(12L)
                         .accountNumber("1234567890")
                         .balance(1000L)
                         .build(),
-                Account.builder()
-                        .accountUser(pobi)
+                AccountDto.builder()
+                        .userId(12L)
                         .accountNumber("1234567891")
                         .balance(1001L)
                         .build(),
-                Account.builder()
-                        .accountUser(pobi)
+                AccountDto.builder()
+                        .userId(12L)
                         .accountNumber("1234567892")
                         .balance(1002L)
                         .build()
         );
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(pobi));
-        given(accountRepository.findByAccountUser(any()))
+        given(accountUserCache.existsById(anyLong()))
+                .willReturn(true);
+        given(accountRepository.findDtosByUserId(anyLong()))
                 .willReturn(accounts);
         //when
         List<AccountDto> accountDtos = accountService.getAccountByUserId(12L);
@@ -321,11 +331,35 @@ class AccountServiceTest {
         assertEquals(1002, accountDtos.get(2).getBalance());
     }
 
+    @Test
+    @DisplayName("ledger 계좌는 redis 에 올라온 잔액으로 보여준다")
+    void getAccountsById_ledgerBalance() {
+        //given
+        given(accountUserCache.existsById(anyLong()))
+                .willReturn(true);
+        given(accountRepository.findDtosByUserId(anyLong()))
+                .willReturn(List.of(AccountDto.builder()
+                        .userId(12L)
+                        .accountNumber("1234567890")
+                        .balance(1000L)
+                        .build()));
+        given(balanceLedgerService.isLedgerAccount("1234567890"))
+                .willReturn(true);
+        given(balanceLedgerService.getBalance("1234567890"))
+                .willReturn(Optional.of(700L));
+
+        //when
+        List<AccountDto> accountDtos = accountService.getAccountByUserId(12L);
+
+        //then
+        assertEquals(700, accountDtos.get(0).getBalance());
+    }
+
     @Test
     void failedToGetAccounts(){
         //given
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.empty());
+        given(accountUserCache.existsById(anyLong()))
+                .willReturn(false);
         //when
         AccountException exception = assertThrows(AccountException.class,
                 () -> accountService.getAccountByUserId(1L));
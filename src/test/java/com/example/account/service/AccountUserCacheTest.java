@@ -0,0 +1,77 @@
+package com.example.account.service;
+
+import com.example.account.domain.AccountUser;
+import com.example.account.repository.AccountUserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class AccountUserCacheTest {
+    @Mock
+    private AccountUserRepository accountUserRepository;
+
+    private AccountUserCache accountUserCache;
+
+    @BeforeEach
+    void setUp() {
+        accountUserCache = new AccountUserCache(accountUserRepository,
+                new SimpleMeterRegistry(), 100);
+    }
+
+    @Test
+    @DisplayName("확인된 사용자는 다시 조회하지 않는다")
+    void existsByIdCached() {
+        //given
+        given(accountUserRepository.existsById(1L)).willReturn(true);
+
+        //when
+        //then
+        assertTrue(accountUserCache.existsById(1L));
+        assertTrue(accountUserCache.existsById(1L));
+        verify(accountUserRepository, times(1)).existsById(1L);
+    }
+
+    @Test
+    @DisplayName("없는 사용자는 기억하지 않는다 - 나중에 생성되면 바로 반영")
+    void notExistsNotCached() {
+        //given
+        given(accountUserRepository.existsById(1L)).willReturn(false, true);
+
+        //when
+        //then
+        assertFalse(accountUserCache.existsById(1L));
+        assertTrue(accountUserCache.existsById(1L));
+    }
+
+    @Test
+    @DisplayName("확인된 사용자는 reference 로 돌려준다")
+    void findByIdReturnsReference() {
+        //given
+        AccountUser user = AccountUser.builder().name("Pobi").build();
+        user.setId(12L);
+        AccountUser reference = AccountUser.builder().build();
+        given(accountUserRepository.findById(12L)).willReturn(Optional.of(user));
+        given(accountUserRepository.getReferenceById(12L)).willReturn(reference);
+
+        //when
+        AccountUser first = accountUserCache.findById(12L).orElseThrow();
+        AccountUser second = accountUserCache.findById(12L).orElseThrow();
+
+        //then
+        assertSame(user, first);
+        assertSame(reference, second);
+        verify(accountUserRepository, times(1)).findById(12L);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.account.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BalanceJournalTest {
+    @TempDir
+    Path journalDir;
+
+    @Test
+    @DisplayName("fsync 가 실패하면 이후 기록과 대기를 모두 거절")
+    void rejectAfterSyncFailure() {
+        //given
+        try (BalanceJournal journal = new BalanceJournal(journalDir, 1, true, 100)) {
+            long seq = journal.append(entry());
+
+            //when
+            journal.markFailed();
+
+            //then
+            assertTrue(journal.isFailed());
+            assertThrows(IllegalStateException.class, () -> journal.append(entry()));
+            assertThrows(IllegalStateException.class, () -> journal.awaitDurable(seq + 1));
+        }
+    }
+
+    private static BalanceJournal.Entry entry() {
+        return BalanceJournal.Entry.builder()
+                .accountNumber(1000000000L)
+                .userId(1L)
+                .amount(1000L)
+                .balanceSnapshot(9000L)
+                .transactedAt(LocalDateTime.now())
+                .transactionType(USE)
+                .transactionResultType(S)
+                .transactionId(new TimeOrderedTransactionIdGenerator(1).generate())
+                .build();
+    }
+}
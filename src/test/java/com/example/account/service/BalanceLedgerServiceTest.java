@@ -0,0 +1,278 @@
+package com.example.account.service;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import com.example.account.domain.Transaction;
+import com.example.account.dto.TransactionDto;
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.ErrorCode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RList;
+import org.redisson.api.RLock;
+import org.redisson.api.RMap;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.example.account.type.AccountStatus.IN_USE;
+import static com.example.account.type.AccountStatus.UNREGISTERED;
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.CANCEL;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceLedgerServiceTest {
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private RScript rScript;
+
+    @Mock
+    private RMap<Object, Object> rMap;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private AccountUserCache accountUserCache;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BalanceLedgerService balanceLedgerService;
+
+    @BeforeEach
+    void setUp() {
+        balanceLedgerService = new BalanceLedgerService(redissonClient,
+                transactionRepository, accountRepository, accountUserCache,
+                transactionManager, new RandomTransactionIdGenerator(),
+                true, Set.of("1000000000"), 100);
+    }
+
+    @Test
+    void isLedgerAccount() {
+        assertTrue(balanceLedgerService.isLedgerAccount("1000000000"));
+        assertFalse(balanceLedgerService.isLedgerAccount("1000000001"));
+    }
+
+    @Test
+    void successUse() {
+        //given
+        given(redissonClient.getScript(any())).willReturn(rScript);
+        given(rScript.scriptLoad(anyString())).willReturn("sha");
+        given(rScript.evalSha(any(), anyString(), any(), anyList(), any()))
+                .willReturn(9000L);
+
+        //when
+        TransactionDto transactionDto = balanceLedgerService.use(1L, "1000000000", 1000L);
+
+        //then
+        assertEquals(USE, transactionDto.getTransactionType());
+        assertEquals(S, transactionDto.getTransactionResultType());
+        assertEquals(1000L, transactionDto.getAmount());
+        assertEquals(9000L, transactionDto.getBalanceSnapshot());
+        assertEquals(32, transactionDto.getTransactionId().length());
+    }
+
+    @Test
+    @DisplayName("거래 금액이 ledger 잔액보다 큰 경우")
+    void use_exceedBalance() {
+        //given
+        given(redissonClient.getScript(any())).willReturn(rScript);
+        given(rScript.scriptLoad(anyString())).willReturn("sha");
+        given(rScript.evalSha(any(), anyString(), any(), anyList(), any()))
+                .willReturn(-3L);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> balanceLedgerService.use(1L, "1000000000", 1000L));
+
+        //then
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, exception.getErrorCode());
+    }
+
+    @Test
+    @DisplayName("계좌 소유주 다름")
+    void use_userUnMatch() {
+        //given
+        given(redissonClient.getScript(any())).willReturn(rScript);
+        given(rScript.scriptLoad(anyString())).willReturn("sha");
+        given(rScript.evalSha(any(), anyString(), any(), anyList(), any()))
+                .willReturn(-2L);
+        given(accountUserCache.existsById(anyLong())).willReturn(true);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> balanceLedgerService.use(2L, "1000000000", 1000L));
+
+        //then
+        assertEquals(ErrorCode.USER_ACCOUNT_UN_MATCH, exception.getErrorCode());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    @DisplayName("redis 에 상태가 없으면 큐를 먼저 DB 에 반영한 뒤 마지막 balanceSnapshot 으로 다시 올린다")
+    void use_loadFromSnapshotChain() throws InterruptedException {
+        //given
+        RLock flushLock = mock(RLock.class);
+        RList<String> queue = mock(RList.class);
+        given(redissonClient.getLock(anyString())).willReturn(flushLock);
+        given(flushLock.tryLock(anyLong(), any())).willReturn(true);
+        given(redissonClient.<String>getList(anyString(), any(Codec.class))).willReturn(queue);
+        given(queue.range(anyInt(), anyInt())).willReturn(List.of());
+        AccountUser user = AccountUser.builder().name("Pobi").build();
+        user.setId(1L);
+        Account account = Account.builder()
+                .accountUser(user)
+                .accountStatus(IN_USE)
+                .balance(5000L)
+                .accountNumber("1000000000").build();
+        given(redissonClient.getScript(any())).willReturn(rScript);
+        given(rScript.scriptLoad(anyString())).willReturn("sha");
+        given(rScript.evalSha(any(), anyString(), any(), anyList(), any()))
+                .willReturn(-1L, 1L, 6000L);
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(account));
+        given(transactionRepository.findFirstByAccountOrderByTransactedAtDescIdDesc(any()))
+                .willReturn(Optional.of(Transaction.builder()
+                        .account(account)
+                        .transactionType(CANCEL)
+                        .transactedAt(LocalDateTime.now())
+                        .balanceSnapshot(7000L)
+                        .build()));
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+
+        //when
+        TransactionDto transactionDto = balanceLedgerService.use(1L, "1000000000", 1000L);
+
+        //then
+        verify(rScript, times(3)).evalSha(any(), anyString(), any(), anyList(),
+                captor.capture());
+        assertTrue(captor.getAllValues().contains("7000"));
+        assertEquals(6000L, transactionDto.getBalanceSnapshot());
+        InOrder inOrder = inOrder(queue, transactionRepository);
+        inOrder.verify(queue).range(anyInt(), anyInt());
+        inOrder.verify(transactionRepository).findFirstByAccountOrderByTransactedAtDescIdDesc(any());
+    }
+
+    @Test
+    @DisplayName("다른 flush 가 끝나지 않아 큐를 비우지 못하면 옛 DB 잔액으로 올리지 않는다")
+    void use_flushBusyBeforeLoad() throws InterruptedException {
+        //given
+        RLock flushLock = mock(RLock.class);
+        given(redissonClient.getScript(any())).willReturn(rScript);
+        given(rScript.scriptLoad(anyString())).willReturn("sha");
+        given(rScript.evalSha(any(), anyString(), any(), anyList(), any()))
+                .willReturn(-1L);
+        given(redissonClient.getLock(anyString())).willReturn(flushLock);
+        given(flushLock.tryLock(anyLong(), any())).willReturn(false);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> balanceLedgerService.use(1L, "1000000000", 1000L));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, exception.getErrorCode());
+        verify(accountRepository, times(0)).findByAccountNumber(anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    @DisplayName("해지된 계좌는 ledger 에 올리지 않는다")
+    void use_unregisteredAccount() throws InterruptedException {
+        //given
+        AccountUser user = AccountUser.builder().name("Pobi").build();
+        user.setId(1L);
+        RLock flushLock = mock(RLock.class);
+        RList<String> queue = mock(RList.class);
+        given(redissonClient.getLock(anyString())).willReturn(flushLock);
+        given(flushLock.tryLock(anyLong(), any())).willReturn(true);
+        given(redissonClient.<String>getList(anyString(), any(Codec.class))).willReturn(queue);
+        given(queue.range(anyInt(), anyInt())).willReturn(List.of());
+        given(redissonClient.getScript(any())).willReturn(rScript);
+        given(redissonClient.getMap(anyString(), any(Codec.class))).willReturn(rMap);
+        given(rScript.scriptLoad(anyString())).willReturn("sha");
+        given(rScript.evalSha(any(), anyString(), any(), anyList(), any()))
+                .willReturn(-1L);
+        given(accountUserCache.existsById(anyLong())).willReturn(true);
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(Account.builder()
+                        .accountUser(user)
+                        .accountStatus(UNREGISTERED)
+                        .balance(0L)
+                        .accountNumber("1000000000").build()));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> balanceLedgerService.use(1L, "1000000000", 1000L));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED, exception.getErrorCode());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    @DisplayName("write-behind 는 요청 트랜잭션과 따로 commit 한 뒤 큐에서 지운다")
+    void flushInNewTransaction() throws InterruptedException {
+        //given
+        RLock flushLock = mock(RLock.class);
+        RList<String> queue = mock(RList.class);
+        String record = BalanceLedgerService.LedgerEntry.builder()
+                .transactionId("t1")
+                .transactionType(USE)
+                .transactionResultType(S)
+                .accountNumber("1000000000")
+                .amount(1000L)
+                .transactedAt(LocalDateTime.now())
+                .build().format() + "|9000";
+        given(redissonClient.getLock(anyString())).willReturn(flushLock);
+        given(flushLock.tryLock(anyLong(), any())).willReturn(true);
+        given(redissonClient.<String>getList(anyString(), any(Codec.class))).willReturn(queue);
+        given(queue.range(anyInt(), anyInt()))
+                .willReturn(List.of(record))
+                .willReturn(List.of());
+        given(accountRepository.findByAccountNumber("1000000000"))
+                .willReturn(Optional.of(Account.builder()
+                        .accountStatus(IN_USE)
+                        .balance(10000L)
+                        .accountNumber("1000000000").build()));
+        InOrder inOrder = inOrder(transactionManager, queue);
+
+        //when
+        balanceLedgerService.flush();
+
+        //then
+        inOrder.verify(transactionManager).getTransaction(argThat(definition ->
+                definition.getPropagationBehavior()
+                        == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(queue).trim(1, -1);
+    }
+}
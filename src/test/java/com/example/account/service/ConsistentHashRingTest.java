@@ -0,0 +1,60 @@
+package com.example.account.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+    private static final String NODE_A = "http://localhost:8080";
+    private static final String NODE_B = "http://localhost:8081";
+    private static final String NODE_C = "http://localhost:8082";
+
+    @Test
+    @DisplayName("노드 목록 순서와 관계없이 같은 계좌는 같은 노드")
+    void sameOwnerRegardlessOfOrder() {
+        //given
+        ConsistentHashRing ring = new ConsistentHashRing(List.of(NODE_A, NODE_B, NODE_C), 64);
+        ConsistentHashRing reordered = new ConsistentHashRing(List.of(NODE_C, NODE_A, NODE_B), 64);
+
+        //when
+        //then
+        for (int i = 0; i < 1000; i++) {
+            String accountNumber = String.valueOf(1000000000L + i);
+            assertEquals(ring.getOwner(accountNumber), reordered.getOwner(accountNumber));
+        }
+    }
+
+    @Test
+    @DisplayName("노드가 빠지면 그 노드가 맡던 계좌만 담당이 바뀐다")
+    void onlyRemovedNodeAccountsMove() {
+        //given
+        ConsistentHashRing ring = new ConsistentHashRing(List.of(NODE_A, NODE_B, NODE_C), 64);
+        ConsistentHashRing withoutC = new ConsistentHashRing(List.of(NODE_A, NODE_B), 64);
+        Map<String, Integer> counts = new HashMap<>();
+
+        //when
+        for (int i = 0; i < 3000; i++) {
+            String accountNumber = String.valueOf(1000000000L + i);
+            String owner = ring.getOwner(accountNumber);
+            counts.merge(owner, 1, Integer::sum);
+            if (!NODE_C.equals(owner)) {
+                //then
+                assertEquals(owner, withoutC.getOwner(accountNumber));
+            }
+        }
+        // 가상 노드로 한 노드에 몰리지 않는다
+        counts.values().forEach(count -> assertTrue(count > 500, counts.toString()));
+    }
+
+    @Test
+    void emptyRing() {
+        assertNull(ConsistentHashRing.EMPTY.getOwner("1000000000"));
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.account.service;
+
+import com.example.account.controller.TransactionController;
+import com.example.account.dto.UseBalance;
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.account.type.TransactionResultType.S;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyAspectTest {
+    private static final Object[] ARGS = {new UseBalance.Request(1L, "1000000000", 1000L)};
+
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private RBucket<Object> bucket;
+
+    @Mock
+    private ProceedingJoinPoint proceedingJoinPoint;
+
+    @Mock
+    private MethodSignature methodSignature;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private MeterRegistry meterRegistry;
+    private IdempotencyAspect idempotencyAspect;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        idempotencyAspect = new IdempotencyAspect(redissonClient, objectMapper, meterRegistry,
+                86400, 30, 5000, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    @DisplayName("Idempotency-Key 가 없으면 redis 를 거치지 않는다")
+    void withoutKey() throws Throwable {
+        //given
+        given(proceedingJoinPoint.proceed()).willReturn(response());
+
+        //when
+        idempotencyAspect.aroundMethod(proceedingJoinPoint, null);
+
+        //then
+        verifyNoInteractions(redissonClient);
+    }
+
+    @Test
+    @DisplayName("첫 요청은 실행하고 결과를 저장")
+    void storeFirstResult() throws Throwable {
+        //given
+        givenKey();
+        given(bucket.trySet(anyString(), anyLong(), any())).willReturn(true);
+        given(proceedingJoinPoint.proceed()).willReturn(response());
+
+        //when
+        idempotencyAspect.aroundMethod(proceedingJoinPoint, null);
+
+        //then
+        verify(redissonClient).getBucket(
+                eq("IDEM:TransactionController.useBalance:key-1"), any());
+        verify(bucket).set(startsWith("R|" + idempotencyAspect.fingerprint(ARGS) + "|"),
+                eq(86400000L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("재요청은 실행하지 않고 저장된 결과를 돌려준다")
+    void replayStoredResult() throws Throwable {
+        //given
+        givenKey();
+        given(methodSignature.getReturnType()).willReturn(UseBalance.Response.class);
+        given(bucket.trySet(anyString(), anyLong(), any())).willReturn(false);
+        given(bucket.get()).willReturn(stored("R", objectMapper.writeValueAsString(response())));
+
+        //when
+        UseBalance.Response replayed = (UseBalance.Response)
+                idempotencyAspect.aroundMethod(proceedingJoinPoint, null);
+
+        //then
+        verify(proceedingJoinPoint, never()).proceed();
+        assertEquals("transactionId", replayed.getTransactionId());
+        assertEquals(S, replayed.getTransactionResult());
+        assertEquals(1.0, meterRegistry.get("account.idempotency.replays").counter().count());
+    }
+
+    @Test
+    @DisplayName("재요청은 처음과 같은 오류를 돌려준다")
+    void replayStoredError() throws Throwable {
+        //given
+        givenKey();
+        given(bucket.trySet(anyString(), anyLong(), any())).willReturn(false);
+        given(bucket.get()).willReturn(stored("E", "AMOUNT_EXCEED_BALANCE"));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> idempotencyAspect.aroundMethod(proceedingJoinPoint, null));
+
+        //then
+        verify(proceedingJoinPoint, never()).proceed();
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, exception.getErrorCode());
+    }
+
+    @Test
+    @DisplayName("처리중인 요청은 첫 요청의 결과를 기다린다")
+    void waitForInFlightRequest() throws Throwable {
+        //given
+        givenKey();
+        given(methodSignature.getReturnType()).willReturn(UseBalance.Response.class);
+        given(bucket.trySet(anyString(), anyLong(), any())).willReturn(false);
+        given(bucket.get()).willReturn(stored("P", ""), stored("P", ""),
+                stored("R", objectMapper.writeValueAsString(response())));
+
+        //when
+        UseBalance.Response replayed = (UseBalance.Response)
+                idempotencyAspect.aroundMethod(proceedingJoinPoint, null);
+
+        //then
+        verify(proceedingJoinPoint, never()).proceed();
+        assertEquals("transactionId", replayed.getTransactionId());
+    }
+
+    @Test
+    @DisplayName("같은 키로 다른 요청을 보내면 실패")
+    void keyReusedWithDifferentRequest() throws Throwable {
+        //given
+        givenKey();
+        given(bucket.trySet(anyString(), anyLong(), any())).willReturn(false);
+        given(bucket.get()).willReturn(IdempotencyAspect.format("R", "other", "{}"));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> idempotencyAspect.aroundMethod(proceedingJoinPoint, null));
+
+        //then
+        assertEquals(ErrorCode.IDEMPOTENCY_KEY_REUSED, exception.getErrorCode());
+    }
+
+    @Test
+    @DisplayName("lock 대기 초과는 저장하지 않고 키를 풀어서 재시도 가능")
+    void releaseKeyOnRetryableFailure() throws Throwable {
+        //given
+        givenKey();
+        given(bucket.trySet(anyString(), anyLong(), any())).willReturn(true);
+        given(proceedingJoinPoint.proceed())
+                .willThrow(new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK));
+
+        //when
+        assertThrows(AccountException.class,
+                () -> idempotencyAspect.aroundMethod(proceedingJoinPoint, null));
+
+        //then
+        verify(bucket).delete();
+        verify(bucket, never()).set(any(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("반영 여부를 알 수 없는 오류는 키를 처리중으로 두고 TTL 로 풀리게 한다")
+    void keepKeyPendingOnUnknownFailure() throws Throwable {
+        //given
+        givenKey();
+        given(bucket.trySet(anyString(), anyLong(), any())).willReturn(true);
+        given(proceedingJoinPoint.proceed())
+                .willThrow(new AccountException(ErrorCode.INTERNAL_SERVER_ERROR))
+                .willThrow(new IllegalStateException("commit failed"));
+
+        //when
+        assertThrows(AccountException.class,
+                () -> idempotencyAspect.aroundMethod(proceedingJoinPoint, null));
+        assertThrows(IllegalStateException.class,
+                () -> idempotencyAspect.aroundMethod(proceedingJoinPoint, null));
+
+        //then
+        verify(bucket, never()).delete();
+        verify(bucket, never()).set(any(), anyLong(), any());
+    }
+
+    private void givenKey() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(IdempotencyAspect.HEADER, "key-1");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        given(redissonClient.getBucket(anyString(), any())).willReturn(bucket);
+        given(proceedingJoinPoint.getSignature()).willReturn(methodSignature);
+        given(methodSignature.getDeclaringType()).willReturn(TransactionController.class);
+        given(methodSignature.getName()).willReturn("useBalance");
+        given(proceedingJoinPoint.getArgs()).willReturn(ARGS);
+    }
+
+    private String stored(String state, String payload) throws Exception {
+        return IdempotencyAspect.format(state, idempotencyAspect.fingerprint(ARGS), payload);
+    }
+
+    private static UseBalance.Response response() {
+        return UseBalance.Response.builder()
+                .accountNumber("1000000000")
+                .transactionResult(S)
+                .transactionId("transactionId")
+                .amount(1000L)
+                .transactedAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,337 @@
+package com.example.account.service;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import com.example.account.domain.Transaction;
+import com.example.account.dto.TransactionDto;
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.ErrorCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.example.account.type.AccountStatus.IN_USE;
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.CANCEL;
+import static com.example.account.type.TransactionType.USE;
+import static com.example.account.type.TransactionType.USE_CANCELED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class JournaledBalanceEngineTest {
+    private static final String ACCOUNT_NUMBER = "1000000000";
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private AccountUserCache accountUserCache;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path journalDir;
+
+    private final List<JournaledBalanceEngine> engines = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        engines.forEach(engine -> engine.close());
+    }
+
+    @Test
+    @DisplayName("차감은 메모리 잔액에서 하고 처리 후 잔액을 돌려준다")
+    void use() {
+        //given
+        JournaledBalanceEngine engine = startEngine();
+        engine.putIfAbsent(ACCOUNT_NUMBER, 1L, 10000L);
+
+        //when
+        TransactionDto transactionDto = engine.use(1L, ACCOUNT_NUMBER, 1000L);
+
+        //then
+        assertEquals(USE, transactionDto.getTransactionType());
+        assertEquals(S, transactionDto.getTransactionResultType());
+        assertEquals(9000L, transactionDto.getBalanceSnapshot());
+        assertEquals(Optional.of(9000L), engine.getBalance(ACCOUNT_NUMBER));
+    }
+
+    @Test
+    @DisplayName("잔액이 부족하면 기록하지 않고 실패")
+    void useExceedBalance() {
+        //given
+        JournaledBalanceEngine engine = startEngine();
+        engine.putIfAbsent(ACCOUNT_NUMBER, 1L, 100L);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> engine.use(1L, ACCOUNT_NUMBER, 1000L));
+
+        //then
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, exception.getErrorCode());
+        assertEquals(Optional.of(100L), engine.getBalance(ACCOUNT_NUMBER));
+    }
+
+    @Test
+    @DisplayName("비정상 종료 후 다시 열면 journal 을 재생해서 잔액 복구")
+    void replayJournalAfterCrash() {
+        //given
+        JournaledBalanceEngine engine = startEngine();
+        engine.putIfAbsent(ACCOUNT_NUMBER, 1L, 10000L);
+        engine.use(1L, ACCOUNT_NUMBER, 1000L);
+        engine.use(1L, ACCOUNT_NUMBER, 2000L);
+        engine.cancel(ACCOUNT_NUMBER, 1000L);
+
+        //when
+        JournaledBalanceEngine restarted = newEngine();
+        restarted.open();
+
+        //then
+        assertEquals(Optional.of(8000L), restarted.getBalance(ACCOUNT_NUMBER));
+    }
+
+    @Test
+    @DisplayName("정상 종료하면 스냅샷으로 다시 시작")
+    void restartFromSnapshot() {
+        //given
+        JournaledBalanceEngine engine = startEngine();
+        engine.putIfAbsent(ACCOUNT_NUMBER, 1L, 10000L);
+        engine.putIfAbsent("1000000001", 2L, 500L);
+        engine.use(1L, ACCOUNT_NUMBER, 1000L);
+        engine.snapshot();
+        engine.use(1L, ACCOUNT_NUMBER, 1000L);
+
+        //when
+        JournaledBalanceEngine restarted = newEngine();
+        restarted.open();
+
+        //then
+        assertEquals(Optional.of(8000L), restarted.getBalance(ACCOUNT_NUMBER));
+        assertEquals(Optional.of(500L), restarted.getBalance("1000000001"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    @DisplayName("journal 을 따라가며 거래와 잔액을 DB 에 반영")
+    void flushWritesBehind() {
+        //given
+        JournaledBalanceEngine engine = startEngine();
+        engine.putIfAbsent(ACCOUNT_NUMBER, 1L, 10000L);
+        TransactionDto used = engine.use(1L, ACCOUNT_NUMBER, 1000L);
+        TransactionDto canceled = engine.cancel(ACCOUNT_NUMBER, 1000L);
+        Account account = Account.builder()
+                .accountUser(AccountUser.builder().id(1L).build())
+                .accountStatus(IN_USE)
+                .balance(10000L)
+                .accountNumber(ACCOUNT_NUMBER).build();
+        given(accountRepository.findByAccountNumber(ACCOUNT_NUMBER))
+                .willReturn(Optional.of(account));
+        given(transactionRepository.findTransactionIdsIn(anyList()))
+                .willReturn(List.of(used.getTransactionId()));
+        ArgumentCaptor<List<Transaction>> captor = ArgumentCaptor.forClass(List.class);
+
+        //when
+        engine.flush();
+
+        //then
+        verify(transactionRepository).saveAll(captor.capture());
+        // 이미 반영된 거래는 다시 넣지 않는다
+        assertEquals(1, captor.getValue().size());
+        assertEquals(canceled.getTransactionId(), captor.getValue().get(0).getTransactionId());
+        assertEquals(CANCEL, captor.getValue().get(0).getTransactionType());
+        assertEquals(10000L, account.getBalance());
+    }
+
+    @Test
+    @DisplayName("DB 반영은 요청 트랜잭션과 따로 commit 하고 나서 반영한 seq 를 남긴다")
+    void flushInNewTransaction() {
+        //given
+        JournaledBalanceEngine engine = startEngine();
+        engine.putIfAbsent(ACCOUNT_NUMBER, 1L, 10000L);
+        engine.use(1L, ACCOUNT_NUMBER, 1000L);
+        given(accountRepository.findByAccountNumber(ACCOUNT_NUMBER))
+                .willReturn(Optional.of(Account.builder()
+                        .accountUser(AccountUser.builder().id(1L).build())
+                        .accountStatus(IN_USE)
+                        .balance(10000L)
+                        .accountNumber(ACCOUNT_NUMBER).build()));
+        InOrder inOrder = inOrder(transactionManager);
+
+        //when
+        engine.flush();
+        engine.flush();
+
+        //then
+        inOrder.verify(transactionManager).getTransaction(argThat(definition ->
+                definition.getPropagationBehavior()
+                        == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        inOrder.verify(transactionManager).commit(any());
+        // 두 번째 flush 는 반영할 기록이 없다
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    @Test
+    @DisplayName("설정한 계좌만 엔진에서 처리")
+    void isEngineAccount() {
+        //given
+        JournaledBalanceEngine engine = newEngine();
+
+        //when
+        //then
+        assertTrue(engine.isEngineAccount(ACCOUNT_NUMBER));
+        assertFalse(engine.isEngineAccount("1000000002"));
+    }
+
+    @Test
+    @DisplayName("설정에서 빠진 계좌는 다시 시작할 때 메모리에서 내린다")
+    void dropUnconfiguredAccountOnRestart() {
+        //given
+        JournaledBalanceEngine engine = startEngine();
+        engine.putIfAbsent(ACCOUNT_NUMBER, 1L, 10000L);
+        engine.putIfAbsent("1000000002", 2L, 500L);
+        engine.use(2L, "1000000002", 100L);
+        engine.snapshot();
+
+        //when
+        JournaledBalanceEngine restarted = newEngine();
+        restarted.open();
+
+        //then
+        assertEquals(Optional.of(10000L), restarted.getBalance(ACCOUNT_NUMBER));
+        assertEquals(Optional.empty(), restarted.getBalance("1000000002"));
+    }
+
+    @Test
+    @DisplayName("취소는 커밋된 뒤에 잔액을 올리고, 롤백되면 그대로 둔다")
+    void cancelAfterCommit() {
+        //given
+        JournaledBalanceEngine engine = startEngine();
+        engine.putIfAbsent(ACCOUNT_NUMBER, 1L, 9000L);
+        TransactionDto committed;
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            committed = engine.cancelAfterCommit("canceledId", ACCOUNT_NUMBER, 1000L);
+            assertEquals(Optional.of(9000L), engine.getBalance(ACCOUNT_NUMBER));
+
+            //when
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            engine.cancelAfterCommit("canceledId", ACCOUNT_NUMBER, 1000L);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(
+                            TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        //then
+        assertEquals(10000L, committed.getBalanceSnapshot());
+        assertEquals(Optional.of(10000L), engine.getBalance(ACCOUNT_NUMBER));
+    }
+
+    @Test
+    @DisplayName("커밋 뒤에 엔진에 반영하지 못하면 취소 표시를 되돌린다")
+    void revertCanceledWhenEngineFails() {
+        //given
+        JournaledBalanceEngine engine = startEngine();
+        engine.putIfAbsent(ACCOUNT_NUMBER, 1L, 9000L);
+        Transaction canceled = Transaction.builder()
+                .transactionType(USE_CANCELED)
+                .transactionId("canceledId")
+                .build();
+        given(transactionRepository.findByTransactionId("canceledId"))
+                .willReturn(Optional.of(canceled));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            engine.cancelAfterCommit("canceledId", ACCOUNT_NUMBER, 1000L);
+            // 커밋 전에 계좌가 엔진에서 내려가고 DB 에서도 찾을 수 없는 경우
+            engine.evict(ACCOUNT_NUMBER);
+            TransactionSynchronizationManager.getSynchronizations().get(1).afterCommit();
+
+            //when
+            assertThrows(AccountException.class, () -> TransactionSynchronizationManager
+                    .getSynchronizations().get(0).afterCommit());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        //then
+        assertEquals(USE, canceled.getTransactionType());
+    }
+
+    @Test
+    @DisplayName("해지로 계좌를 내리는 것은 커밋된 뒤에 한다")
+    void evictAfterCommit() {
+        //given
+        JournaledBalanceEngine engine = startEngine();
+        engine.putIfAbsent(ACCOUNT_NUMBER, 1L, 0L);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            engine.evict(ACCOUNT_NUMBER);
+            assertEquals(Optional.of(0L), engine.getBalance(ACCOUNT_NUMBER));
+
+            //when
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        //then
+        assertEquals(Optional.empty(), engine.getBalance(ACCOUNT_NUMBER));
+    }
+
+    private JournaledBalanceEngine startEngine() {
+        JournaledBalanceEngine engine = newEngine();
+        engine.open();
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.empty());
+        engine.recover();
+        return engine;
+    }
+
+    private JournaledBalanceEngine newEngine() {
+        JournaledBalanceEngine engine = new JournaledBalanceEngine(transactionRepository,
+                accountRepository, accountUserCache, transactionManager,
+                new TimeOrderedTransactionIdGenerator(1), new SimpleMeterRegistry(),
+                true, Set.of(ACCOUNT_NUMBER, "1000000001"), journalDir.toString(),
+                1, true, 100, 16, 500);
+        engines.add(engine);
+        return engine;
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.account.service;
+
+import com.example.account.domain.Account;
+import com.example.account.dto.ReconciliationReport;
+import com.example.account.dto.TransactionHistoryView;
+import com.example.account.repository.AccountBalanceSlotRepository;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static com.example.account.type.TransactionResultType.F;
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.CANCEL;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerReconciliationServiceTest {
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private AccountBalanceSlotRepository accountBalanceSlotRepository;
+
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private RMap<String, String> checkpoints;
+
+    private LedgerReconciliationService ledgerReconciliationService;
+
+    @BeforeEach
+    void setUp() {
+        ledgerReconciliationService = new LedgerReconciliationService(accountRepository,
+                transactionRepository, accountBalanceSlotRepository, redissonClient,
+                transactionManager, new SimpleMeterRegistry(), 2, 10000);
+        given(redissonClient.<String, String>getMap(eq("RECONCILE"), any(Codec.class)))
+                .willReturn(checkpoints);
+        given(accountRepository.findMaxId()).willReturn(Optional.of(1L));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ledgerReconciliationService.shutdown();
+    }
+
+    @Test
+    @DisplayName("앞 거래 잔액에서 금액만큼 바뀌지 않은 거래를 보고")
+    void reportChainMismatch() {
+        //given
+        Account account = account(950L);
+        givenAccounts(-1L, account);
+        given(transactionRepository.streamHistory(1L)).willReturn(Stream.of(
+                view("t1", USE, S, 100L, 900L),
+                view("t2", CANCEL, S, 100L, 1000L),
+                view("t3", USE, F, 50L, 1000L),
+                view("t4", USE, S, 100L, 950L)));
+
+        //when
+        ReconciliationReport report = startAndWait(false);
+
+        //then
+        assertFalse(report.isFailed());
+        assertEquals(1, report.getAccountsChecked());
+        assertEquals(4, report.getTransactionsChecked());
+        assertEquals(1, report.getMismatchCount());
+        assertEquals("t4", report.getMismatches().get(0).getTransactionId());
+        assertEquals(900L, report.getMismatches().get(0).getExpectedBalance());
+        assertEquals(950L, report.getMismatches().get(0).getActualBalance());
+        verify(checkpoints).fastPut("0", "1");
+    }
+
+    @Test
+    @DisplayName("마지막 거래 잔액과 계좌 잔액이 다르면 보고")
+    void reportAccountBalanceMismatch() {
+        //given
+        Account account = account(800L);
+        givenAccounts(-1L, account);
+        given(transactionRepository.streamHistory(1L)).willReturn(Stream.of(
+                view("t1", USE, S, 100L, 900L)));
+
+        //when
+        ReconciliationReport report = startAndWait(false);
+
+        //then
+        assertEquals(1, report.getMismatchCount());
+        assertNull(report.getMismatches().get(0).getTransactionId());
+        assertEquals(900L, report.getMismatches().get(0).getExpectedBalance());
+        assertEquals(800L, report.getMismatches().get(0).getActualBalance());
+    }
+
+    @Test
+    @DisplayName("checkpoint 가 있으면 그 다음 계좌부터 이어서 확인")
+    void resumeFromCheckpoint() {
+        //given
+        given(checkpoints.get("range-size")).willReturn("10000");
+        given(checkpoints.get("0")).willReturn("5");
+        given(accountRepository.findByIdGreaterThanAndIdLessThanOrderById(
+                eq(5L), eq(10000L), any())).willReturn(List.of());
+
+        //when
+        ReconciliationReport report = startAndWait(true);
+
+        //then
+        assertEquals(1, report.getRangesDone());
+        assertEquals(0, report.getAccountsChecked());
+        verify(checkpoints, never()).fastPut("range-size", "10000");
+        verify(checkpoints).fastPut("0", "9999");
+        // 끝까지 확인하면 다음 실행은 처음부터
+        verify(checkpoints).delete();
+    }
+
+    private void givenAccounts(long afterId, Account account) {
+        given(accountRepository.findByIdGreaterThanAndIdLessThanOrderById(
+                eq(afterId), eq(10000L), any())).willReturn(List.of(account));
+        given(accountRepository.findByIdGreaterThanAndIdLessThanOrderById(
+                eq(account.getId()), eq(10000L), any())).willReturn(List.of());
+    }
+
+    private ReconciliationReport startAndWait(boolean resume) {
+        assertTrue(ledgerReconciliationService.start(resume));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (ledgerReconciliationService.getReport().isRunning()) {
+            assertTrue(System.currentTimeMillis() < deadline, "reconciliation not finished");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return ledgerReconciliationService.getReport();
+    }
+
+    private static Account account(Long balance) {
+        return Account.builder()
+                .id(1L)
+                .accountNumber("1000000000")
+                .balance(balance)
+                .build();
+    }
+
+    private static TransactionHistoryView view(String transactionId, TransactionType type,
+                                               TransactionResultType resultType,
+                                               Long amount, Long balanceSnapshot) {
+        return new TransactionHistoryView() {
+            @Override
+            public Long getId() {
+                return null;
+            }
+
+            @Override
+            public TransactionType getTransactionType() {
+                return type;
+            }
+
+            @Override
+            public TransactionResultType getTransactionResultType() {
+                return resultType;
+            }
+
+            @Override
+            public Long getAmount() {
+                return amount;
+            }
+
+            @Override
+            public Long getBalanceSnapshot() {
+                return balanceSnapshot;
+            }
+
+            @Override
+            public String getTransactionId() {
+                return transactionId;
+            }
+
+            @Override
+            public LocalDateTime getTransactedAt() {
+                return LocalDateTime.now();
+            }
+        };
+    }
+}
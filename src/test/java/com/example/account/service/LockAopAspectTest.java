@@ -1,18 +1,32 @@
 package com.example.account.service;
 
+import com.example.account.aop.AccountLock;
 import com.example.account.dto.UseBalance;
+import com.example.account.dto.UseBalanceBatch;
 import com.example.account.exception.AccountException;
 import com.example.account.type.ErrorCode;
 import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static com.example.account.type.LockMode.OPTIMISTIC;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -21,6 +35,15 @@ class LockAopAspectTest {
     @Mock
     private LockService lockService;
 
+    @Mock
+    private LockMetrics lockMetrics;
+
+    @Mock
+    private ShardedBalanceService shardedBalanceService;
+
+    @Mock
+    private LockCombiner lockCombiner;
+
     @Mock
     private ProceedingJoinPoint proceedingJoinPoint;
 
@@ -37,12 +60,32 @@ class LockAopAspectTest {
         UseBalance.Request request =
                 new UseBalance.Request(123L, "1234", 1000L);
         //when
-        lockAopAspect.aroundMethod(proceedingJoinPoint, request);
+        lockAopAspect.aroundMethod(proceedingJoinPoint, accountLock("redisLocked"), request);
         //then
         verify(lockService, times(1)).lock(lockArgumentCaptor.capture());
         verify(lockService, times(1)).unlock(unlockArgumentCaptor.capture());
         assertEquals("1234", lockArgumentCaptor.getValue());
         assertEquals("1234", unlockArgumentCaptor.getValue());
+        verify(lockMetrics).recordWait(isNull(), eq(List.of("1234")), anyLong(), eq(true));
+        verify(lockMetrics).recordHold(isNull(), anyLong());
+    }
+
+    @Test
+    void recordLockFailure() throws Throwable {
+        //given
+        UseBalance.Request request =
+                new UseBalance.Request(123L, "1234", 1000L);
+        willThrow(new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK))
+                .given(lockService).lock("1234");
+
+        //when
+        assertThrows(AccountException.class,
+                () -> lockAopAspect.aroundMethod(proceedingJoinPoint, accountLock("redisLocked"), request));
+
+        //then
+        verify(lockMetrics).recordWait(isNull(), eq(List.of("1234")), anyLong(), eq(false));
+        verify(lockMetrics, never()).recordHold(any(), anyLong());
+        verify(proceedingJoinPoint, never()).proceed();
     }
 
     @Test
@@ -59,11 +102,185 @@ class LockAopAspectTest {
 
         //when
         assertThrows(AccountException.class,
-                () -> lockAopAspect.aroundMethod(proceedingJoinPoint, request));
+                () -> lockAopAspect.aroundMethod(proceedingJoinPoint, accountLock("redisLocked"), request));
         //then
         verify(lockService, times(1)).lock(lockArgumentCaptor.capture());
         verify(lockService, times(1)).unlock(unlockArgumentCaptor.capture());
         assertEquals("4321", lockArgumentCaptor.getValue());
         assertEquals("4321", unlockArgumentCaptor.getValue());
     }
+
+    @Test
+    void skipAccountLockForShardedAccount() throws Throwable {
+        //given
+        UseBalance.Request request =
+                new UseBalance.Request(123L, "1234", 1000L);
+        given(shardedBalanceService.isShardedAccount("1234")).willReturn(true);
+        given(proceedingJoinPoint.proceed()).willReturn("result");
+
+        //when
+        Object result = lockAopAspect.aroundMethod(proceedingJoinPoint,
+                accountLock("shardedBalanceLocked"), request);
+
+        //then
+        assertEquals("result", result);
+        verify(lockService, never()).lock(anyString());
+        verify(lockService, never()).unlock(anyString());
+    }
+
+    @Test
+    void combineWaitingRequests() throws Throwable {
+        //given
+        UseBalance.Request request =
+                new UseBalance.Request(123L, "1234", 1000L);
+        given(lockCombiner.isEnabled()).willReturn(true);
+        given(lockCombiner.execute(isNull(), eq("1234"), eq(proceedingJoinPoint)))
+                .willReturn("result");
+
+        //when
+        Object result = lockAopAspect.aroundMethod(proceedingJoinPoint,
+                accountLock("combiningLocked"), request);
+
+        //then
+        assertEquals("result", result);
+        verify(lockService, never()).lock(anyString());
+        verify(proceedingJoinPoint, never()).proceed();
+    }
+
+    @Test
+    void optimisticRetryOnConflict() throws Throwable {
+        //given
+        ReflectionTestUtils.setField(lockAopAspect, "optimisticMaxAttempts", 3);
+        UseBalance.Request request =
+                new UseBalance.Request(123L, "1234", 1000L);
+        given(proceedingJoinPoint.proceed())
+                .willThrow(new ObjectOptimisticLockingFailureException("Account", 1L))
+                .willReturn("result");
+
+        //when
+        Object result = lockAopAspect.aroundMethod(proceedingJoinPoint,
+                accountLock("optimisticLocked"), request);
+
+        //then
+        assertEquals("result", result);
+        verify(proceedingJoinPoint, times(2)).proceed();
+        verify(lockService, never()).lock(anyString());
+        verify(lockService, never()).unlock(anyString());
+    }
+
+    @Test
+    void optimisticRetryExhausted() throws Throwable {
+        //given
+        ReflectionTestUtils.setField(lockAopAspect, "optimisticMaxAttempts", 2);
+        UseBalance.Request request =
+                new UseBalance.Request(123L, "1234", 1000L);
+        given(proceedingJoinPoint.proceed())
+                .willThrow(new ObjectOptimisticLockingFailureException("Account", 1L));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> lockAopAspect.aroundMethod(proceedingJoinPoint,
+                        accountLock("optimisticLocked"), request));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, exception.getErrorCode());
+        verify(proceedingJoinPoint, times(2)).proceed();
+        verify(lockService, never()).lock(anyString());
+    }
+
+    @Test
+    void lockAllAndUnlockAll() throws Throwable {
+        //given
+        UseBalanceBatch.Request request = new UseBalanceBatch.Request(List.of(
+                new UseBalance.Request(123L, "2222222222", 1000L),
+                new UseBalance.Request(123L, "1111111111", 1000L)));
+        given(proceedingJoinPoint.proceed())
+                .willThrow(new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+
+        //when
+        assertThrows(AccountException.class,
+                () -> lockAopAspect.aroundBatchMethod(proceedingJoinPoint,
+                        accountLock("redisLocked"), request));
+
+        //then
+        verify(lockService, times(1)).lockAll(List.of("2222222222", "1111111111"));
+        verify(lockService, times(1)).unlockAll(List.of("2222222222", "1111111111"));
+    }
+
+    @Test
+    void asyncLockReleasedWhenFutureCompletes() throws Throwable {
+        //given
+        LockAopAspect asyncAspect = new LockAopAspect(lockService, lockMetrics, Runnable::run);
+        UseBalance.Request request =
+                new UseBalance.Request(123L, "1234", 1000L);
+        CompletableFuture<Object> methodResult = new CompletableFuture<>();
+        givenReturnType(CompletableFuture.class);
+        given(lockService.lockAsync("1234"))
+                .willReturn(CompletableFuture.completedFuture(-1L));
+        given(lockService.unlockAsync("1234", -1L))
+                .willReturn(CompletableFuture.completedFuture(null));
+        given(proceedingJoinPoint.proceed())
+                .willReturn(methodResult);
+
+        //when
+        CompletableFuture<?> result = (CompletableFuture<?>) asyncAspect.aroundMethod(
+                proceedingJoinPoint, accountLock("redisLocked"), request);
+
+        //then
+        verify(lockService, never()).unlockAsync(anyString(), anyLong());
+        methodResult.complete("result");
+        assertEquals("result", result.join());
+        verify(lockService, times(1)).unlockAsync("1234", -1L);
+        verify(lockService, never()).lock(anyString());
+    }
+
+    @Test
+    void asyncLockFailed() throws Throwable {
+        //given
+        LockAopAspect asyncAspect = new LockAopAspect(lockService, lockMetrics, Runnable::run);
+        UseBalance.Request request =
+                new UseBalance.Request(123L, "1234", 1000L);
+        givenReturnType(CompletableFuture.class);
+        given(lockService.lockAsync("1234"))
+                .willReturn(CompletableFuture.failedFuture(
+                        new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK)));
+
+        //when
+        CompletableFuture<?> result = (CompletableFuture<?>) asyncAspect.aroundMethod(
+                proceedingJoinPoint, accountLock("redisLocked"), request);
+
+        //then
+        CompletionException exception = assertThrows(CompletionException.class, result::join);
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK,
+                ((AccountException) exception.getCause()).getErrorCode());
+        verify(proceedingJoinPoint, never()).proceed();
+        verify(lockService, never()).unlockAsync(anyString(), anyLong());
+    }
+
+    private void givenReturnType(Class<?> returnType) {
+        MethodSignature signature = mock(MethodSignature.class);
+        given(signature.getReturnType()).willReturn(returnType);
+        given(proceedingJoinPoint.getSignature()).willReturn(signature);
+    }
+
+    @AccountLock
+    void redisLocked() {
+    }
+
+    @AccountLock(mode = OPTIMISTIC)
+    void optimisticLocked() {
+    }
+
+    @AccountLock(shardedBalance = true)
+    void shardedBalanceLocked() {
+    }
+
+    @AccountLock(combining = true)
+    void combiningLocked() {
+    }
+
+    private static AccountLock accountLock(String methodName) throws NoSuchMethodException {
+        return LockAopAspectTest.class.getDeclaredMethod(methodName)
+                .getAnnotation(AccountLock.class);
+    }
 }
\ No newline at end of file
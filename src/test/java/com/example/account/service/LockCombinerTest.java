@@ -0,0 +1,144 @@
+package com.example.account.service;
+
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class LockCombinerTest {
+    @Mock
+    private LockService lockService;
+
+    @Mock
+    private LockMetrics lockMetrics;
+
+    @Mock
+    private ProceedingJoinPoint first;
+
+    @Mock
+    private ProceedingJoinPoint second;
+
+    @Mock
+    private ProceedingJoinPoint third;
+
+    private MeterRegistry meterRegistry;
+
+    private LockCombiner lockCombiner;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        lockCombiner = new LockCombiner(lockService, lockMetrics, meterRegistry,
+                true, 64, 3000);
+    }
+
+    @Test
+    @DisplayName("대기 요청이 없으면 lock 한 번 잡고 그대로 실행")
+    void executeAlone() throws Throwable {
+        //given
+        given(first.proceed()).willReturn("first");
+
+        //when
+        Object result = lockCombiner.execute("method", "1234", first);
+
+        //then
+        assertEquals("first", result);
+        verify(lockService).lock("1234");
+        verify(lockService).unlock("1234");
+        verify(lockMetrics).recordWait(eq("method"), eq(List.of("1234")),
+                anyLong(), eq(true));
+        assertEquals(0, lockCombiner.getQueuedCount("1234"));
+    }
+
+    @Test
+    @DisplayName("lock 을 잡은 동안 쌓인 요청은 한 번의 lock 으로 처리하고 결과는 각자 받는다")
+    void combineQueuedRequests() throws Throwable {
+        //given
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        given(first.proceed()).willAnswer(invocation -> {
+            firstStarted.countDown();
+            releaseFirst.await();
+            return "first";
+        });
+        given(second.proceed()).willReturn("second");
+        given(third.proceed()).willThrow(new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE));
+
+        //when
+        CompletableFuture<Object> firstResult = submit(first);
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Object> secondResult = submit(second);
+        CompletableFuture<Object> thirdResult = submit(third);
+        while (lockCombiner.getQueuedCount("1234") < 2) {
+            Thread.onSpinWait();
+        }
+        releaseFirst.countDown();
+
+        //then
+        assertEquals("first", firstResult.get(5, TimeUnit.SECONDS));
+        assertEquals("second", secondResult.get(5, TimeUnit.SECONDS));
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> thirdResult.get(5, TimeUnit.SECONDS));
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE,
+                ((AccountException) exception.getCause()).getErrorCode());
+        // 첫 요청 한 번 + 쌓인 두 요청 묶음 한 번
+        verify(lockService, times(2)).lock("1234");
+        verify(lockService, times(2)).unlock("1234");
+        assertEquals(3.0, meterRegistry.get("account.lock.combining.batch-size")
+                .summary().totalAmount());
+    }
+
+    @Test
+    @DisplayName("lock 을 못 잡으면 묶인 요청 모두 실패하고 실행하지 않는다")
+    void lockFailed() throws Throwable {
+        //given
+        willThrow(new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK))
+                .given(lockService).lock("1234");
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> lockCombiner.execute("method", "1234", first));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, exception.getErrorCode());
+        verify(first, never()).proceed();
+        verify(lockService, never()).unlock(anyString());
+    }
+
+    private CompletableFuture<Object> submit(ProceedingJoinPoint pjp) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.complete(lockCombiner.execute("method", "1234", pjp));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        thread.start();
+        return result;
+    }
+}
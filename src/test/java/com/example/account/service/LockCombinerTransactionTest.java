@@ -0,0 +1,158 @@
+package com.example.account.service;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import com.example.account.domain.Transaction;
+import com.example.account.dto.UseBalance;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.AccountUserRepository;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.TransactionResultType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.account.type.AccountStatus.IN_USE;
+import static com.example.account.type.TransactionResultType.F;
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * 실제 트랜잭션 매니저와 DB 로 묶어서 처리한 사용 요청의 잔액과 실패 기록을 확인.
+ * 다른 테스트 context 와 겹치지 않도록 redis 포트와 DB 이름을 따로 쓴다.
+ */
+@SpringBootTest(properties = {
+        "account.lock.combining.enabled=true",
+        "spring.redis.port=6392",
+        "spring.datasource.url=jdbc:h2:mem:combining"})
+class LockCombinerTransactionTest {
+    private static final String ACCOUNT_NUMBER = "1999999994";
+    private static final long INITIAL_BALANCE = 1000L;
+    private static final long AMOUNT = 300L;
+    private static final int REQUESTS = 10;
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AccountUserRepository accountUserRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private LockService lockService;
+
+    @Autowired
+    private LockCombiner lockCombiner;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        AccountUser user = accountUserRepository.findById(1L).orElseThrow();
+        accountRepository.save(Account.builder()
+                .accountUser(user)
+                .accountStatus(IN_USE)
+                .balance(INITIAL_BALANCE)
+                .accountNumber(ACCOUNT_NUMBER)
+                .registeredAt(LocalDateTime.now()).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("묶어서 처리해도 요청마다 commit 되어 성공한 차감과 실패 기록이 모두 남는다")
+    void combinedRequestsCommitSeparately() throws Exception {
+        //given
+        ExecutorService executor = Executors.newFixedThreadPool(REQUESTS);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        //when
+        // lock 을 잡아둔 동안 첫 요청은 lock 을, 나머지는 대기열에서 기다린다
+        lockService.lock(ACCOUNT_NUMBER);
+        try {
+            for (int i = 0; i < REQUESTS; i++) {
+                results.add(executor.submit(this::use));
+            }
+            // lock 대기 시간(1초) 안에 놓아야 첫 요청이 실패하지 않는다
+            long deadline = System.currentTimeMillis() + 800L;
+            while (lockCombiner.getQueuedCount(ACCOUNT_NUMBER) < REQUESTS - 1
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+        } finally {
+            lockService.unlock(ACCOUNT_NUMBER);
+        }
+        executor.shutdown();
+
+        //then
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        long succeeded = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                succeeded++;
+            }
+        }
+        assertEquals(INITIAL_BALANCE / AMOUNT, succeeded);
+        assertEquals(INITIAL_BALANCE - succeeded * AMOUNT,
+                accountRepository.findByAccountNumber(ACCOUNT_NUMBER)
+                        .orElseThrow().getBalance());
+        assertEquals(succeeded, countUseTransactions(S));
+        // 잔액이 모자라 실패한 요청의 기록은 다른 요청과 함께 되돌려지지 않는다
+        assertEquals(REQUESTS - succeeded, countUseTransactions(F));
+        assertTrue(meterRegistry.get("account.lock.combining.batch-size")
+                .summary().max() > 1);
+    }
+
+    private boolean use() throws Exception {
+        String response = mockMvc.perform(post("/transaction/use")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new UseBalance.Request(1L, ACCOUNT_NUMBER, AMOUNT))))
+                .andReturn().getResponse().getContentAsString();
+        return "S".equals(objectMapper.readTree(response).path("transactionResult").asText());
+    }
+
+    private long countUseTransactions(TransactionResultType transactionResultType) {
+        List<Transaction> transactions = transactionRepository.findAll();
+        return transactions.stream()
+                .filter(transaction -> transaction.getTransactionType() == USE
+                        && transaction.getTransactionResultType() == transactionResultType)
+                .count();
+    }
+}
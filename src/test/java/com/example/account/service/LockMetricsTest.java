@@ -0,0 +1,67 @@
+package com.example.account.service;
+
+import com.example.account.dto.ContendedAccount;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LockMetricsTest {
+    private MeterRegistry meterRegistry;
+    private LockMetrics lockMetrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        lockMetrics = new LockMetrics(meterRegistry, 4);
+    }
+
+    @Test
+    @DisplayName("메서드, 결과별 대기/보유 시간 기록")
+    void recordTimers() {
+        //when
+        lockMetrics.recordWait("TransactionController.useBalance", List.of("1000000000"),
+                TimeUnit.MILLISECONDS.toNanos(5), true);
+        lockMetrics.recordWait("TransactionController.useBalance", List.of("1000000000"),
+                TimeUnit.MILLISECONDS.toNanos(1000), false);
+        lockMetrics.recordHold("TransactionController.useBalance",
+                TimeUnit.MILLISECONDS.toNanos(30));
+
+        //then
+        assertEquals(1, meterRegistry.get("account.lock.wait")
+                .tag("method", "TransactionController.useBalance")
+                .tag("outcome", "failed").timer().count());
+        assertEquals(30.0, meterRegistry.get("account.lock.hold")
+                .tag("method", "TransactionController.useBalance")
+                .timer().totalTime(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("최근 기록 기준 대기 시간 합이 큰 계좌 순서")
+    void topContendedAccounts() {
+        //given
+        lockMetrics.recordWait("m", List.of("1000000000"), TimeUnit.MILLISECONDS.toNanos(1), true);
+        // sample 크기(4)를 넘으면 오래된 기록부터 밀려난다
+        lockMetrics.recordWait("m", List.of("1000000001"), TimeUnit.MILLISECONDS.toNanos(10), true);
+        lockMetrics.recordWait("m", List.of("1000000001"), TimeUnit.MILLISECONDS.toNanos(20), false);
+        lockMetrics.recordWait("m", List.of("1000000002", "1000000003"),
+                TimeUnit.MILLISECONDS.toNanos(5), true);
+
+        //when
+        List<ContendedAccount> top = lockMetrics.getTopContendedAccounts(2);
+
+        //then
+        assertEquals(2, top.size());
+        assertEquals("1000000001", top.get(0).getAccountNumber());
+        assertEquals(1, top.get(0).getAcquisitions());
+        assertEquals(1, top.get(0).getFailures());
+        assertEquals(30.0, top.get(0).getTotalWaitMillis());
+        assertEquals(20.0, top.get(0).getMaxWaitMillis());
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.account.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+import redis.embedded.RedisServer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * redis client 를 따로 쓰는 노드 두 개가 embedded redis 하나에서 같은 계좌 lock 을 두고 경쟁.
+ * 다른 테스트 context 와 겹치지 않도록 redis 포트를 따로 쓴다.
+ */
+class LockServiceHandoffTest {
+    private static final int REDIS_PORT = 6391;
+    private static final String ACCOUNT_NUMBER = "1999999995";
+
+    private static RedisServer redisServer;
+    private static RedissonClient ownerClient;
+    private static RedissonClient otherClient;
+
+    @BeforeAll
+    static void startRedis() {
+        redisServer = new RedisServer(REDIS_PORT);
+        redisServer.start();
+        ownerClient = newClient();
+        otherClient = newClient();
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        if (otherClient != null) {
+            otherClient.shutdown();
+        }
+        if (ownerClient != null) {
+            ownerClient.shutdown();
+        }
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("담당 노드가 쉬지 않고 lock 을 쓰는 동안에도 다른 노드가 대기 시간 안에 lock 을 얻는다")
+    void otherNodeGetsLockFromBusyOwner() throws Exception {
+        //given
+        AccountOwnership ownerNode = mock(AccountOwnership.class);
+        given(ownerNode.isOwner(ACCOUNT_NUMBER)).willReturn(true);
+        LockService owner = new LockService(ownerClient, ownerNode,
+                new SimpleMeterRegistry(), 50, 100, 20);
+        LockService other = new LockService(otherClient, mock(AccountOwnership.class),
+                new SimpleMeterRegistry(), 50, 100, 20);
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> busyOwner = executor.submit(() -> {
+            while (running.get()) {
+                owner.lock(ACCOUNT_NUMBER);
+                owner.unlock(ACCOUNT_NUMBER);
+            }
+        });
+
+        try {
+            // 담당 노드가 lock 을 잡아둔 상태에서 시작
+            Thread.sleep(50);
+
+            //when
+            //then
+            for (int i = 0; i < 3; i++) {
+                assertDoesNotThrow(() -> {
+                    other.lock(ACCOUNT_NUMBER);
+                    other.unlock(ACCOUNT_NUMBER);
+                });
+            }
+        } finally {
+            running.set(false);
+            executor.shutdown();
+            busyOwner.get(5, TimeUnit.SECONDS);
+            owner.releaseAllOwnedLocks();
+        }
+    }
+
+    private static RedissonClient newClient() {
+        Config config = new Config();
+        config.useSingleServer().setAddress("redis://localhost:" + REDIS_PORT);
+        return Redisson.create(config);
+    }
+}
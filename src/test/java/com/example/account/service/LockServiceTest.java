@@ -2,17 +2,33 @@ package com.example.account.service;
 
 import com.example.account.exception.AccountException;
 import com.example.account.type.ErrorCode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RFuture;
 import org.redisson.api.RLock;
+import org.redisson.api.RTopic;
 import org.redisson.api.RedissonClient;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
 class LockServiceTest {
@@ -22,9 +38,23 @@ class LockServiceTest {
     @Mock
     private RLock rLock;
 
-    @InjectMocks
+    @Mock
+    private RTopic topic;
+
+    @Mock
+    private AccountOwnership accountOwnership;
+
+    private MeterRegistry meterRegistry;
+
     private LockService lockService;
 
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        lockService = new LockService(redissonClient, accountOwnership, meterRegistry,
+                50, 1000, 0);
+    }
+
     @Test
     void testName() throws InterruptedException {
         //given
@@ -50,5 +80,267 @@ class LockServiceTest {
                 () -> lockService.lock("123"));
         //then
         assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, exception.getErrorCode());
+        assertEquals(1.0, meterRegistry.counter("account.lock.failures").count());
+    }
+
+    @Test
+    @DisplayName("같은 노드의 경합은 redis 에 가지 않고 로컬에서 대기")
+    void localContentionDoesNotHitRedis() throws InterruptedException {
+        //given
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(rLock.tryLock(anyLong(), anyLong(), any()))
+                .willReturn(true);
+        lockService.lock("123");
+
+        //when
+        CompletableFuture<Void> other = CompletableFuture.runAsync(
+                () -> lockService.lock("123"));
+        AccountException exception = assertThrows(AccountException.class,
+                () -> {
+                    try {
+                        other.join();
+                    } catch (Exception e) {
+                        throw e.getCause();
+                    }
+                });
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, exception.getErrorCode());
+        verify(rLock, times(1)).tryLock(anyLong(), anyLong(), any());
+        assertEquals(1.0, meterRegistry.counter("account.lock.local.waits").count());
+        assertEquals(1.0, meterRegistry.counter("account.lock.redis.round-trips").count());
+    }
+
+    @Test
+    @DisplayName("다른 계좌의 요청은 로컬에서 서로 기다리지 않는다")
+    void otherAccountsDoNotWaitLocally() throws InterruptedException {
+        //given
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(rLock.tryLock(anyLong(), anyLong(), any()))
+                .willReturn(true);
+        lockService.lock("123");
+
+        //when
+        CompletableFuture.runAsync(() -> lockService.lock("456")).join();
+
+        //then
+        assertEquals(0.0, meterRegistry.counter("account.lock.local.waits").count());
+    }
+
+    @Test
+    void unlockReleasesLocalLock() throws InterruptedException {
+        //given
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(rLock.tryLock(anyLong(), anyLong(), any()))
+                .willReturn(true);
+        lockService.lock("123");
+
+        //when
+        lockService.unlock("123");
+
+        //then
+        assertDoesNotThrow(() -> CompletableFuture.runAsync(
+                () -> lockService.lock("123")).join());
+        verify(rLock, times(1)).unlock();
+    }
+
+    @Test
+    @DisplayName("여러 계좌는 정렬된 순서의 multi lock 으로 한 번에 잡는다")
+    void lockAllInSortedOrder() throws InterruptedException {
+        //given
+        RLock multiLock = mock(RLock.class);
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(redissonClient.getMultiLock(any()))
+                .willReturn(multiLock);
+        given(multiLock.tryLock(anyLong(), anyLong(), any()))
+                .willReturn(true);
+        InOrder inOrder = inOrder(redissonClient);
+
+        //when
+        lockService.lockAll(List.of("3000000000", "1000000000", "2000000000", "1000000000"));
+
+        //then
+        inOrder.verify(redissonClient).getLock("ACLK:1000000000");
+        inOrder.verify(redissonClient).getLock("ACLK:2000000000");
+        inOrder.verify(redissonClient).getLock("ACLK:3000000000");
+        verify(redissonClient, times(3)).getLock(anyString());
+        verify(multiLock, times(1)).tryLock(anyLong(), anyLong(), any());
+        assertEquals(1.0, meterRegistry.counter("account.lock.redis.round-trips").count());
+    }
+
+    @Test
+    void failLockAllReleasesLocalLocks() throws InterruptedException {
+        //given
+        RLock multiLock = mock(RLock.class);
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(redissonClient.getMultiLock(any()))
+                .willReturn(multiLock);
+        given(multiLock.tryLock(anyLong(), anyLong(), any()))
+                .willReturn(false);
+        given(rLock.tryLock(anyLong(), anyLong(), any()))
+                .willReturn(true);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> lockService.lockAll(List.of("1000000000", "2000000000")));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, exception.getErrorCode());
+        assertDoesNotThrow(() -> CompletableFuture.runAsync(
+                () -> lockService.lock("2000000000")).join());
+    }
+
+    @Test
+    @DisplayName("담당 계좌는 redis lock 을 잡아두고 다음 요청에서 재사용")
+    void reuseOwnedLock() {
+        //given
+        given(accountOwnership.isOwner("123")).willReturn(true);
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        givenAsyncLock(true);
+
+        //when
+        lockService.lock("123");
+        lockService.unlock("123");
+        lockService.lock("123");
+        lockService.unlock("123");
+
+        //then
+        verify(rLock, times(1)).tryLockAsync(anyLong(), anyLong(), any(), anyLong());
+        verify(rLock, never()).unlock();
+        assertEquals(1.0, meterRegistry.counter("account.lock.owned.reuses").count());
+        assertEquals(1.0, meterRegistry.counter("account.lock.redis.round-trips").count());
+    }
+
+    @Test
+    @DisplayName("한동안 쓰이지 않은 담당 계좌 lock 은 놓는다")
+    void releaseIdleOwnedLock() {
+        //given
+        lockService = new LockService(redissonClient, accountOwnership, meterRegistry,
+                0, 1000, 0);
+        given(accountOwnership.isOwner("123")).willReturn(true);
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        givenAsyncLock(true);
+        lockService.lock("123");
+        lockService.unlock("123");
+
+        //when
+        lockService.releaseOwnedLocks();
+        lockService.lock("123");
+
+        //then
+        verify(rLock).unlockAsync(anyLong());
+        verify(rLock, times(2)).tryLockAsync(anyLong(), anyLong(), any(), anyLong());
+    }
+
+    @Test
+    @DisplayName("요청이 사용중인 담당 계좌 lock 은 놓지 않는다")
+    void keepOwnedLockInUse() {
+        //given
+        lockService = new LockService(redissonClient, accountOwnership, meterRegistry,
+                0, 1000, 0);
+        given(accountOwnership.isOwner("123")).willReturn(true);
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        givenAsyncLock(true);
+        lockService.lock("123");
+
+        //when
+        CompletableFuture.runAsync(() -> lockService.releaseOwnedLocks()).join();
+
+        //then
+        verify(rLock, never()).unlockAsync(anyLong());
+    }
+
+    @Test
+    @DisplayName("놓을 때 기다리는 쪽이 없었으면 담당 계좌 lock 을 바로 다시 잡는다")
+    void reacquireWithoutWaiters() {
+        //given
+        lockService = new LockService(redissonClient, accountOwnership, meterRegistry,
+                0, 1000, 500);
+        given(accountOwnership.isOwner("123")).willReturn(true);
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(redissonClient.getTopic(anyString()))
+                .willReturn(topic);
+        given(topic.countSubscribers()).willReturn(0L);
+        givenAsyncLock(true);
+        lockService.lock("123");
+        lockService.unlock("123");
+        lockService.releaseOwnedLocks();
+
+        //when
+        long startedAt = System.nanoTime();
+        lockService.lock("123");
+
+        //then
+        assertTrue(System.nanoTime() - startedAt < TimeUnit.MILLISECONDS.toNanos(300));
+        verify(redissonClient).getTopic("redisson_lock__channel:{ACLK:123}");
+    }
+
+    @Test
+    @DisplayName("놓을 때 기다리는 쪽이 있었으면 hand-off 시간 동안 다시 잡지 않는다")
+    void waitForHandoffWithWaiters() {
+        //given
+        lockService = new LockService(redissonClient, accountOwnership, meterRegistry,
+                0, 1000, 200);
+        given(accountOwnership.isOwner("123")).willReturn(true);
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(redissonClient.getTopic(anyString()))
+                .willReturn(topic);
+        given(topic.countSubscribers()).willReturn(1L);
+        givenAsyncLock(true);
+        lockService.lock("123");
+        lockService.unlock("123");
+        lockService.releaseOwnedLocks();
+
+        //when
+        long startedAt = System.nanoTime();
+        lockService.lock("123");
+
+        //then
+        assertTrue(System.nanoTime() - startedAt >= TimeUnit.MILLISECONDS.toNanos(150));
+    }
+
+    @Test
+    @DisplayName("비동기 취득은 이 노드가 잡아둔 담당 계좌 lock 을 먼저 놓는다")
+    void lockAsyncReleasesOwnedLock() {
+        //given
+        given(accountOwnership.isOwner("123")).willReturn(true);
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        givenAsyncLock(true);
+        lockService.lock("123");
+        lockService.unlock("123");
+
+        //when
+        lockService.lockAsync("123").join();
+
+        //then
+        InOrder inOrder = inOrder(rLock);
+        inOrder.verify(rLock).tryLockAsync(anyLong(), anyLong(), any(), anyLong());
+        inOrder.verify(rLock).unlockAsync(anyLong());
+        inOrder.verify(rLock).tryLockAsync(anyLong(), anyLong(), any(), anyLong());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenAsyncLock(boolean locked) {
+        RFuture<Boolean> lockFuture = mock(RFuture.class);
+        given(lockFuture.toCompletableFuture())
+                .willReturn(CompletableFuture.completedFuture(locked));
+        given(rLock.tryLockAsync(anyLong(), anyLong(), any(), anyLong()))
+                .willReturn(lockFuture);
+        RFuture<Void> unlockFuture = mock(RFuture.class);
+        lenient().when(unlockFuture.toCompletableFuture())
+                .thenReturn(CompletableFuture.completedFuture(null));
+        lenient().when(rLock.unlockAsync(anyLong()))
+                .thenReturn(unlockFuture);
     }
-}
\ No newline at end of file
+}
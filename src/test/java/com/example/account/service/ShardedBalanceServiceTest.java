@@ -0,0 +1,158 @@
+package com.example.account.service;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountBalanceSlot;
+import com.example.account.repository.AccountBalanceSlotRepository;
+import com.example.account.repository.AccountRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.example.account.type.AccountStatus.IN_USE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ShardedBalanceServiceTest {
+    @Mock
+    private AccountBalanceSlotRepository accountBalanceSlotRepository;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private LockService lockService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private MeterRegistry meterRegistry;
+
+    private ShardedBalanceService shardedBalanceService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        shardedBalanceService = new ShardedBalanceService(accountBalanceSlotRepository,
+                accountRepository, lockService, transactionManager, meterRegistry,
+                true, Set.of("1000000000"), 4);
+    }
+
+    @Test
+    @DisplayName("설정된 계좌만 slot 으로 나눈다")
+    void isShardedAccount() {
+        assertTrue(shardedBalanceService.isShardedAccount("1000000000"));
+        assertFalse(shardedBalanceService.isShardedAccount("2000000000"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    @DisplayName("처음 사용할 때 잔액을 slot 으로 나누고 Account 잔액은 0")
+    void ensureSlots() {
+        //given
+        Account account = Account.builder()
+                .id(1L)
+                .accountStatus(IN_USE)
+                .balance(10003L)
+                .accountNumber("1000000000").build();
+        given(accountRepository.findByAccountNumber("1000000000"))
+                .willReturn(Optional.of(account));
+        given(accountBalanceSlotRepository.existsByAccountId(1L)).willReturn(false);
+        ArgumentCaptor<List<AccountBalanceSlot>> captor = ArgumentCaptor.forClass(List.class);
+
+        //when
+        shardedBalanceService.ensureSlots("1000000000");
+        shardedBalanceService.ensureSlots("1000000000");
+
+        //then
+        verify(lockService, times(1)).lock("1000000000");
+        verify(lockService, times(1)).unlock("1000000000");
+        verify(accountBalanceSlotRepository).saveAll(captor.capture());
+        List<AccountBalanceSlot> slots = captor.getValue();
+        assertEquals(4, slots.size());
+        assertEquals(2503L, slots.get(0).getBalance());
+        assertEquals(2500L, slots.get(3).getBalance());
+        assertEquals(3, slots.get(3).getSlot());
+        assertEquals(0L, account.getBalance());
+    }
+
+    @Test
+    @DisplayName("잔액이 충분한 slot 하나에서 차감")
+    void debitSingleSlot() {
+        //given
+        given(accountBalanceSlotRepository.findBalancesByAccountId(1L))
+                .willReturn(List.of(100L, 5000L, 100L, 100L));
+        given(accountBalanceSlotRepository.debitIfSufficient(1L, 1, 1000L))
+                .willReturn(1);
+
+        //when
+        boolean debited = shardedBalanceService.debit(1L, 1000L);
+
+        //then
+        assertTrue(debited);
+        verify(accountBalanceSlotRepository, never()).findForUpdateByAccountId(anyLong());
+    }
+
+    @Test
+    @DisplayName("한 slot 으로 부족하면 slot 순서대로 합쳐서 차감")
+    void debitCombinedSlots() {
+        //given
+        given(accountBalanceSlotRepository.findBalancesByAccountId(1L))
+                .willReturn(List.of(600L, 600L, 0L, 0L));
+        List<AccountBalanceSlot> slots = List.of(slot(0, 600L), slot(1, 600L),
+                slot(2, 0L), slot(3, 0L));
+        given(accountBalanceSlotRepository.findForUpdateByAccountId(1L))
+                .willReturn(slots);
+
+        //when
+        boolean debited = shardedBalanceService.debit(1L, 1000L);
+
+        //then
+        assertTrue(debited);
+        verify(accountBalanceSlotRepository, never())
+                .debitIfSufficient(anyLong(), anyInt(), anyLong());
+        assertEquals(0L, slots.get(0).getBalance());
+        assertEquals(200L, slots.get(1).getBalance());
+        assertEquals(1.0, meterRegistry.get("account.balance.slot.combined-debits")
+                .counter().count());
+    }
+
+    @Test
+    @DisplayName("slot 합계가 부족하면 잠그지 않고 실패")
+    void debitExceedBalance() {
+        //given
+        given(accountBalanceSlotRepository.findBalancesByAccountId(1L))
+                .willReturn(List.of(100L, 100L, 0L, 0L));
+
+        //when
+        boolean debited = shardedBalanceService.debit(1L, 1000L);
+
+        //then
+        assertFalse(debited);
+        verify(accountBalanceSlotRepository, never()).findForUpdateByAccountId(anyLong());
+    }
+
+    private static AccountBalanceSlot slot(int slot, long balance) {
+        return AccountBalanceSlot.builder()
+                .slot(slot)
+                .balance(balance)
+                .build();
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.account.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeOrderedTransactionIdGeneratorTest {
+    private final TimeOrderedTransactionIdGenerator generator =
+            new TimeOrderedTransactionIdGenerator(0x1a2b);
+
+    @Test
+    @DisplayName("32자리 16진수, 노드 id 포함")
+    void generateFormat() {
+        //when
+        String transactionId = generator.generate();
+
+        //then
+        assertEquals(32, transactionId.length());
+        assertTrue(transactionId.matches("[0-9a-f]{32}"));
+        assertEquals("1a2b", transactionId.substring(12, 16));
+    }
+
+    @Test
+    @DisplayName("밀리초 prefix 는 증가하는 순서")
+    void generateTimeOrdered() throws InterruptedException {
+        //given
+        String first = generator.generate();
+        Thread.sleep(2);
+
+        //when
+        String second = generator.generate();
+
+        //then
+        assertTrue(first.substring(0, 12).compareTo(second.substring(0, 12)) < 0);
+    }
+
+    @Test
+    @DisplayName("여러 스레드에서 생성해도 중복 없음")
+    void generateUniqueAcrossThreads() {
+        //given
+        List<CompletableFuture<List<String>>> futures = new ArrayList<>();
+
+        //when
+        for (int i = 0; i < 8; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> IntStream.range(0, 10000)
+                    .mapToObj(j -> generator.generate())
+                    .collect(Collectors.toList())));
+        }
+        Set<String> transactionIds = new HashSet<>();
+        futures.forEach(future -> transactionIds.addAll(future.join()));
+
+        //then
+        assertEquals(80000, transactionIds.size());
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.account.service;
+
+import com.example.account.dto.TransactionHistoryView;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.ExportFormat;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionExportServiceTest {
+    private static final LocalDateTime TRANSACTED_AT = LocalDateTime.of(2026, 1, 1, 9, 30);
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private AccountMetadataCache accountMetadataCache;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private TransactionExportService transactionExportService;
+
+    private final AtomicBoolean streamClosed = new AtomicBoolean();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        transactionExportService = new TransactionExportService(transactionRepository,
+                accountMetadataCache, transactionTemplate, objectMapper);
+        given(transactionTemplate.execute(any()))
+                .willAnswer(invocation -> ((TransactionCallback<Long>) invocation.getArgument(0))
+                        .doInTransaction(null));
+        given(transactionRepository.streamHistory(7L))
+                .willReturn(Stream.of(view(1L), view(2L))
+                        .onClose(() -> streamClosed.set(true)));
+    }
+
+    @Test
+    @DisplayName("NDJSON - 한 줄에 거래 하나")
+    void exportNdjson() {
+        //given
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        //when
+        long count = transactionExportService.export(7L, ExportFormat.NDJSON, outputStream);
+
+        //then
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, count);
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"transactionId\":\"transactionId1\""), lines[0]);
+        assertTrue(lines[1].contains("\"transactedAt\":\"2026-01-01T09:30:00\""), lines[1]);
+        assertTrue(streamClosed.get());
+    }
+
+    @Test
+    @DisplayName("CSV - header 와 거래별 한 줄")
+    void exportCsv() {
+        //given
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        //when
+        long count = transactionExportService.export(7L, ExportFormat.CSV, outputStream);
+
+        //then
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, count);
+        assertEquals(3, lines.length);
+        assertEquals("transactionId,transactionType,transactionResult,amount,"
+                + "balanceSnapshot,transactedAt", lines[0]);
+        assertEquals("transactionId2,USE,S,100,900,2026-01-01T09:30:00", lines[2]);
+        assertTrue(streamClosed.get());
+    }
+
+    private static TransactionHistoryView view(Long id) {
+        return new TransactionHistoryView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public TransactionType getTransactionType() {
+                return USE;
+            }
+
+            @Override
+            public TransactionResultType getTransactionResultType() {
+                return S;
+            }
+
+            @Override
+            public Long getAmount() {
+                return 100L;
+            }
+
+            @Override
+            public Long getBalanceSnapshot() {
+                return 900L;
+            }
+
+            @Override
+            public String getTransactionId() {
+                return "transactionId" + id;
+            }
+
+            @Override
+            public LocalDateTime getTransactedAt() {
+                return TRANSACTED_AT;
+            }
+        };
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.account.service;
+
+import com.example.account.domain.Transaction;
+import com.example.account.dto.AccountMetadataView;
+import com.example.account.dto.TransactionDto;
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.AccountStatus;
+import com.example.account.type.ErrorCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static com.example.account.type.TransactionResultType.S;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionGroupWriterTest {
+    private static final long USER_ID = 12L;
+
+    @Mock
+    private TransactionService transactionService;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private BalanceLedgerService balanceLedgerService;
+
+    @Mock
+    private JournaledBalanceEngine journaledBalanceEngine;
+
+    @Mock
+    private ShardedBalanceService shardedBalanceService;
+
+    @Mock
+    private TransactionIdGenerator transactionIdGenerator;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(3);
+
+    private TransactionGroupWriter transactionGroupWriter;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        transactionGroupWriter.stop();
+        executorService.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("동시에 들어온 사용은 차감과 거래 기록을 한 트랜잭션으로 커밋")
+    void groupConcurrentUses() {
+        //given
+        start(true, 3, 1000L);
+        givenDebit(1);
+        given(transactionRepository.saveAll(anyList()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+
+        //when
+        List<TransactionDto> results = List.of(
+                        CompletableFuture.supplyAsync(() -> use("1000000001"), executorService),
+                        CompletableFuture.supplyAsync(() -> use("1000000002"), executorService),
+                        CompletableFuture.supplyAsync(() -> use("1000000003"), executorService))
+                .stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+
+        //then
+        verify(transactionManager, times(1)).getTransaction(any());
+        verify(transactionManager, times(1)).commit(any());
+        verify(accountRepository, times(3)).debitByIdIfSufficient(anyLong(), anyLong());
+        verify(transactionRepository, times(1)).saveAll(anyList());
+        verify(transactionService, never()).useBalance(anyLong(), anyString(), anyLong());
+        assertEquals(3, results.size());
+        assertTrue(results.stream().allMatch(dto -> dto.getTransactionResultType() == S
+                && dto.getBalanceSnapshot() == 700L));
+    }
+
+    @Test
+    @DisplayName("차감되지 않은 사용은 단건 처리로 넘겨서 실패 원인을 판정")
+    void fallbackWhenNotDebited() {
+        //given
+        start(true, 1, 5L);
+        givenMetadata();
+        given(accountRepository.debitByIdIfSufficient(anyLong(), anyLong())).willReturn(0);
+        given(transactionService.useBalance(USER_ID, "1000000001", 300L))
+                .willThrow(new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> use("1000000001"));
+
+        //then
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, exception.getErrorCode());
+        verify(transactionRepository, times(1)).saveAll(List.of());
+    }
+
+    @Test
+    @DisplayName("묶음 커밋이 실패하면 한 건씩 각자의 트랜잭션으로 다시 처리")
+    void retryOneByOneOnBatchFailure() {
+        //given
+        start(true, 2, 1000L);
+        givenDebit(1);
+        given(transactionRepository.saveAll(anyList()))
+                .willAnswer(invocation -> {
+                    List<Transaction> transactions = invocation.getArgument(0);
+                    if (transactions.size() > 1) {
+                        throw new DataIntegrityViolationException("batch");
+                    }
+                    return transactions;
+                });
+
+        //when
+        CompletableFuture<TransactionDto> first = CompletableFuture.supplyAsync(
+                () -> use("1000000001"), executorService);
+        CompletableFuture<TransactionDto> second = CompletableFuture.supplyAsync(
+                () -> use("1000000002"), executorService);
+
+        //then
+        assertEquals("1000000001", first.join().getAccountNumber());
+        assertEquals("1000000002", second.join().getAccountNumber());
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    @DisplayName("ledger 계좌는 묶지 않고 단건으로 처리")
+    void delegateLedgerAccount() {
+        //given
+        start(true, 100, 5L);
+        given(balanceLedgerService.isLedgerAccount("1000000001")).willReturn(true);
+
+        //when
+        use("1000000001");
+
+        //then
+        verify(transactionService, times(1)).useBalance(USER_ID, "1000000001", 300L);
+        verify(accountRepository, never()).debitByIdIfSufficient(anyLong(), anyLong());
+    }
+
+    @Test
+    void disabledDelegates() {
+        //given
+        start(false, 100, 5L);
+
+        //when
+        use("1000000001");
+
+        //then
+        verify(transactionService, times(1)).useBalance(USER_ID, "1000000001", 300L);
+        verify(transactionRepository, never()).saveAll(anyList());
+    }
+
+    private void start(boolean enabled, int batchSize, long maxDelayMillis) {
+        transactionGroupWriter = new TransactionGroupWriter(transactionService,
+                accountRepository, transactionRepository, balanceLedgerService,
+                journaledBalanceEngine, shardedBalanceService, transactionIdGenerator,
+                transactionManager, new SimpleMeterRegistry(),
+                enabled, batchSize, maxDelayMillis, 100);
+        transactionGroupWriter.start();
+    }
+
+    private void givenMetadata() {
+        given(accountRepository.findMetadataByAccountNumber(anyString()))
+                .willReturn(Optional.of(new AccountMetadataView() {
+                    @Override
+                    public Long getId() {
+                        return 1L;
+                    }
+
+                    @Override
+                    public Long getUserId() {
+                        return USER_ID;
+                    }
+
+                    @Override
+                    public AccountStatus getAccountStatus() {
+                        return AccountStatus.IN_USE;
+                    }
+                }));
+    }
+
+    private void givenDebit(int updated) {
+        givenMetadata();
+        given(accountRepository.debitByIdIfSufficient(anyLong(), anyLong())).willReturn(updated);
+        given(accountRepository.findBalanceById(anyLong())).willReturn(700L);
+        given(transactionIdGenerator.generate()).willReturn("transactionId");
+    }
+
+    private TransactionDto use(String accountNumber) {
+        return transactionGroupWriter.useBalance(USER_ID, accountNumber, 300L);
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.account.service;
+
+import com.example.account.dto.TransactionDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RBucket;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.USE;
+import static com.example.account.type.TransactionType.USE_CANCELED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionQueryCacheTest {
+    private static final LocalDateTime TRANSACTED_AT = LocalDateTime.now();
+
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private RBucket<Object> bucket;
+
+    @Mock
+    private RTopic topic;
+
+    private MeterRegistry meterRegistry;
+
+    private TransactionQueryCache transactionQueryCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        transactionQueryCache = new TransactionQueryCache(redissonClient, meterRegistry,
+                true, 100, 60000, 600);
+        given(redissonClient.getBucket(anyString(), any()))
+                .willReturn(bucket);
+    }
+
+    @Test
+    @DisplayName("처음 조회는 DB, 다음 조회는 로컬 cache")
+    void loadOnceThenLocalHit() {
+        //given
+        AtomicInteger loads = new AtomicInteger();
+
+        //when
+        transactionQueryCache.get("transactionId", () -> {
+            loads.incrementAndGet();
+            return transactionDto();
+        });
+        TransactionDto cached = transactionQueryCache.get("transactionId", () -> {
+            loads.incrementAndGet();
+            return transactionDto();
+        });
+
+        //then
+        assertEquals(1, loads.get());
+        assertEquals("1000000000", cached.getAccountNumber());
+        verify(bucket).trySet(anyString(), eq(600000L), any());
+        assertEquals(1.0, meterRegistry.get("account.transaction.cache.redis.misses")
+                .counter().count());
+    }
+
+    @Test
+    @DisplayName("로컬에 없으면 redis 에서 읽는다")
+    void redisHit() {
+        //given
+        given(bucket.get())
+                .willReturn(TransactionQueryCache.format(transactionDto()));
+
+        //when
+        TransactionDto cached = transactionQueryCache.get("transactionId", () -> {
+            throw new IllegalStateException("must not load");
+        });
+
+        //then
+        assertEquals(USE, cached.getTransactionType());
+        assertEquals(S, cached.getTransactionResultType());
+        assertEquals(1000L, cached.getAmount());
+        assertEquals(9000L, cached.getBalanceSnapshot());
+        assertEquals(1.0, meterRegistry.get("account.transaction.cache.redis.hits")
+                .counter().count());
+    }
+
+    @Test
+    @DisplayName("취소되면 redis 를 취소된 상태로 덮어쓰고 다른 노드에 알린다")
+    void update() {
+        //given
+        given(redissonClient.getTopic(anyString(), any()))
+                .willReturn(topic);
+        transactionQueryCache.get("transactionId", TransactionQueryCacheTest::transactionDto);
+        given(bucket.get())
+                .willReturn(TransactionQueryCache.format(canceledDto()));
+
+        //when
+        transactionQueryCache.update(canceledDto());
+        TransactionDto cached = transactionQueryCache.get("transactionId", () -> {
+            throw new IllegalStateException("must not load");
+        });
+
+        //then
+        verify(bucket).set(eq(TransactionQueryCache.format(canceledDto())), eq(600000L), any());
+        verify(topic).publish("transactionId");
+        assertEquals(USE_CANCELED, cached.getTransactionType());
+    }
+
+    @Test
+    @DisplayName("커밋 전에 이전 상태를 읽은 요청은 redis 를 채우기만 하고, 커밋 후에 취소 상태로 덮어쓴다")
+    void updateAfterCommit() {
+        //given
+        given(redissonClient.getTopic(anyString(), any()))
+                .willReturn(topic);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            transactionQueryCache.update(canceledDto());
+            // 커밋 전에 읽은 요청이 이전 상태를 올린 경우
+            transactionQueryCache.get("transactionId", TransactionQueryCacheTest::transactionDto);
+            verify(bucket, never()).set(anyString(), anyLong(), any());
+
+            //when
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        //then
+        InOrder inOrder = inOrder(bucket, topic);
+        inOrder.verify(bucket).trySet(eq(TransactionQueryCache.format(transactionDto())),
+                anyLong(), any());
+        inOrder.verify(bucket).set(eq(TransactionQueryCache.format(canceledDto())),
+                anyLong(), any());
+        inOrder.verify(topic).publish("transactionId");
+    }
+
+    private static TransactionDto canceledDto() {
+        return TransactionDto.builder()
+                .accountNumber("1000000000")
+                .transactionType(USE_CANCELED)
+                .transactionResultType(S)
+                .amount(1000L)
+                .balanceSnapshot(9000L)
+                .transactionId("transactionId")
+                .transactedAt(TRANSACTED_AT)
+                .build();
+    }
+
+    private static TransactionDto transactionDto() {
+        return TransactionDto.builder()
+                .accountNumber("1000000000")
+                .transactionType(USE)
+                .transactionResultType(S)
+                .amount(1000L)
+                .balanceSnapshot(9000L)
+                .transactionId("transactionId")
+                .transactedAt(TRANSACTED_AT)
+                .build();
+    }
+}
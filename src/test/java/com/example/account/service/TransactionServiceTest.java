@@ -3,23 +3,32 @@ package com.example.account.service;
 import com.example.account.domain.Account;
 import com.example.account.domain.AccountUser;
 import com.example.account.domain.Transaction;
+import com.example.account.dto.AccountBalanceView;
+import com.example.account.dto.AccountMetadataView;
+import com.example.account.dto.TransactionHistory;
+import com.example.account.dto.TransactionHistoryView;
 import com.example.account.dto.TransactionDto;
+import com.example.account.dto.UseBalance;
 import com.example.account.exception.AccountException;
 import com.example.account.repository.AccountRepository;
-import com.example.account.repository.AccountUserRepository;
 import com.example.account.repository.TransactionRepository;
 import com.example.account.type.AccountStatus;
 import com.example.account.type.ErrorCode;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static com.example.account.type.AccountStatus.IN_USE;
 import static com.example.account.type.TransactionResultType.F;
@@ -27,8 +36,11 @@ import static com.example.account.type.TransactionResultType.S;
 import static com.example.account.type.TransactionType.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -42,7 +54,25 @@ class TransactionServiceTest {
     private AccountRepository accountRepository;
 
     @Mock
-    private AccountUserRepository accountUserRepository;
+    private AccountUserCache accountUserCache;
+
+    @Mock
+    private BalanceLedgerService balanceLedgerService;
+
+    @Mock
+    private TransactionIdGenerator transactionIdGenerator;
+
+    @Mock
+    private TransactionQueryCache transactionQueryCache;
+
+    @Mock
+    private AccountMetadataCache accountMetadataCache;
+
+    @Mock
+    private ShardedBalanceService shardedBalanceService;
+
+    @Mock
+    private JournaledBalanceEngine journaledBalanceEngine;
 
     @InjectMocks
     private TransactionService transactionService;
@@ -56,10 +86,10 @@ class TransactionServiceTest {
         Account account = Account.builder()
                 .accountUser(user)
                 .accountStatus(IN_USE)
-                .balance(10000L)
+                .balance(9000L)
                 .accountNumber("1000000000").build();
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(user));
+        given(accountRepository.debitIfSufficient(anyString(), anyLong(), anyLong()))
+                .willReturn(1);
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.of(account));
         given(transactionRepository.save(any()))
@@ -78,6 +108,9 @@ class TransactionServiceTest {
         TransactionDto transactionDto = transactionService.useBalance(1L,
                 "1000000000", CANCEL_AMOUNT);
         //then
+        verify(accountRepository, times(1))
+                .debitIfSufficient("1000000000", 1L, CANCEL_AMOUNT);
+        verify(accountUserCache, times(0)).existsById(anyLong());
         verify(transactionRepository, times(1)).save(captor.capture());
         assertEquals(CANCEL_AMOUNT, captor.getValue().getAmount());
         assertEquals(9000L, captor.getValue().getBalanceSnapshot());
@@ -87,12 +120,261 @@ class TransactionServiceTest {
         assertEquals(9000L, transactionDto.getBalanceSnapshot());
     }
 
+    @Test
+    @DisplayName("cache 로 확인한 계좌는 id 로 차감하고 계좌를 다시 조회하지 않음")
+    void useBalance_cachedMetadata() {
+        //given
+        Account reference = Account.builder().id(7L).build();
+        given(accountMetadataCache.validateInUse(anyString()))
+                .willReturn(Optional.of(metadata(7L)));
+        given(accountRepository.debitByIdIfSufficient(7L, CANCEL_AMOUNT)).willReturn(1);
+        given(accountRepository.getReferenceById(7L)).willReturn(reference);
+        given(accountRepository.findBalanceById(7L)).willReturn(9000L);
+        given(transactionRepository.save(any()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+
+        //when
+        TransactionDto transactionDto = transactionService.useBalance(1L,
+                "1000000000", CANCEL_AMOUNT);
+
+        //then
+        verify(accountRepository, never()).findByAccountNumber(anyString());
+        verify(accountRepository, never()).debitIfSufficient(anyString(), anyLong(), anyLong());
+        assertEquals("1000000000", transactionDto.getAccountNumber());
+        assertEquals(USE, transactionDto.getTransactionType());
+        assertEquals(9000L, transactionDto.getBalanceSnapshot());
+    }
+
+    @Test
+    @DisplayName("cache 로 확인한 계좌의 소유주가 다르면 차감하지 않고 실패")
+    void useBalance_cachedMetadataUserUnMatch() {
+        //given
+        given(accountMetadataCache.validateInUse(anyString()))
+                .willReturn(Optional.of(metadata(7L)));
+        given(accountUserCache.existsById(2L)).willReturn(true);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.useBalance(2L, "1000000000", CANCEL_AMOUNT));
+
+        //then
+        assertEquals(ErrorCode.USER_ACCOUNT_UN_MATCH, exception.getErrorCode());
+        verify(accountRepository, never()).debitByIdIfSufficient(anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("cache 로 확인한 계좌의 취소는 id 로 검증하고 조건부 update 로 입금")
+    void cancelBalance_cachedMetadata() {
+        //given
+        Account reference = Account.builder().id(7L).build();
+        given(accountMetadataCache.validateInUse(anyString()))
+                .willReturn(Optional.of(metadata(7L)));
+        given(transactionRepository.findByTransactionId(anyString()))
+                .willReturn(Optional.of(Transaction.builder()
+                        .account(reference)
+                        .transactionType(USE)
+                        .transactionResultType(S)
+                        .transactionId("transactionId")
+                        .transactedAt(LocalDateTime.now())
+                        .amount(CANCEL_AMOUNT)
+                        .balanceSnapshot(9000L)
+                        .build()));
+        given(accountRepository.creditIfInUse("1000000000", CANCEL_AMOUNT)).willReturn(1);
+        given(accountRepository.getReferenceById(7L)).willReturn(reference);
+        given(accountRepository.findBalanceById(7L)).willReturn(10000L);
+        given(transactionRepository.save(any()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+
+        //when
+        TransactionDto transactionDto = transactionService.cancelBalance(
+                "transactionId", "1000000000", CANCEL_AMOUNT);
+
+        //then
+        verify(accountRepository, never()).findByAccountNumber(anyString());
+        assertEquals(CANCEL, transactionDto.getTransactionType());
+        assertEquals(10000L, transactionDto.getBalanceSnapshot());
+    }
+
+    @Test
+    @DisplayName("slot 으로 나눈 계좌는 slot 에서 차감하고 잔액은 slot 합계")
+    void useBalance_shardedAccount() {
+        //given
+        AccountUser user = AccountUser.builder()
+                .name("Pobi").build();
+        user.setId(1L);
+        Account account = Account.builder()
+                .id(1L)
+                .accountUser(user)
+                .accountStatus(IN_USE)
+                .balance(0L)
+                .accountNumber("1000000000").build();
+        given(shardedBalanceService.isShardedAccount("1000000000")).willReturn(true);
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(account));
+        given(shardedBalanceService.debit(1L, CANCEL_AMOUNT)).willReturn(true);
+        given(shardedBalanceService.getSlotBalance("1000000000")).willReturn(9000L);
+        given(transactionRepository.save(any())).willAnswer(invocation -> invocation.getArgument(0));
+        ArgumentCaptor<Transaction> captor = ArgumentCaptor.forClass(Transaction.class);
+
+        //when
+        TransactionDto transactionDto = transactionService.useBalance(1L,
+                "1000000000", CANCEL_AMOUNT);
+
+        //then
+        verify(shardedBalanceService).ensureSlots("1000000000");
+        verify(accountRepository, never()).debitIfSufficient(anyString(), anyLong(), anyLong());
+        verify(transactionRepository).save(captor.capture());
+        assertEquals(9000L, captor.getValue().getBalanceSnapshot());
+        assertEquals(9000L, transactionDto.getBalanceSnapshot());
+    }
+
+    @Test
+    @DisplayName("slot 으로 나눈 계좌 - 전체 slot 합계가 부족하면 실패")
+    void useBalance_shardedAccountExceedBalance() {
+        //given
+        AccountUser user = AccountUser.builder()
+                .name("Pobi").build();
+        user.setId(1L);
+        given(shardedBalanceService.isShardedAccount("1000000000")).willReturn(true);
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(Account.builder()
+                        .id(1L)
+                        .accountUser(user)
+                        .accountStatus(IN_USE)
+                        .balance(0L)
+                        .accountNumber("1000000000").build()));
+        given(shardedBalanceService.debit(1L, CANCEL_AMOUNT)).willReturn(false);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.useBalance(1L, "1000000000", CANCEL_AMOUNT));
+
+        //then
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, exception.getErrorCode());
+        verify(transactionRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("ledger 계좌는 redis ledger 에서 차감")
+    void useBalance_ledgerAccount() {
+        //given
+        given(balanceLedgerService.isLedgerAccount(anyString()))
+                .willReturn(true);
+        given(balanceLedgerService.use(anyLong(), anyString(), anyLong()))
+                .willReturn(TransactionDto.builder()
+                        .accountNumber("1000000000")
+                        .transactionType(USE)
+                        .transactionResultType(S)
+                        .amount(CANCEL_AMOUNT)
+                        .balanceSnapshot(9000L)
+                        .build());
+
+        //when
+        TransactionDto transactionDto = transactionService.useBalance(1L,
+                "1000000000", CANCEL_AMOUNT);
+
+        //then
+        verify(accountRepository, times(0)).debitIfSufficient(anyString(), anyLong(), anyLong());
+        verify(transactionRepository, times(0)).save(any());
+        assertEquals(9000L, transactionDto.getBalanceSnapshot());
+    }
+
+    @Test
+    @DisplayName("잔액 엔진을 켜면 메모리 잔액에서 차감")
+    void useBalance_engineAccount() {
+        //given
+        given(journaledBalanceEngine.isEngineAccount(anyString()))
+                .willReturn(true);
+        given(journaledBalanceEngine.use(anyLong(), anyString(), anyLong()))
+                .willReturn(TransactionDto.builder()
+                        .accountNumber("1000000000")
+                        .transactionType(USE)
+                        .transactionResultType(S)
+                        .amount(CANCEL_AMOUNT)
+                        .balanceSnapshot(9000L)
+                        .build());
+
+        //when
+        TransactionDto transactionDto = transactionService.useBalance(1L,
+                "1000000000", CANCEL_AMOUNT);
+
+        //then
+        verify(accountRepository, times(0)).debitIfSufficient(anyString(), anyLong(), anyLong());
+        verify(transactionRepository, times(0)).save(any());
+        assertEquals(9000L, transactionDto.getBalanceSnapshot());
+    }
+
+    @Test
+    @DisplayName("일괄 사용 - 실패한 항목만 실패 거래로 기록하고 나머지는 계속 처리")
+    void useBalanceBatch_partialFailure() {
+        //given
+        AccountUser user = AccountUser.builder()
+                .name("Pobi").build();
+        user.setId(1L);
+        Account account = Account.builder()
+                .accountUser(user)
+                .accountStatus(IN_USE)
+                .balance(500L)
+                .accountNumber("1000000000").build();
+        given(accountRepository.debitIfSufficient("1000000000", 1L, 100L))
+                .willReturn(1);
+        given(accountRepository.debitIfSufficient("1000000000", 1L, 1000L))
+                .willReturn(0);
+        given(accountUserCache.existsById(1L))
+                .willReturn(true);
+        given(accountRepository.findBalanceViewByAccountNumber("1000000000"))
+                .willReturn(Optional.of(balanceView(1L, IN_USE, 400L)));
+        given(accountRepository.findByAccountNumber("1000000000"))
+                .willReturn(Optional.of(account));
+        given(transactionRepository.save(any()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+        ArgumentCaptor<Transaction> captor = ArgumentCaptor.forClass(Transaction.class);
+
+        //when
+        List<TransactionDto> results = transactionService.useBalanceBatch(List.of(
+                new UseBalance.Request(1L, "1000000000", 100L),
+                new UseBalance.Request(1L, "1000000000", 1000L)));
+
+        //then
+        verify(transactionRepository, times(2)).save(captor.capture());
+        assertEquals(S, captor.getAllValues().get(0).getTransactionResultType());
+        assertEquals(F, captor.getAllValues().get(1).getTransactionResultType());
+        assertEquals(S, results.get(0).getTransactionResultType());
+        assertEquals(F, results.get(1).getTransactionResultType());
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, results.get(1).getErrorCode());
+    }
+
+    @Test
+    @DisplayName("일괄 사용 - 없는 계좌는 기록 없이 실패 결과만")
+    void useBalanceBatch_accountNotFound() {
+        //given
+        given(accountRepository.debitIfSufficient(anyString(), anyLong(), anyLong()))
+                .willReturn(0);
+        given(accountUserCache.existsById(anyLong()))
+                .willReturn(true);
+        given(accountRepository.findBalanceViewByAccountNumber(anyString()))
+                .willReturn(Optional.empty());
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.empty());
+
+        //when
+        List<TransactionDto> results = transactionService.useBalanceBatch(List.of(
+                new UseBalance.Request(1L, "1000000000", 100L)));
+
+        //then
+        verify(transactionRepository, times(0)).save(any());
+        assertEquals(F, results.get(0).getTransactionResultType());
+        assertEquals(ErrorCode.ACCOUNT_NOT_FOUND, results.get(0).getErrorCode());
+    }
+
     @Test
     @DisplayName("해당 유저 없음- 잔액 사용 실패")
     void useBalance_UserNotFound() {
         //given
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.empty());
+        given(accountRepository.debitIfSufficient(anyString(), anyLong(), anyLong()))
+                .willReturn(0);
+        given(accountUserCache.existsById(anyLong()))
+                .willReturn(false);
 
         //when
         AccountException exception = assertThrows(AccountException.class,
@@ -107,12 +389,11 @@ class TransactionServiceTest {
     @DisplayName("해당 계좌 없음 - 잔액 실패")
     void useBalance_AccountNotFound() {
         //given
-        AccountUser user = AccountUser.builder()
-                .name("Pobi").build();
-        user.setId(12L);
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(user));
-        given(accountRepository.findByAccountNumber(anyString()))
+        given(accountRepository.debitIfSufficient(anyString(), anyLong(), anyLong()))
+                .willReturn(0);
+        given(accountUserCache.existsById(anyLong()))
+                .willReturn(true);
+        given(accountRepository.findBalanceViewByAccountNumber(anyString()))
                 .willReturn(Optional.empty());
         //when
         AccountException exception = assertThrows(AccountException.class,
@@ -126,22 +407,15 @@ class TransactionServiceTest {
     @DisplayName("계좌 소유주 다름")
     void useBalanceFailed_userUnMatch() {
         //given
-        AccountUser pobi = AccountUser.builder()
-                .name("Pobi").build();
-        pobi.setId(12L);
-        AccountUser harry = AccountUser.builder()
-                .name("Harry").build();
-        harry.setId(13L);
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(pobi));
-        given(accountRepository.findByAccountNumber(anyString()))
-                .willReturn(Optional.of(Account.builder()
-                        .accountUser(harry)
-                        .balance(0L)
-                        .accountNumber("1000000012").build()));
+        given(accountRepository.debitIfSufficient(anyString(), anyLong(), anyLong()))
+                .willReturn(0);
+        given(accountUserCache.existsById(anyLong()))
+                .willReturn(true);
+        given(accountRepository.findBalanceViewByAccountNumber(anyString()))
+                .willReturn(Optional.of(balanceView(13L, IN_USE, 0L)));
         //when
         AccountException exception = assertThrows(AccountException.class,
-                () -> transactionService.useBalance(1L,
+                () -> transactionService.useBalance(12L,
                         "1234567890", 10L));
         //then
         assertEquals(ErrorCode.USER_ACCOUNT_UN_MATCH, exception.getErrorCode());
@@ -151,41 +425,50 @@ class TransactionServiceTest {
     @DisplayName("해지 계좌를 해지한 경우")
     void useBalanceFailed_alreadyUnRegistered() {
         //given
-        AccountUser pobi = AccountUser.builder()
-                .name("Pobi").build();
-        pobi.setId(12L);
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(pobi));
-        given(accountRepository.findByAccountNumber(anyString()))
-                .willReturn(Optional.of(Account.builder()
-                        .accountUser(pobi)
-                        .accountStatus(AccountStatus.UNREGISTERED)
-                        .balance(0L)
-                        .accountNumber("1000000012").build()));
+        given(accountRepository.debitIfSufficient(anyString(), anyLong(), anyLong()))
+                .willReturn(0);
+        given(accountUserCache.existsById(anyLong()))
+                .willReturn(true);
+        given(accountRepository.findBalanceViewByAccountNumber(anyString()))
+                .willReturn(Optional.of(balanceView(12L,
+                        AccountStatus.UNREGISTERED, 0L)));
         //when
         AccountException exception = assertThrows(AccountException.class,
-                () -> transactionService.useBalance(1L,
+                () -> transactionService.useBalance(12L,
                         "1234567890", 10L));
         //then
         assertEquals(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED, exception.getErrorCode());
     }
 
+    @Test
+    @DisplayName("차감 update 뒤 조회에서는 잔액이 충분하면 다른 거래와 경합한 것으로 실패")
+    void useBalanceFailed_balanceChanged() {
+        //given
+        given(accountRepository.debitIfSufficient(anyString(), anyLong(), anyLong()))
+                .willReturn(0);
+        given(accountUserCache.existsById(anyLong()))
+                .willReturn(true);
+        given(accountRepository.findBalanceViewByAccountNumber(anyString()))
+                .willReturn(Optional.of(balanceView(1L, IN_USE, 100000L)));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.useBalance(1L,
+                        "1234567890", 10000L));
+        //then
+        assertEquals(ErrorCode.ACCOUNT_BALANCE_CHANGED, exception.getErrorCode());
+    }
+
     @Test
     @DisplayName("거래 금액이 계좌 잔액보다 큰 경우")
     void useBalanceFailed_exceedAmount() {
         //given
-        AccountUser user = AccountUser.builder()
-                .name("Pobi").build();
-        user.setId(1L);
-        Account account = Account.builder()
-                .accountUser(user)
-                .accountStatus(IN_USE)
-                .balance(100L)
-                .accountNumber("1000000000").build();
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(user));
-        given(accountRepository.findByAccountNumber(anyString()))
-                .willReturn(Optional.of(account));
+        given(accountRepository.debitIfSufficient(anyString(), anyLong(), anyLong()))
+                .willReturn(0);
+        given(accountUserCache.existsById(anyLong()))
+                .willReturn(true);
+        given(accountRepository.findBalanceViewByAccountNumber(anyString()))
+                .willReturn(Optional.of(balanceView(1L, IN_USE, 100L)));
 
         //when
         AccountException exception = assertThrows(AccountException.class,
@@ -195,7 +478,6 @@ class TransactionServiceTest {
         verify(transactionRepository, times(0)).save(any());
         assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, exception.getErrorCode());
     }
-
     @Test
     @DisplayName("실패 트랜잭션 저장 성공")
     void saveFailedUseTransaction() {
@@ -232,6 +514,22 @@ class TransactionServiceTest {
         assertEquals(F, captor.getValue().getTransactionResultType());
     }
 
+    @Test
+    @DisplayName("잔액 엔진 계좌의 실패한 송금은 엔진 journal 에 기록")
+    void saveFailedTransferTransaction_engineAccount() {
+        //given
+        given(journaledBalanceEngine.isEngineAccount(anyString()))
+                .willReturn(true);
+
+        //when
+        transactionService.saveFailedTransferTransaction("1000000000", CANCEL_AMOUNT);
+
+        //then
+        verify(journaledBalanceEngine).recordFailure(TRANSFER_OUT, "1000000000", CANCEL_AMOUNT);
+        verify(accountRepository, never()).findByAccountNumber(anyString());
+        verify(transactionRepository, never()).save(any());
+    }
+
     @Test
     void successCancelBalance() {
         //given
@@ -275,6 +573,9 @@ class TransactionServiceTest {
         //then
         verify(transactionRepository, times(2)).save(captor.capture());
         assertEquals(USE_CANCELED, captor.getAllValues().get(0).getTransactionType());
+        verify(transactionQueryCache).update(argThat(canceled ->
+                canceled.getTransactionType() == USE_CANCELED
+                        && "transactionId".equals(canceled.getTransactionId())));
         assertEquals(CANCEL_AMOUNT, captor.getAllValues().get(1).getAmount());
         assertEquals(10000L + CANCEL_AMOUNT, captor.getAllValues().get(1).getBalanceSnapshot());
         assertEquals(S, transactionDto.getTransactionResultType());
@@ -283,6 +584,54 @@ class TransactionServiceTest {
         assertEquals(10000L, transactionDto.getBalanceSnapshot());
     }
 
+    @Test
+    @DisplayName("잔액 엔진 계좌의 취소는 커밋 뒤에 엔진 잔액을 올린다")
+    void cancelBalance_engineAccount() {
+        //given
+        AccountUser user = AccountUser.builder()
+                .name("Pobi").build();
+        user.setId(1L);
+        Account account = Account.builder()
+                .accountUser(user)
+                .accountStatus(IN_USE)
+                .balance(9000L)
+                .accountNumber("1000000000").build();
+        Transaction transaction = Transaction.builder()
+                .account(account)
+                .transactionType(USE)
+                .transactionResultType(S)
+                .transactionId("transactionId")
+                .transactedAt(LocalDateTime.now())
+                .amount(CANCEL_AMOUNT)
+                .balanceSnapshot(9000L)
+                .build();
+        given(journaledBalanceEngine.isEngineAccount(anyString()))
+                .willReturn(true);
+        given(transactionRepository.findByTransactionId(anyString()))
+                .willReturn(Optional.of(transaction));
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(account));
+        given(journaledBalanceEngine.cancelAfterCommit(anyString(), anyString(), anyLong()))
+                .willReturn(TransactionDto.builder()
+                        .accountNumber("1000000000")
+                        .transactionType(CANCEL)
+                        .transactionResultType(S)
+                        .amount(CANCEL_AMOUNT)
+                        .balanceSnapshot(10000L)
+                        .build());
+
+        //when
+        TransactionDto transactionDto = transactionService.cancelBalance(
+                "transactionId", "1000000000", CANCEL_AMOUNT);
+
+        //then
+        assertEquals(USE_CANCELED, transaction.getTransactionType());
+        verify(journaledBalanceEngine).cancelAfterCommit(
+                "transactionId", "1000000000", CANCEL_AMOUNT);
+        verify(journaledBalanceEngine, never()).cancel(anyString(), anyLong());
+        assertEquals(10000L, transactionDto.getBalanceSnapshot());
+    }
+
     @Test
     @DisplayName("해당 계좌 없음 - 취소 실패")
     void cancelBalance_AccountNotFound() {
@@ -459,26 +808,17 @@ class TransactionServiceTest {
     @Test
     void successQueryTransaction() {
         //given
-        AccountUser user = AccountUser.builder()
-                .name("Pobi").build();
-        user.setId(1L);
-        Account account = Account.builder()
-                .id(1L)
-                .accountUser(user)
-                .accountStatus(IN_USE)
-                .balance(10000L)
-                .accountNumber("1000000000").build();
-        Transaction transaction = Transaction.builder()
-                .account(account)
-                .transactionType(USE)
-                .transactionResultType(S)
-                .transactionId("transactionId")
-                .transactedAt(LocalDateTime.now().minusYears(1).minusNanos(1))
-                .amount(CANCEL_AMOUNT)
-                .balanceSnapshot(9000L)
-                .build();
-        given(transactionRepository.findByTransactionId(anyString()))
-                .willReturn(Optional.of(transaction));
+        given(transactionRepository.findDtoByTransactionId(anyString()))
+                .willReturn(Optional.of(TransactionDto.builder()
+                        .accountNumber("1000000000")
+                        .transactionType(USE)
+                        .transactionResultType(S)
+                        .transactionId("transactionId")
+                        .transactedAt(LocalDateTime.now().minusYears(1).minusNanos(1))
+                        .amount(CANCEL_AMOUNT)
+                        .balanceSnapshot(9000L)
+                        .build()));
+        givenCacheMiss();
         //when
         TransactionDto transactionDto = transactionService.queryTransaction("trxId");
         //then
@@ -493,8 +833,9 @@ class TransactionServiceTest {
     @DisplayName("원거래 없음 - 취소 실패")
     void queryTransaction_transactionNotFound() {
         //given
-        given(transactionRepository.findByTransactionId(anyString()))
+        given(transactionRepository.findDtoByTransactionId(anyString()))
                 .willReturn(Optional.empty());
+        givenCacheMiss();
         //when
         AccountException exception = assertThrows(AccountException.class,
                 () -> transactionService.queryTransaction("transactionId"
@@ -502,4 +843,238 @@ class TransactionServiceTest {
         //then
         assertEquals(ErrorCode.TRANSACTION_NOT_FOUND, exception.getErrorCode());
     }
+
+    @Test
+    @DisplayName("거래 내역 - limit 보다 많으면 다음 페이지 있음")
+    void getTransactionHistoryHasNext() {
+        //given
+        LocalDateTime transactedAt = LocalDateTime.of(2026, 1, 1, 0, 0);
+        given(accountMetadataCache.get(anyString()))
+                .willReturn(Optional.of(metadata(7L)));
+        given(transactionRepository.findHistoryAfter(anyLong(), any(), anyLong(), any()))
+                .willReturn(List.of(historyView(11L, transactedAt),
+                        historyView(12L, transactedAt), historyView(13L, transactedAt)));
+        String after = new TransactionHistory.Cursor(transactedAt, 10L).encode();
+
+        //when
+        TransactionHistory.Response response =
+                transactionService.getTransactionHistory("1000000000", after, 2);
+
+        //then
+        verify(transactionRepository).findHistoryAfter(eq(7L), eq(transactedAt), eq(10L), any());
+        assertEquals(2, response.getItems().size());
+        assertTrue(response.isHasNext());
+        TransactionHistory.Cursor next = TransactionHistory.Cursor.decode(response.getNextCursor());
+        assertEquals(12L, next.getId());
+        assertEquals(transactedAt, next.getTransactedAt());
+    }
+
+    @Test
+    @DisplayName("거래 내역 - 잘못된 cursor")
+    void getTransactionHistoryInvalidCursor() {
+        //given
+        given(accountMetadataCache.get(anyString()))
+                .willReturn(Optional.of(metadata(7L)));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.getTransactionHistory("1000000000", "not-a-cursor", 2));
+
+        //then
+        assertEquals(ErrorCode.INVALID_REQUEST, exception.getErrorCode());
+    }
+
+    private static AccountMetadataView metadata(Long id) {
+        return new AccountMetadataView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getUserId() {
+                return 1L;
+            }
+
+            @Override
+            public AccountStatus getAccountStatus() {
+                return IN_USE;
+            }
+        };
+    }
+
+    private static TransactionHistoryView historyView(Long id, LocalDateTime transactedAt) {
+        return new TransactionHistoryView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public TransactionType getTransactionType() {
+                return USE;
+            }
+
+            @Override
+            public TransactionResultType getTransactionResultType() {
+                return S;
+            }
+
+            @Override
+            public Long getAmount() {
+                return 100L;
+            }
+
+            @Override
+            public Long getBalanceSnapshot() {
+                return 900L;
+            }
+
+            @Override
+            public String getTransactionId() {
+                return "transactionId" + id;
+            }
+
+            @Override
+            public LocalDateTime getTransactedAt() {
+                return transactedAt;
+            }
+        };
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    @DisplayName("이체 - 계좌 번호 순서로 출금/입금 후 연결된 거래 2건 저장")
+    void successTransfer() {
+        //given
+        Account from = Account.builder()
+                .accountStatus(IN_USE)
+                .balance(7000L)
+                .accountNumber("2000000000").build();
+        Account to = Account.builder()
+                .accountStatus(IN_USE)
+                .balance(13000L)
+                .accountNumber("1000000000").build();
+        given(accountRepository.creditIfInUse("1000000000", 3000L)).willReturn(1);
+        given(accountRepository.debitIfSufficient("2000000000", 1L, 3000L)).willReturn(1);
+        given(accountRepository.findByAccountNumber("2000000000"))
+                .willReturn(Optional.of(from));
+        given(accountRepository.findByAccountNumber("1000000000"))
+                .willReturn(Optional.of(to));
+        given(transactionIdGenerator.generate())
+                .willReturn("withdrawalId", "depositId");
+        ArgumentCaptor<List<Transaction>> captor = ArgumentCaptor.forClass(List.class);
+
+        //when
+        List<TransactionDto> transactions = transactionService.transfer(
+                1L, "2000000000", "1000000000", 3000L);
+
+        //then
+        // 작은 계좌 번호(입금 계좌)의 row 를 먼저 갱신
+        InOrder inOrder = inOrder(accountRepository);
+        inOrder.verify(accountRepository).creditIfInUse("1000000000", 3000L);
+        inOrder.verify(accountRepository).debitIfSufficient("2000000000", 1L, 3000L);
+        verify(transactionRepository).saveAll(captor.capture());
+        Transaction withdrawal = captor.getValue().get(0);
+        Transaction deposit = captor.getValue().get(1);
+        assertEquals(TRANSFER_OUT, withdrawal.getTransactionType());
+        assertEquals(7000L, withdrawal.getBalanceSnapshot());
+        assertEquals("depositId", withdrawal.getLinkedTransactionId());
+        assertEquals(TRANSFER_IN, deposit.getTransactionType());
+        assertEquals(13000L, deposit.getBalanceSnapshot());
+        assertEquals("withdrawalId", deposit.getLinkedTransactionId());
+        assertEquals("2000000000", transactions.get(0).getAccountNumber());
+        assertEquals("1000000000", transactions.get(1).getAccountNumber());
+        assertEquals(S, transactions.get(1).getTransactionResultType());
+    }
+
+    @Test
+    @DisplayName("이체 - 입금 계좌 해지로 실패하면 거래를 남기지 않음")
+    void transfer_creditFailed() {
+        //given
+        given(accountRepository.debitIfSufficient("1000000000", 1L, 3000L)).willReturn(1);
+        given(accountRepository.creditIfInUse("2000000000", 3000L)).willReturn(0);
+        given(accountRepository.findBalanceViewByAccountNumber("2000000000"))
+                .willReturn(Optional.of(
+                        balanceView(2L, AccountStatus.UNREGISTERED, 0L)));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.transfer(
+                        1L, "1000000000", "2000000000", 3000L));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED, exception.getErrorCode());
+        verify(transactionRepository, never()).saveAll(any());
+    }
+
+    @Test
+    @DisplayName("이체 - 같은 계좌로는 이체 불가")
+    void transfer_sameAccount() {
+        //given
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.transfer(
+                        1L, "1000000000", "1000000000", 3000L));
+
+        //then
+        assertEquals(ErrorCode.INVALID_REQUEST, exception.getErrorCode());
+        verify(accountRepository, never()).debitIfSufficient(anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("이체 거래는 취소 불가")
+    void cancelBalance_transfer() {
+        //given
+        Account account = Account.builder()
+                .id(1L)
+                .accountStatus(IN_USE)
+                .balance(10000L)
+                .accountNumber("1000000000").build();
+        given(transactionRepository.findByTransactionId(anyString()))
+                .willReturn(Optional.of(Transaction.builder()
+                        .account(account)
+                        .transactionType(TRANSFER_OUT)
+                        .transactionResultType(S)
+                        .amount(CANCEL_AMOUNT)
+                        .transactedAt(LocalDateTime.now())
+                        .build()));
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(account));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.cancelBalance("transactionId",
+                        "1000000000", CANCEL_AMOUNT));
+
+        //then
+        assertEquals(ErrorCode.TRANSFER_NOT_CANCELABLE, exception.getErrorCode());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenCacheMiss() {
+        given(transactionQueryCache.get(anyString(), any()))
+                .willAnswer(invocation ->
+                        ((Supplier<TransactionDto>) invocation.getArgument(1)).get());
+    }
+
+    private static AccountBalanceView balanceView(
+            Long userId, AccountStatus accountStatus, Long balance) {
+        return new AccountBalanceView() {
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+
+            @Override
+            public AccountStatus getAccountStatus() {
+                return accountStatus;
+            }
+
+            @Override
+            public Long getBalance() {
+                return balance;
+            }
+        };
+    }
 }
\ No newline at end of file